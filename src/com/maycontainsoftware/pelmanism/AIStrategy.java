@@ -0,0 +1,73 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Enumeration of the kinds of computer player. Each Difficulty names the strategy its computer player uses.
+ * 
+ * @author Charlie
+ */
+public enum AIStrategy {
+	// Goes for a pair or plays at random, with the difficulty's intelligence and memory
+	Simple {
+		@Override
+		public ComputerPlayer create(final Difficulty difficulty, final Pelmanism model, final long seed) {
+			return new PelmanismAI(difficulty, model, seed);
+		}
+	},
+	// Looks ahead by Monte Carlo sampling, within a device's time budget
+	MonteCarlo {
+		@Override
+		public ComputerPlayer create(final Difficulty difficulty, final Pelmanism model, final long seed) {
+			return new MonteCarloAI(model, seed, null, 1, MonteCarloAI.DEVICE_BUDGET_NANOS, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public ComputerPlayer createHeadless(final Difficulty difficulty, final Pelmanism model, final long seed) {
+			return new MonteCarloAI(model, seed, null, 1, 0, MonteCarloAI.HEADLESS_SAMPLES);
+		}
+	},
+	// Plays perfectly, in two player games that end
+	Perfect {
+		@Override
+		public ComputerPlayer create(final Difficulty difficulty, final Pelmanism model, final long seed) {
+			return new PerfectAI(model, seed);
+		}
+
+		@Override
+		public boolean supports(final Pelmanism model) {
+			return model.getNumberOfPlayers() == 2 && !model.isEndless();
+		}
+	};
+
+	/**
+	 * Create a computer player using this strategy.
+	 * 
+	 * @param difficulty
+	 *            The difficulty level.
+	 * @param model
+	 *            The game model, which must be supported.
+	 * @param seed
+	 *            The seed for the player's random number stream.
+	 */
+	public abstract ComputerPlayer create(Difficulty difficulty, Pelmanism model, long seed);
+
+	/**
+	 * Create a computer player using this strategy for play without a display, as in a Simulation. Its moves depend
+	 * only on the seed, never on a clock, so that games can be repeated. Unless the strategy plays to a time budget,
+	 * this is the same player as create() makes.
+	 * 
+	 * @param difficulty
+	 *            The difficulty level.
+	 * @param model
+	 *            The game model, which must be supported.
+	 * @param seed
+	 *            The seed for the player's random number stream.
+	 */
+	public ComputerPlayer createHeadless(final Difficulty difficulty, final Pelmanism model, final long seed) {
+		return create(difficulty, model, seed);
+	}
+
+	/** Whether this strategy can play a game. */
+	public boolean supports(final Pelmanism model) {
+		return true;
+	}
+}
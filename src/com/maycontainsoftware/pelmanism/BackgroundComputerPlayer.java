@@ -0,0 +1,198 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a computer player's picks on a background executor, so that the thread driving the game is never held up while
+ * the computer thinks. A pick is started speculatively, as soon as the game state it depends on is settled and usually
+ * while an animation is still playing, and is then collected through the normal calls to updateCards(), pickFirstCard()
+ * and pickSecondCard(), which only wait if the pick has not finished.
+ *
+ * A speculative pick is thrown away if the game has changed since it was started, as shown by the game's version, or if
+ * the player has been told anything new in the meantime. The player is checkpointed before every speculative pick and
+ * restored when one is thrown away, so the pick leaves no trace in its memory or random numbers, and the move is then
+ * made again, on the calling thread, exactly as if it had never been started. Every other call first waits for any pick
+ * in progress to finish, so the wrapped player is only ever used by one thread at a time. The game must not be changed
+ * while a pick is in progress, so callers should discard the pick before changing it.
+ *
+ * @author Charlie
+ */
+public class BackgroundComputerPlayer implements ComputerPlayer {
+
+	/** The computer player doing the thinking. */
+	private final ComputerPlayer player;
+
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
+
+	/** The executor to pick on. */
+	private final ExecutorService executor;
+
+	/** The pick in progress, or null. */
+	private Future<Card> pending;
+
+	/** Whether the pick in progress is a first pick, including the update before it. */
+	private boolean pendingFirstPick;
+
+	/** The version of the game the pick in progress was started against. */
+	private long pendingVersion;
+
+	/** Whether the last call to updateCards() was skipped, because a first pick in progress had already updated. */
+	private boolean updateSkipped;
+
+	/**
+	 * Construct a new background computer player.
+	 *
+	 * @param player
+	 *            The computer player doing the thinking, which must not be used other than through this object.
+	 * @param model
+	 *            The game model.
+	 * @param executor
+	 *            The executor to pick on.
+	 */
+	public BackgroundComputerPlayer(final ComputerPlayer player, final Pelmanism model, final ExecutorService executor) {
+		this.player = player;
+		this.model = model;
+		this.executor = executor;
+	}
+
+	/** Start updating and picking the first card of a move, in the background. */
+	public void startFirstPick() {
+		start(true, new Callable<Card>() {
+			@Override
+			public Card call() {
+				player.updateCards();
+				return player.pickFirstCard();
+			}
+		});
+	}
+
+	/** Start picking the second card of a move, in the background, once the first has been seen. */
+	public void startSecondPick() {
+		start(false, new Callable<Card>() {
+			@Override
+			public Card call() {
+				return player.pickSecondCard();
+			}
+		});
+	}
+
+	/** Start a pick in the background. */
+	private void start(final boolean firstPick, final Callable<Card> pick) {
+		discardMove();
+		player.checkpoint();
+		pendingFirstPick = firstPick;
+		pendingVersion = model.getVersion();
+		pending = executor.submit(pick);
+	}
+
+	/**
+	 * Throw away any pick in progress, waiting for it to finish and then taking back its effects on the player. Must be
+	 * called before the game is changed.
+	 */
+	public void discardMove() {
+		if (pending != null) {
+			await(pending);
+			pending = null;
+			player.restore();
+		}
+	}
+
+	/** Whether a pick of the given kind is in progress against the current version of the game. */
+	private boolean isPending(final boolean firstPick) {
+		return pending != null && pendingFirstPick == firstPick && pendingVersion == model.getVersion();
+	}
+
+	/** Collect the pick in progress, or return null if there is no pick of the given kind that is still valid. */
+	private Card collect(final boolean firstPick) {
+		if (!isPending(firstPick)) {
+			discardMove();
+			return null;
+		}
+		final Future<Card> future = pending;
+		pending = null;
+		return await(future);
+	}
+
+	/** Wait for a pick to finish, and return it. */
+	private static Card await(final Future<Card> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the computer player");
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public void cardSeen(final Card card) {
+		discardMove();
+		player.cardSeen(card);
+	}
+
+	@Override
+	public void cardRestored(final Card card) {
+		discardMove();
+		player.cardRestored(card);
+	}
+
+	@Override
+	public void gameRewound() {
+		discardMove();
+		player.gameRewound();
+	}
+
+	@Override
+	public void cardReplaced(final Card card) {
+		discardMove();
+		player.cardReplaced(card);
+	}
+
+	@Override
+	public void updateCards() {
+		updateSkipped = isPending(true);
+		if (updateSkipped) {
+			// The first pick in progress started with an update
+			return;
+		}
+		discardMove();
+		player.updateCards();
+	}
+
+	@Override
+	public Card pickFirstCard() {
+		final Card card = collect(true);
+		if (card != null) {
+			return card;
+		}
+		if (updateSkipped) {
+			// The update was skipped for a pick that has since been discarded, and taken back
+			updateSkipped = false;
+			player.updateCards();
+		}
+		return player.pickFirstCard();
+	}
+
+	@Override
+	public Card pickSecondCard() {
+		final Card card = collect(false);
+		return (card != null) ? card : player.pickSecondCard();
+	}
+
+	@Override
+	public void checkpoint() {
+		discardMove();
+		player.checkpoint();
+	}
+
+	@Override
+	public void restore() {
+		discardMove();
+		player.restore();
+	}
+}
@@ -0,0 +1,53 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * A catalogue of balanced deals for each Difficulty, as deal seeds for Pelmanism. Some deals are much easier than
+ * others, or hand the first player a lead, which skews short tournaments; these are the deals that DealAnalyzer found
+ * to take close to the typical number of turns to clear and to give the first player no advantage.
+ *
+ * The seeds hold for a game dealt by a DealGenerator with no layout constraint and the difficulty's number of pairs.
+ *
+ * @author Charlie
+ */
+public final class BalancedDeals {
+
+	// Generated by DealFairness: 32 of 2000 deals of each difficulty, 2048 playouts each, reference memory 7 and decay 0.1
+	private static final long[][] SEEDS = {
+			// Easy: turns 9.772 / 9.847 / 9.896, first mover advantage -0.031 / -0.001 / 0.027
+			{ 0x879d42c741a10253L, 0xd98c2f25332e1f66L, 0x35dd1061b5ca1367L, 0x725fe8990553cbe0L,
+					0x8617b3fe59e74ce2L, 0xe0a85ae057437f02L, 0xe2d0f17915aaee6fL, 0xba64eb09f5103e5bL,
+					0x9191c2354a37606dL, 0xd661de349737425eL, 0xd162b01f8097fe6aL, 0x9e6f6ce2eab04ed1L,
+					0xfb8de9db455c6939L, 0x223fa0147a471942L, 0xc292ea436869670fL, 0x3e1665d5321ba2baL,
+					0x9e89261059c46ea2L, 0xb2151edd69eeddc4L, 0x4ad5174159fdc34eL, 0xc4eb77cf9329ac4L,
+					0x122ce38fff08f612L, 0x78f9f51118112850L, 0x434d43b15c39f17eL, 0x24e9cbe613997b60L,
+					0x35f49aa3bf1de23dL, 0x5ea521cf02a1d570L, 0xa0e2c0557149e2b1L, 0x11b7f049d779b864L,
+					0xa0681c75b9ee04e5L, 0xe41f240d174ef85L, 0x6d3bb1a47f7f74bL, 0x742d4097eebe5a41L },
+			// Medium: turns 17.555 / 17.69 / 17.777, first mover advantage -0.033 / -0.001 / 0.032
+			{ 0xf19d82476496112L, 0x972b84e6b2762938L, 0xe2486a951609bcd5L, 0x419b5310d56606aL,
+					0xaec8ca33d8b5dc0aL, 0x83aebe0c73b8c798L, 0xfa4da2d4cca9a4c0L, 0x4c1eecdec1a96cfcL,
+					0xc99d04c8955386afL, 0x3ce572cb6dffdf5aL, 0x8342ca27542361d8L, 0x5cebfe1aa7913cceL,
+					0xdf60fd40102e3404L, 0x41a6186554753d0bL, 0xda05823fa7d91b00L, 0xf864369359f046eL,
+					0xaa81bb3ec72575b3L, 0x11d6495dd5151afeL, 0x2b1abee5c9fc280fL, 0x51a87ede68bc6513L,
+					0x9d36eb8102b30b2eL, 0xe3f459713acbc3a8L, 0x13c30aa52b0eaeb3L, 0xd021b7970c83644fL,
+					0x704282366ee19dc5L, 0x4c8a981303df2231L, 0x9dd91c3508f15ec4L, 0x95c7ae6dbfdfd4caL,
+					0xe1a9a00dd9c93c9fL, 0x6e1c4ff699bf6801L, 0xa4a133abbb99878eL, 0xba36e3cb2912f6b0L },
+			// Hard: turns 29.691 / 30.275 / 30.717, first mover advantage -0.038 / 0.005 / 0.035
+			{ 0xd0eaa2676a3bec2cL, 0xa053bc63113a8f60L, 0x41248b068b006e14L, 0x307137ba4e475bc3L,
+					0x27012d039c3b826eL, 0x16161dbb725a666eL, 0xdf81de277327338dL, 0x40b6a5e781216cf8L,
+					0x23f939e4527536b0L, 0x149c2cff2859efbbL, 0x8461807bc108fe15L, 0xe34b7a636c964398L,
+					0x47260d353825442eL, 0xb5e4908d2f42b2eaL, 0x744dca363d9d0a52L, 0x8b0e5cb9147f5d61L,
+					0x25654bdb5947ddecL, 0x3337ce85af40c96dL, 0x2fcc6f03ea2f0598L, 0xcb1761616edacc47L,
+					0xaf7d8a70fabb1fbdL, 0xf89946d7b7c5ac01L, 0x77b35a01dae304c9L, 0x58bab7ab4d3316ccL,
+					0x4b1bf45e83a304d1L, 0x6eb7755c99100a4dL, 0x727818e0f999db1fL, 0xd44938275db5ce5L,
+					0xa8020a15ce3145f5L, 0xbab3e1a029d8073dL, 0x6425ec4ddb352974L, 0xa2477c935d345632L },
+	};
+
+	/** No instances. */
+	private BalancedDeals() {
+	}
+
+	/** The seeds of a difficulty's balanced deals. */
+	public static long[] getSeeds(final Difficulty difficulty) {
+		return SEEDS[difficulty.ordinal()].clone();
+	}
+}
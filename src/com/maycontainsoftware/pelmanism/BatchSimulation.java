@@ -0,0 +1,444 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Plays many games between simple computer players at once, in lockstep, with every game's state held in flat arrays of
+ * primitives rather than in a Pelmanism object with its Card and Turn objects. Each array is a column with one row per
+ * game in flight, or a block of entries per row. Each pass over the rows plays a turn of every game, and a game that
+ * ends is counted and its row dealt the next game. Splitting a turn into a pass per step was measured to be no faster,
+ * as the time goes on the random choices and the forgetting rather than on waiting for memory.
+ *
+ * The players follow PelmanismAI's strategy with each seat's Difficulty settings: go for a pair with a probability
+ * given by the intelligence, and otherwise play at random; remember at most a number of cards, forgetting the least
+ * recently seen first; and forget each remembered card with some probability every turn. With at most 64 cards, the
+ * cards on the board and the cards each player remembers fit in one long per row, so picking a card is a little bit
+ * arithmetic, and the random choices are made with masks rather than branches. These players only ever pick among cards
+ * at random, so where each pair lies makes no difference to how a game goes, and every game is dealt cards 2k and
+ * 2k + 1 as pair k: a card's partner is then the card with its lowest bit flipped, and the pairs a player remembers
+ * both cards of are found from their memory with a shift and a mask. Memory is updated as each card is seen,
+ * rather than when the player next moves as PelmanismAI does, so results agree with Simulation's statistically rather
+ * than game for game.
+ *
+ * Each game's random numbers come from its own SplitMix64 state, seeded from the run's seed and the game's index, so
+ * the results depend only on the seed and the number of games, not on the number of rows. Each 64-bit output is split
+ * into two 32-bit draws. Random ints are drawn by multiplying up, without rejection, whose bias of a few parts in a
+ * billion does not matter here.
+ *
+ * @author Charlie
+ */
+public final class BatchSimulation {
+
+	/** The largest number of pairs supported, so that every card fits in a long. */
+	public static final int MAX_PAIRS = 32;
+
+	/** The default number of games in flight at once. */
+	public static final int DEFAULT_ROWS = 1024;
+
+	/** The lower card of every pair, one bit per card. */
+	private static final long LOWER_CARDS = 0x5555555555555555L;
+
+	/** The number of recent reveals kept in each row's history, a power of two. */
+	private static final int HISTORY = 128;
+
+	/** The position of the nth set bit of each byte, at [n * 256 + byte]. */
+	private static final byte[] SELECT_IN_BYTE = new byte[8 * 256];
+
+	static {
+		for (int b = 0; b < 256; b++) {
+			int n = 0;
+			for (int bit = 0; bit < 8; bit++) {
+				if ((b & (1 << bit)) != 0) {
+					SELECT_IN_BYTE[(n++ << 8) | b] = (byte) bit;
+				}
+			}
+		}
+	}
+
+	/** The number of pairs on the board. */
+	private final int numberOfPairs;
+
+	/** The number of cards on the board. */
+	private final int numberOfCards;
+
+	/** The number of seats. */
+	private final int seats;
+
+	/** The number of games in flight at once. */
+	private final int rows;
+
+	/** The intelligence of each seat, as the number of 24-bit random numbers below which it goes for a pair. */
+	private final long[] intelligence;
+
+	/** The memory capacity of each seat. */
+	private final int[] memoryCapacity;
+
+	/** The chance of remembering every one of a number of cards through a turn, for each seat, by number of cards. */
+	private final double[][] survival;
+
+	// Columns, one row per game in flight
+
+	/** The index of the game in each row, or -1 if the row is idle. */
+	private final long[] gameIndex;
+
+	/** The random number state of each row. */
+	private final long[] random;
+
+	/** The cards on the board in each row, one bit per card. */
+	private final long[] board;
+
+	/** The number of pairs remaining in each row. */
+	private final int[] pairsRemaining;
+
+	/** The player to move in each row. */
+	private final int[] currentPlayer;
+
+	/** The number of turns played in each row. */
+	private final int[] turns;
+
+	/** The number of cards revealed in each row, used to order memories. */
+	private final int[] clock;
+
+	/** The random bits for the cards picked this turn in each row, the first card's in the low half. */
+	private final long[] picks;
+
+	/** All ones if the player to move in each row is going for a pair this turn, otherwise zero. */
+	private final long[] goForPair;
+
+	/** All ones if the player to move in each row is going for a pair they know of this turn, otherwise zero. */
+	private final long[] goForKnownPair;
+
+	/** The first card picked this turn in each row. */
+	private final int[] firstCard;
+
+	/** The second card picked this turn in each row. */
+	private final int[] secondCard;
+
+	// Blocks of entries per row
+
+	/** The score of each player: a block of a row's players per row. */
+	private final int[] scores;
+
+	/** The seat of each player: a block of a row's players per row. */
+	private final int[] playerSeats;
+
+	/** The memory capacity of each player: as playerSeats. */
+	private final int[] playerCapacities;
+
+	/** The cards each player remembers, one bit per card: a block of a row's players per row. */
+	private final long[] memories;
+
+	/** When each card was last seen, by the row's clock, the same for every player: a block of cards per row. */
+	private final int[] seenAt;
+
+	/** The card revealed at each recent time by the row's clock, at the time modulo HISTORY: a block per row. */
+	private final byte[] history;
+
+	/**
+	 * For each player, the time from which to look for the card they saw longest ago: no card they remember was last
+	 * seen any earlier. As memories.
+	 */
+	private final int[] oldestSeen;
+
+	/** The scores of the last game, by seat. */
+	private final int[] seatScores;
+
+	/** Create a simulation of simple computer players with the default number of games in flight. */
+	public BatchSimulation(final int numberOfPairs, final Difficulty[] difficulties) {
+		this(numberOfPairs, difficulties, DEFAULT_ROWS);
+	}
+
+	/**
+	 * Create a simulation of simple computer players.
+	 *
+	 * @param numberOfPairs
+	 *            The number of pairs on the board, no more than MAX_PAIRS.
+	 * @param difficulties
+	 *            The difficulty of each seat, which sets its intelligence and memory.
+	 * @param rows
+	 *            The number of games in flight at once.
+	 */
+	public BatchSimulation(final int numberOfPairs, final Difficulty[] difficulties, final int rows) {
+		if (numberOfPairs <= 0 || numberOfPairs > MAX_PAIRS) {
+			throw new IllegalArgumentException("numberOfPairs = " + numberOfPairs);
+		}
+		if (difficulties.length == 0 || rows <= 0) {
+			throw new IllegalArgumentException("Need at least one seat and one row");
+		}
+		this.numberOfPairs = numberOfPairs;
+		this.numberOfCards = numberOfPairs * 2;
+		this.seats = difficulties.length;
+		this.rows = rows;
+
+		intelligence = new long[seats];
+		memoryCapacity = new int[seats];
+		survival = new double[seats][numberOfCards + 1];
+		for (int seat = 0; seat < seats; seat++) {
+			intelligence[seat] = (long) Math.ceil(difficulties[seat].getAiIntelligence() * 0x1.0p24);
+			memoryCapacity[seat] = difficulties[seat].getAiMemoryCapacity();
+			final double decay = Math.min(Math.max(difficulties[seat].getAiMemoryDecay(), 0.0f), 1.0f);
+			for (int count = 0; count <= numberOfCards; count++) {
+				survival[seat][count] = Math.pow(1.0 - decay, count);
+			}
+		}
+
+		gameIndex = new long[rows];
+		random = new long[rows];
+		board = new long[rows];
+		pairsRemaining = new int[rows];
+		currentPlayer = new int[rows];
+		turns = new int[rows];
+		clock = new int[rows];
+		picks = new long[rows];
+		goForPair = new long[rows];
+		goForKnownPair = new long[rows];
+		firstCard = new int[rows];
+		secondCard = new int[rows];
+		scores = new int[rows * seats];
+		playerSeats = new int[rows * seats];
+		playerCapacities = new int[rows * seats];
+		memories = new long[rows * seats];
+		seenAt = new int[rows * numberOfCards];
+		history = new byte[rows * HISTORY];
+		oldestSeen = new int[rows * seats];
+		seatScores = new int[seats];
+	}
+
+	/** Play a number of games on the calling thread. */
+	public final SimulationResult run(final long games, final long seed) {
+		final long start = System.nanoTime();
+		final SimulationResult result = new SimulationResult(seats);
+
+		// Fill the rows
+		long nextGame = 0;
+		int active = 0;
+		for (int row = 0; row < rows; row++) {
+			if (nextGame < games) {
+				deal(row, nextGame++, seed);
+				active++;
+			} else {
+				gameIndex[row] = -1;
+			}
+		}
+
+		// Play a turn of every game in flight until all are done
+		while (active > 0) {
+			for (int row = 0; row < rows; row++) {
+				if (gameIndex[row] >= 0) {
+					pickFirst(row);
+					reveal(row, firstCard[row]);
+					pickSecond(row);
+					reveal(row, secondCard[row]);
+				}
+				if (gameIndex[row] < 0 || !endTurn(row)) {
+					continue;
+				}
+				count(row, result);
+				if (nextGame < games) {
+					deal(row, nextGame++, seed);
+				} else {
+					gameIndex[row] = -1;
+					active--;
+				}
+			}
+		}
+
+		result.setNanos(System.nanoTime() - start);
+		return result;
+	}
+
+	/** Deal a game into a row, pair k being cards 2k and 2k + 1. */
+	private void deal(final int row, final long game, final long seed) {
+		gameIndex[row] = game;
+		random[row] = RandomStream.seedFor(seed, game);
+		board[row] = (numberOfCards == 64) ? -1L : (1L << numberOfCards) - 1;
+		pairsRemaining[row] = numberOfPairs;
+		currentPlayer[row] = 0;
+		turns[row] = 0;
+		clock[row] = 0;
+
+		// Seat s plays as player (s + game) % seats, so the seats take turns to start
+		final int rotation = (int) (game % seats);
+		for (int p = 0; p < seats; p++) {
+			final int m = row * seats + p;
+			playerSeats[m] = (p >= rotation) ? p - rotation : p - rotation + seats;
+			playerCapacities[m] = memoryCapacity[playerSeats[m]];
+			scores[m] = 0;
+			memories[m] = 0;
+			oldestSeen[m] = 1;
+		}
+	}
+
+	/**
+	 * Start a turn in a row: forget some of what is remembered, decide whether to go for a pair, and pick the first
+	 * card. The choices are random, so rather than branch on them, which the processor would mispredict half the time,
+	 * the steps of a turn make every choice with masks: all ones for yes and zero for no.
+	 */
+	private void pickFirst(final int row) {
+		final int m = row * seats + currentPlayer[row];
+		final int seat = playerSeats[m];
+
+		final long bits = RandomStream.mix64(random[row] += RandomStream.GOLDEN_GAMMA);
+		decay(row, m, seat, ((bits & 0xffffffffL) + 1) * 0x1.0p-32);
+		final long pair = ((bits >>> 40) - intelligence[seat]) >> 63;
+		picks[row] = RandomStream.mix64(random[row] += RandomStream.GOLDEN_GAMMA);
+
+		// A random known pair, or else a random unseen card, of which there must be one; or any card
+		final long cards = board[row];
+		final long memory = memories[m];
+		final long known = memory & (memory >>> 1) & LOWER_CARDS;
+		final long knownPair = pair & ((known | -known) >> 63);
+		final long choices = (known & knownPair) | (cards & ~memory & pair & ~knownPair) | (cards & ~pair);
+		firstCard[row] = randomBit(choices, picks[row]);
+		goForPair[row] = pair;
+		goForKnownPair[row] = knownPair;
+	}
+
+	/** Pick the second card in a row, once the first has been seen. */
+	private void pickSecond(final int row) {
+		final int m = row * seats + currentPlayer[row];
+		final int first = firstCard[row];
+		final int partner = first ^ 1;
+		final long pair = goForPair[row];
+
+		// The partner if it is remembered, or else a remembered card, giving nothing away; or any card
+		final long memory = memories[m];
+		final long others = board[row] & ~(1L << first);
+		final long remembered = pair & ((long) (1 - Long.bitCount(memory)) >> 63);
+		final int guess = randomBit((memory & others & remembered) | (others & ~remembered), picks[row] >>> 32);
+		final int takePartner = (int) (goForKnownPair[row] | (pair & -((memory >>> partner) & 1L)));
+		secondCard[row] = (partner & takePartner) | (guess & ~takePartner);
+	}
+
+	/**
+	 * End a turn in a row, once both cards have been seen, and return whether the game is over. A match takes the pair
+	 * off the board and out of every memory, and the player plays again.
+	 */
+	private boolean endTurn(final int row) {
+		final int player = currentPlayer[row];
+		final int first = firstCard[row];
+		final int second = secondCard[row];
+		turns[row]++;
+
+		// The cards differ, so they are a pair only if they differ in just the lowest bit
+		final int match = ((first ^ second ^ 1) - 1) >> 31;
+		scores[row * seats + player] -= match;
+		final long pair = ~(((1L << first) | (1L << second)) & match);
+		board[row] &= pair;
+		for (int m = row * seats; m < (row + 1) * seats; m++) {
+			memories[m] &= pair;
+		}
+		final int next = (player + 1 == seats) ? 0 : player + 1;
+		currentPlayer[row] = (player & match) | (next & ~match);
+		return (pairsRemaining[row] += match) == 0;
+	}
+
+	/** Show a card to every player in a row, each forgetting their least recently seen card if over capacity. */
+	private void reveal(final int row, final int cardId) {
+		final int time = ++clock[row];
+		final long bit = 1L << cardId;
+		seenAt[row * numberOfCards + cardId] = time;
+		history[row * HISTORY + (time & (HISTORY - 1))] = (byte) cardId;
+		for (int m = row * seats; m < (row + 1) * seats; m++) {
+			long memory = memories[m] | bit;
+			if (Long.bitCount(memory) > playerCapacities[m]) {
+				memory &= ~(1L << oldest(row, memory, m, time));
+			}
+			memories[m] = memory;
+		}
+	}
+
+	/**
+	 * The card a player saw longest ago of those they remember, found by walking the row's history forward from the
+	 * player's oldest time, past cards they have since forgotten or seen again. Every player sees the same cards in the
+	 * same order, so one history serves them all, and each player's walk only ever moves forward, a step or two a
+	 * reveal. If the walk would start before the history kept, every card the player remembers is looked at instead.
+	 */
+	private int oldest(final int row, final long memory, final int m, final int time) {
+		final int base = row * numberOfCards;
+		int t = oldestSeen[m];
+		int card;
+		if (time - t >= HISTORY) {
+			t = Integer.MAX_VALUE;
+			card = -1;
+			for (long rest = memory; rest != 0; rest &= rest - 1) {
+				final int c = Long.numberOfTrailingZeros(rest);
+				if (seenAt[base + c] < t) {
+					t = seenAt[base + c];
+					card = c;
+				}
+			}
+		} else {
+			final int h = row * HISTORY;
+			card = history[h + (t & (HISTORY - 1))];
+			while (((memory >>> card) & 1L) == 0 || seenAt[base + card] != t) {
+				t++;
+				card = history[h + (t & (HISTORY - 1))];
+			}
+		}
+		oldestSeen[m] = t + 1;
+		return card;
+	}
+
+	/**
+	 * Forget each card a player remembers with the seat's decay probability. The gaps between forgotten cards are drawn
+	 * from the geometric distribution, so there is one random number per forgotten card rather than per card. A gap is
+	 * at least k cards when the random number is no more than the chance of remembering k cards, so it is found in the
+	 * table of those chances, with no logarithm, and usually, when nothing is forgotten, with one comparison.
+	 *
+	 * @param u
+	 *            A uniform random number in (0, 1] for the first gap.
+	 */
+	private void decay(final int row, final int m, final int seat, final double u) {
+		final long memory = memories[m];
+		final double[] chances = survival[seat];
+		final int count = Long.bitCount(memory);
+		long forgotten = 0;
+		double v = u;
+		// While one of the cards from the ith on is forgotten, skip those remembered before it; the chance of
+		// remembering no cards is 1, so this stops at the last card
+		for (int i = 0; v > chances[count - i]; i++) {
+			int gap = 0;
+			while (v <= chances[gap + 1]) {
+				gap++;
+			}
+			i += gap;
+			forgotten |= 1L << selectBit(memory, i);
+			final long bits = RandomStream.mix64(random[row] += RandomStream.GOLDEN_GAMMA);
+			v = ((bits >>> 11) + 1) * 0x1.0p-53;
+		}
+		memories[m] = memory & ~forgotten;
+	}
+
+	/** Count the game in a row. */
+	private void count(final int row, final SimulationResult result) {
+		for (int m = row * seats; m < (row + 1) * seats; m++) {
+			seatScores[playerSeats[m]] = scores[m];
+		}
+		result.addGame(seatScores, turns[row]);
+	}
+
+	/** A random card from a non-empty set, given 32 random bits in the low half of a long. */
+	private static int randomBit(final long set, final long bits) {
+		return selectBit(set, below(bits, Long.bitCount(set)));
+	}
+
+	/**
+	 * The card of a set with a number of cards of lower id in the set. The number of cards in each byte of the set and
+	 * all the bytes below it are summed in parallel in the bytes of one long, the byte holding the card is found by
+	 * comparing all of those sums with the index at once, and the card within the byte is looked up in a table. There
+	 * are no branches, since where the card lies is as good as random.
+	 */
+	private static int selectBit(final long set, final int index) {
+		long sums = set - ((set >>> 1) & 0x5555555555555555L);
+		sums = (sums & 0x3333333333333333L) + ((sums >>> 2) & 0x3333333333333333L);
+		sums = ((sums + (sums >>> 4)) & 0x0f0f0f0f0f0f0f0fL) * 0x0101010101010101L;
+		final long lower = ((index * 0x0101010101010101L | 0x8080808080808080L) - sums) & 0x8080808080808080L;
+		final int place = Long.bitCount(lower) * 8;
+		final int rank = index - (int) (((sums << 8) >>> place) & 0xff);
+		return place + SELECT_IN_BYTE[(rank << 8) | (int) ((set >>> place) & 0xff)];
+	}
+
+	/** A random int from zero up to a positive bound, given 32 random bits in the low half of a long. */
+	private static int below(final long bits, final int bound) {
+		return (int) (((bits & 0xffffffffL) * bound) >>> 32);
+	}
+}
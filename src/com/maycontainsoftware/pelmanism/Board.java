@@ -0,0 +1,153 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Primitive storage for the cards on the board. Pair ids are held in an int array indexed by card id, and matched state
+ * in a bitset with one bit per card, so a board costs a little over four bytes per card however large it gets.
+ *
+ * Boards can be forked cheaply: a fork shares both arrays with its parent, and whichever board is written to first takes
+ * its own copy of the array it writes to.
+ *
+ * Card ids are not checked here; callers are expected to have validated them already.
+ *
+ * @author Charlie
+ */
+public final class Board {
+
+	/** The number of cards on the board. */
+	private final int numberOfCards;
+
+	/** The pair id of each card, indexed by card id. */
+	private int[] pairIds;
+
+	/** Matched state of each card, one bit per card id. */
+	private long[] matched;
+
+	/** Whether pairIds may be shared with another board, and must be copied before being written to. */
+	private boolean pairIdsShared;
+
+	/** Whether matched may be shared with another board, and must be copied before being written to. */
+	private boolean matchedShared;
+
+	/**
+	 * Create a new, empty board.
+	 *
+	 * @param numberOfCards
+	 *            The number of cards on the board.
+	 */
+	public Board(final int numberOfCards) {
+		if (numberOfCards <= 0) {
+			throw new IllegalArgumentException("numberOfCards = " + numberOfCards);
+		}
+		this.numberOfCards = numberOfCards;
+		this.pairIds = new int[numberOfCards];
+		this.matched = new long[(numberOfCards + 63) >>> 6];
+	}
+
+	/** Create a board that shares the arrays of another. */
+	private Board(final Board source) {
+		this.numberOfCards = source.numberOfCards;
+		this.pairIds = source.pairIds;
+		this.matched = source.matched;
+		this.pairIdsShared = true;
+		this.matchedShared = true;
+	}
+
+	/** Create an independent copy of this board, in constant time. */
+	final Board fork() {
+		pairIdsShared = true;
+		matchedShared = true;
+		return new Board(this);
+	}
+
+	/** Make sure pairIds is not shared, before writing to it. */
+	private void ownPairIds() {
+		if (pairIdsShared) {
+			pairIds = pairIds.clone();
+			pairIdsShared = false;
+		}
+	}
+
+	/** Make sure matched is not shared, before writing to it. */
+	private void ownMatched() {
+		if (matchedShared) {
+			matched = matched.clone();
+			matchedShared = false;
+		}
+	}
+
+	/** The number of cards on the board. */
+	public final int getNumberOfCards() {
+		return numberOfCards;
+	}
+
+	/** Get the pair id of a card. */
+	public final int getPairId(final int cardId) {
+		return pairIds[cardId];
+	}
+
+	/** Set the pair id of a card. */
+	final void setPairId(final int cardId, final int pairId) {
+		ownPairIds();
+		pairIds[cardId] = pairId;
+	}
+
+	/** Replace the pair ids of every card with a new deal. */
+	final void deal(final DealGenerator dealGenerator, final RandomStream random) {
+		if (dealGenerator.getNumberOfCards() != numberOfCards) {
+			throw new IllegalArgumentException("Deal is for " + dealGenerator.getNumberOfCards() + " cards");
+		}
+		ownPairIds();
+		dealGenerator.deal(pairIds, 0, random);
+	}
+
+	/** Whether two different cards form a matched pair. */
+	public final boolean isMatch(final int cardId1, final int cardId2) {
+		return pairIds[cardId1] == pairIds[cardId2];
+	}
+
+	/** Whether a card has been matched, and has therefore been removed from the board. */
+	public final boolean isMatched(final int cardId) {
+		return (matched[cardId >>> 6] & (1L << cardId)) != 0;
+	}
+
+	/** Set whether a card has been matched. */
+	public final void setMatched(final int cardId, final boolean isMatched) {
+		ownMatched();
+		if (isMatched) {
+			matched[cardId >>> 6] |= (1L << cardId);
+		} else {
+			matched[cardId >>> 6] &= ~(1L << cardId);
+		}
+	}
+
+	/**
+	 * Get the matched bitset, to be held on to as an immutable copy. The array is shared from now on, so the board copies
+	 * it before next changing any matched state.
+	 */
+	final long[] shareMatched() {
+		matchedShared = true;
+		return matched;
+	}
+
+	/** Mark every card as unmatched. */
+	public final void clearMatched() {
+		ownMatched();
+		for (int i = 0; i < matched.length; i++) {
+			matched[i] = 0L;
+		}
+	}
+
+	/** The number of cards that have been matched, counted directly from the bitset. */
+	public final int getMatchedCardCount() {
+		int count = 0;
+		for (int i = 0; i < matched.length; i++) {
+			count += Long.bitCount(matched[i]);
+		}
+		return count;
+	}
+
+	/** The number of pairs still on the board. */
+	public final int getPairsRemaining() {
+		return (numberOfCards - getMatchedCardCount()) / 2;
+	}
+}
@@ -1,25 +1,23 @@
 package com.maycontainsoftware.pelmanism;
 
 /**
- * Logical representation of a card on the board.
+ * Logical representation of a card on the board. A Card holds no state of its own; it is a view over the card's slot in
+ * the game's Board.
  * 
  * @author Charlie
  */
 public class Card {
 
-	/** Unique id for this card. */
-	private final int id;
-
-	/** Id of the pair represented by this card. There will be exactly two cards that represent each pair. */
-	private final int pairId;
+	/** The board holding this card's state. */
+	private final Board board;
 
-	/** Whether or not this card has been matched by a player, and thereby removed from the board. */
-	private boolean matched;
+	/** Unique id for this card, and its index into the board. */
+	private final int id;
 
-	/** Construct a new card. */
-	public Card(final int id, final int pairId) {
+	/** Construct a new view of a card on the board. */
+	Card(final Board board, final int id) {
+		this.board = board;
 		this.id = id;
-		this.pairId = pairId;
 	}
 
 	/** Get the card id. */
@@ -27,9 +25,9 @@ public class Card {
 		return id;
 	}
 
-	/** Get the card's pair id. */
+	/** Get the card's pair id. There will be exactly two cards that represent each pair. */
 	public final int getPairId() {
-		return pairId;
+		return board.getPairId(id);
 	}
 
 	/** Check whether this card forms a matched pair with another. */
@@ -37,7 +35,7 @@ public class Card {
 		if (this == other) {
 			throw new IllegalArgumentException("Cards are identical");
 		}
-		return this.pairId == other.pairId;
+		return getPairId() == other.getPairId();
 	}
 
 	/** Check whether two cards form a matched pair. */
@@ -47,16 +45,22 @@ public class Card {
 
 	/** Whether this card has been matched already. */
 	public boolean isMatched() {
-		return matched;
+		return board.isMatched(id);
 	}
 
 	/** Set whether this card has been matched, and has therefore been removed from the board. */
 	public void setMatched(final boolean matched) {
-		this.matched = matched;
+		board.setMatched(id, matched);
+	}
+
+	/** Hash on the card id, so that hashed collections of Cards iterate in the same order from run to run. */
+	@Override
+	public int hashCode() {
+		return id;
 	}
 
 	@Override
 	public String toString() {
-		return "Card[" + id + ", " + pairId + ", " + matched + "]";
+		return "Card[" + id + ", " + getPairId() + ", " + isMatched() + "]";
 	}
 }
\ No newline at end of file
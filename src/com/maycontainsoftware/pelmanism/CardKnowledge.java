@@ -0,0 +1,180 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * What a computer player knows about the cards on the board, kept in primitive arrays indexed by card id and pair id.
+ * Knowledge is updated a card at a time as cards are seen, matched, restored or replaced, never rebuilt, so keeping it up
+ * to date costs the same on every turn however large the board is. Every set of cards is an IntPool, so a random card
+ * can be picked from any of them in constant time.
+ *
+ * Matches are picked up by reading the game's turn log from where the last update left off.
+ *
+ * Memory is perfect: every card seen is remembered until it leaves the board or is replaced. Computer players with an
+ * imperfect memory keep it in a LogMemory instead.
+ *
+ * @author Charlie
+ */
+final class CardKnowledge {
+
+	/** Cards still on the board. */
+	private final IntPool onBoard;
+
+	/** Cards on the board that have not been seen, or have been forgotten. */
+	private final IntPool unknown;
+
+	/** Cards on the board that have been seen and are remembered. */
+	private final IntPool seen;
+
+	/** Pair ids for which both cards are remembered. */
+	private final IntPool knownPairs;
+
+	/** The pair id each remembered card was seen to have, indexed by card id. Only valid for cards in seen. */
+	private final int[] rememberedPairIds;
+
+	/** The remembered cards of each pair id, two entries per pair id, each -1 if there is no such card. */
+	private final int[] pairCards;
+
+	/** The number of the game's turns that have been read. */
+	private int turnCursor;
+
+	/** Create knowledge of a game in which no card has been seen. */
+	CardKnowledge(final Pelmanism model) {
+		final int numberOfCards = model.getNumberOfCards();
+		final int pairIdLimit = model.getPairIdLimit();
+		onBoard = new IntPool(numberOfCards);
+		unknown = new IntPool(numberOfCards);
+		seen = new IntPool(numberOfCards);
+		knownPairs = new IntPool(pairIdLimit);
+		rememberedPairIds = new int[numberOfCards];
+		pairCards = new int[pairIdLimit * 2];
+		for (int i = 0; i < pairCards.length; i++) {
+			pairCards[i] = -1;
+		}
+		for (int i = 0; i < numberOfCards; i++) {
+			if (model.isCardPickable(i)) {
+				onBoard.add(i);
+				unknown.add(i);
+			}
+		}
+		turnCursor = model.getTurnCount();
+	}
+
+	/** Make this knowledge a copy of another's, of the same game. */
+	final void copyFrom(final CardKnowledge other) {
+		onBoard.copyFrom(other.onBoard);
+		unknown.copyFrom(other.unknown);
+		seen.copyFrom(other.seen);
+		knownPairs.copyFrom(other.knownPairs);
+		System.arraycopy(other.rememberedPairIds, 0, rememberedPairIds, 0, rememberedPairIds.length);
+		System.arraycopy(other.pairCards, 0, pairCards, 0, pairCards.length);
+		turnCursor = other.turnCursor;
+	}
+
+	/** Cards still on the board. */
+	final IntPool getOnBoard() {
+		return onBoard;
+	}
+
+	/** Cards on the board that are not remembered. */
+	final IntPool getUnknown() {
+		return unknown;
+	}
+
+	/** Cards on the board that are remembered. */
+	final IntPool getSeen() {
+		return seen;
+	}
+
+	/** Pair ids for which both cards are remembered. */
+	final IntPool getKnownPairs() {
+		return knownPairs;
+	}
+
+	/** Get one of the remembered cards of a pair id, or -1. */
+	final int getPairCard(final int pairId, final int index) {
+		return pairCards[pairId * 2 + index];
+	}
+
+	/** The remembered partner of a card, or -1 if the card or its partner is not remembered. */
+	final int getPartner(final int cardId) {
+		if (!seen.contains(cardId)) {
+			return -1;
+		}
+		final int pairId = rememberedPairIds[cardId];
+		final int first = pairCards[pairId * 2];
+		return (first == cardId) ? pairCards[pairId * 2 + 1] : first;
+	}
+
+	/** Read any turns played since the last update, removing the cards of any pairs found from the board. */
+	final void catchUp(final Pelmanism model) {
+		final int turnCount = model.getTurnCount();
+		if (model.isEndless()) {
+			// Found pairs are replaced rather than removed, and the replaced cards are reported separately
+			turnCursor = turnCount;
+			return;
+		}
+		for (; turnCursor < turnCount; turnCursor++) {
+			if (model.isTurnMatch(turnCursor)) {
+				matched(model.getTurnFirstPickId(turnCursor));
+				matched(model.getTurnSecondPickId(turnCursor));
+			}
+		}
+	}
+
+	/** Note that the game has been rewound to a turn, so turns from there on must be read again. */
+	final void rewound(final int turnId) {
+		turnCursor = Math.min(turnCursor, turnId);
+	}
+
+	/** Record a card as seen, with the given pair id. */
+	final void seen(final int cardId, final int pairId) {
+		if (!onBoard.contains(cardId)) {
+			return;
+		}
+		if (seen.contains(cardId)) {
+			if (rememberedPairIds[cardId] == pairId) {
+				return;
+			}
+			forget(cardId);
+		}
+		unknown.remove(cardId);
+		seen.add(cardId);
+		rememberedPairIds[cardId] = pairId;
+		final int slot = pairId * 2;
+		if (pairCards[slot] < 0) {
+			pairCards[slot] = cardId;
+		} else {
+			pairCards[slot + 1] = cardId;
+			knownPairs.add(pairId);
+		}
+	}
+
+	/** Forget a card, which goes back to being unknown. */
+	final void forget(final int cardId) {
+		if (!seen.contains(cardId)) {
+			return;
+		}
+		final int pairId = rememberedPairIds[cardId];
+		final int slot = pairId * 2;
+		if (pairCards[slot] == cardId) {
+			pairCards[slot] = pairCards[slot + 1];
+		}
+		pairCards[slot + 1] = -1;
+		knownPairs.remove(pairId);
+		seen.remove(cardId);
+		unknown.add(cardId);
+	}
+
+	/** Remove a matched card from the board. */
+	final void matched(final int cardId) {
+		forget(cardId);
+		unknown.remove(cardId);
+		onBoard.remove(cardId);
+	}
+
+	/** Put a card back on the board after the turn that matched it has been rewound, remembering its pair id. */
+	final void restored(final int cardId, final int pairId) {
+		onBoard.add(cardId);
+		unknown.add(cardId);
+		seen(cardId, pairId);
+	}
+}
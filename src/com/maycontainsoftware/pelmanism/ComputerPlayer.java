@@ -0,0 +1,41 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * A computer player. The game screen drives every computer player the same way: it shows the player every card turned
+ * over, by anyone, and on the player's turn asks it to update, then to pick a first card, then, once that card has been
+ * turned over, a second.
+ *
+ * @author Charlie
+ */
+public interface ComputerPlayer {
+
+	/** Log a card as having been seen. */
+	void cardSeen(Card card);
+
+	/** Put a card back on the table after the turn that matched it has been rewound. Its face was seen at the time. */
+	void cardRestored(Card card);
+
+	/** Note that the game has been rewound, so that turns played from now on are read again. */
+	void gameRewound();
+
+	/** Forget a card that an endless game has replaced with a different one, which has not been seen yet. */
+	void cardReplaced(Card card);
+
+	/** Update information about the cards on the table, ready for a new move. */
+	void updateCards();
+
+	/** Pick the first card of a move. */
+	Card pickFirstCard();
+
+	/** Pick the second card of a move, after the first has been turned over and seen. */
+	Card pickSecondCard();
+
+	/**
+	 * Save the player's state, including where its random numbers have got to, so that a move can be started and then
+	 * taken back by restore(). Only updateCards() and the picks may be called in between.
+	 */
+	void checkpoint();
+
+	/** Go back to the state saved by the last checkpoint(), as if nothing since had happened. */
+	void restore();
+}
@@ -0,0 +1,103 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * How hard one deal was for DealAnalyzer's reference players: the turns its playouts took to clear the board, and how
+ * often the player who moved first won.
+ *
+ * @author Charlie
+ */
+public final class DealAnalysis {
+
+	/** The number of playouts. */
+	private long playouts;
+
+	/** The total number of turns taken. */
+	private long turns;
+
+	/** The total of the squares of the numbers of turns taken. */
+	private long turnSquares;
+
+	/** The number of playouts won by the player who moved first. */
+	private long firstWins;
+
+	/** The number of playouts won by the player who moved second. */
+	private long secondWins;
+
+	DealAnalysis() {
+	}
+
+	/** Count a playout. */
+	final void addPlayout(final int turns, final int firstScore, final int secondScore) {
+		playouts++;
+		this.turns += turns;
+		turnSquares += (long) turns * turns;
+		if (firstScore > secondScore) {
+			firstWins++;
+		} else if (secondScore > firstScore) {
+			secondWins++;
+		}
+	}
+
+	/** Add another analysis's playouts of the same deal to this one's. */
+	final void merge(final DealAnalysis other) {
+		playouts += other.playouts;
+		turns += other.turns;
+		turnSquares += other.turnSquares;
+		firstWins += other.firstWins;
+		secondWins += other.secondWins;
+	}
+
+	/** The number of playouts. */
+	public final long getPlayouts() {
+		return playouts;
+	}
+
+	/** The mean number of turns taken to clear the board. */
+	public final double getMeanTurns() {
+		return (double) turns / playouts;
+	}
+
+	/** The standard error of the mean number of turns. */
+	public final double getMeanTurnsError() {
+		final double mean = getMeanTurns();
+		final double variance = Math.max((double) turnSquares / playouts - mean * mean, 0.0);
+		return Math.sqrt(variance / playouts);
+	}
+
+	/** The share of playouts won by the player who moved first. */
+	public final double getFirstWinRate() {
+		return (double) firstWins / playouts;
+	}
+
+	/** The share of playouts won by the player who moved second. */
+	public final double getSecondWinRate() {
+		return (double) secondWins / playouts;
+	}
+
+	/** The share of playouts tied. */
+	public final double getTieRate() {
+		return (double) (playouts - firstWins - secondWins) / playouts;
+	}
+
+	/**
+	 * The first mover's advantage: the share of playouts won by the player who moved first, less the share won by the
+	 * player who moved second. Zero is a fair deal; it lies between -1 and 1.
+	 */
+	public final double getFirstMoverAdvantage() {
+		return (double) (firstWins - secondWins) / playouts;
+	}
+
+	/** The standard error of the first mover's advantage. */
+	public final double getFirstMoverAdvantageError() {
+		// Each playout scores 1, 0 or -1
+		final double mean = getFirstMoverAdvantage();
+		final double meanOfSquares = (double) (firstWins + secondWins) / playouts;
+		return Math.sqrt(Math.max(meanOfSquares - mean * mean, 0.0) / playouts);
+	}
+
+	@Override
+	public String toString() {
+		return Math.round(getMeanTurns() * 100) / 100.0 + " turns, first mover advantage "
+				+ Math.round(getFirstMoverAdvantage() * 1000) / 1000.0 + " over " + playouts + " playouts";
+	}
+}
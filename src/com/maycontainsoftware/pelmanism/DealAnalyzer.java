@@ -0,0 +1,271 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores how hard one deal is, by playing it out many times between two reference players and measuring the turns taken
+ * to clear the board and how much more often the player who moves first wins.
+ *
+ * A player who turns unseen cards at random would find every deal alike, since any deal is then as likely to be played
+ * in any order. So the reference player turns new cards in reading order, as many people do: it takes a pair it
+ * remembers if it can, and otherwise turns the first card nobody has turned yet, then that card's partner if it
+ * remembers it, and otherwise the next card nobody has turned. Once every card has been turned, it turns cards it does
+ * not remember at random instead, as starting the sweep again could go round forever missing a pair whose cards are
+ * further apart than it can remember. It remembers at most REFERENCE_MEMORY_CAPACITY cards, forgetting the least
+ * recently seen first, and forgets each card it remembers with probability REFERENCE_MEMORY_DECAY every turn it plays.
+ * A deal whose pairs lie close together in reading order is then quick to clear, and one whose early pairs fall to the
+ * first mover gives them the lead.
+ *
+ * Playouts are played in blocks, each with its own random number stream seeded from the seed and the block's index, so
+ * the analysis depends only on the deal, the number of playouts and the seed, not on the number of threads.
+ *
+ * @author Charlie
+ */
+public final class DealAnalyzer {
+
+	/** The largest number of pairs supported, so that every card fits in a long. */
+	public static final int MAX_PAIRS = 32;
+
+	/** The number of playouts in each block. */
+	public static final int PLAYOUTS_PER_BLOCK = 256;
+
+	/** The most cards the reference player remembers at once. */
+	public static final int REFERENCE_MEMORY_CAPACITY = 7;
+
+	/** The probability that the reference player forgets each card it remembers, every turn it plays. */
+	public static final float REFERENCE_MEMORY_DECAY = 0.1f;
+
+	/** The number of playouts of each deal. */
+	private final int playouts;
+
+	/**
+	 * Create an analyzer.
+	 *
+	 * @param playouts
+	 *            The number of playouts of each deal.
+	 */
+	public DealAnalyzer(final int playouts) {
+		if (playouts <= 0) {
+			throw new IllegalArgumentException("playouts = " + playouts);
+		}
+		this.playouts = playouts;
+	}
+
+	/**
+	 * The deal a generator makes from a deal seed: the pair id of each card, indexed by card id. This is the deal a game
+	 * with that seed among its deal seeds is given.
+	 */
+	public static int[] deal(final DealGenerator dealGenerator, final long dealSeed) {
+		final int[] deal = new int[dealGenerator.getNumberOfCards()];
+		dealGenerator.deal(deal, 0, new RandomStream(dealSeed));
+		return deal;
+	}
+
+	/**
+	 * Play a deal out between two reference players.
+	 *
+	 * @param deal
+	 *            The pair id of each card, indexed by card id. Each pair id from zero upwards must appear exactly twice.
+	 * @param seed
+	 *            The seed from which every playout is played.
+	 * @param executor
+	 *            The executor to play on, or null to play on the calling thread.
+	 * @param threads
+	 *            The number of threads to play on.
+	 */
+	public final DealAnalysis analyze(final int[] deal, final long seed, final ExecutorService executor,
+			final int threads) {
+		if (threads <= 0 || (executor == null && threads != 1)) {
+			throw new IllegalArgumentException("threads = " + threads);
+		}
+		final int[] partners = getPartners(deal);
+		final int blocks = (playouts + PLAYOUTS_PER_BLOCK - 1) / PLAYOUTS_PER_BLOCK;
+		final AtomicInteger nextBlock = new AtomicInteger();
+		if (executor == null) {
+			return playBlocks(partners, nextBlock, blocks, seed);
+		}
+		final List<Future<DealAnalysis>> workers = new ArrayList<Future<DealAnalysis>>(threads);
+		for (int t = 0; t < threads; t++) {
+			workers.add(executor.submit(new Callable<DealAnalysis>() {
+				@Override
+				public DealAnalysis call() {
+					return playBlocks(partners, nextBlock, blocks, seed);
+				}
+			}));
+		}
+		final DealAnalysis analysis = new DealAnalysis();
+		for (final Future<DealAnalysis> worker : workers) {
+			try {
+				analysis.merge(worker.get());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while analyzing");
+			} catch (final ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return analysis;
+	}
+
+	/** Check that a deal is valid, and return the id of each card's partner. */
+	private static int[] getPartners(final int[] deal) {
+		if (deal == null || deal.length == 0 || deal.length % 2 != 0 || deal.length > 2 * MAX_PAIRS) {
+			throw new IllegalArgumentException("Deal must contain a positive, even number of cards, at most "
+					+ 2 * MAX_PAIRS);
+		}
+		final int numberOfPairs = deal.length / 2;
+		final int[] firstCards = new int[numberOfPairs];
+		final int[] partners = new int[deal.length];
+		for (int i = 0; i < numberOfPairs; i++) {
+			firstCards[i] = -1;
+		}
+		for (int card = 0; card < deal.length; card++) {
+			final int pairId = deal[card];
+			if (pairId < 0 || pairId >= numberOfPairs || firstCards[pairId] == Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Invalid pair id in deal: " + pairId);
+			}
+			final int first = firstCards[pairId];
+			if (first < 0) {
+				firstCards[pairId] = card;
+			} else {
+				partners[first] = card;
+				partners[card] = first;
+				// The pair is complete
+				firstCards[pairId] = Integer.MAX_VALUE;
+			}
+		}
+		return partners;
+	}
+
+	/** Claim and play blocks until there are none left, counting the playouts in an analysis of this thread's own. */
+	private DealAnalysis playBlocks(final int[] partners, final AtomicInteger nextBlock, final int blocks,
+			final long seed) {
+		final DealAnalysis analysis = new DealAnalysis();
+		final long[] memories = new long[2];
+		final int[] seenAt = new int[partners.length];
+		final int[] scores = new int[2];
+		for (int block = nextBlock.getAndIncrement(); block < blocks; block = nextBlock.getAndIncrement()) {
+			final RandomStream random = new RandomStream(RandomStream.seedFor(seed, block));
+			final int end = Math.min((block + 1) * PLAYOUTS_PER_BLOCK, playouts);
+			for (int p = block * PLAYOUTS_PER_BLOCK; p < end; p++) {
+				final int turns = playOut(partners, random, memories, seenAt, scores);
+				analysis.addPlayout(turns, scores[0], scores[1]);
+			}
+		}
+		return analysis;
+	}
+
+	/**
+	 * Play a deal out once, leaving each player's score in scores, and return the number of turns taken. Both players
+	 * see every card turned, so the time each card was last seen is the same for both.
+	 */
+	private static int playOut(final int[] partners, final RandomStream random, final long[] memories,
+			final int[] seenAt, final int[] scores) {
+		long board = (partners.length == 64) ? -1L : (1L << partners.length) - 1;
+		long unturned = board;
+		memories[0] = 0;
+		memories[1] = 0;
+		scores[0] = 0;
+		scores[1] = 0;
+		int clock = 0;
+		int player = 0;
+		int turns = 0;
+		while (board != 0) {
+			turns++;
+
+			// Forget some cards
+			long memory = memories[player];
+			for (long rest = memory; rest != 0; rest &= rest - 1) {
+				if (random.nextFloat() < REFERENCE_MEMORY_DECAY) {
+					memory &= ~Long.lowestOneBit(rest);
+				}
+			}
+			memories[player] = memory;
+
+			// Take a remembered pair, or else turn a new card
+			long known = 0;
+			for (long rest = memory; rest != 0; rest &= rest - 1) {
+				final int card = Long.numberOfTrailingZeros(rest);
+				if (((memory >>> partners[card]) & 1L) != 0 && card < partners[card]) {
+					known |= 1L << card;
+				}
+			}
+			final int first;
+			final int second;
+			if (known != 0) {
+				first = Long.numberOfTrailingZeros(known);
+				second = partners[first];
+				clock = see(first, clock, memories, seenAt);
+			} else {
+				first = pickNew(board & ~memory, unturned, random);
+				clock = see(first, clock, memories, seenAt);
+				if (((memories[player] >>> partners[first]) & 1L) != 0) {
+					second = partners[first];
+				} else {
+					second = pickNew(board & ~memories[player], unturned & ~(1L << first), random);
+				}
+			}
+			clock = see(second, clock, memories, seenAt);
+			unturned &= ~((1L << first) | (1L << second));
+
+			if (partners[first] == second) {
+				final long pair = (1L << first) | (1L << second);
+				board &= ~pair;
+				memories[0] &= ~pair;
+				memories[1] &= ~pair;
+				scores[player]++;
+			} else {
+				player ^= 1;
+			}
+		}
+		return turns;
+	}
+
+	/**
+	 * Pick a card not remembered: the first in reading order that has never been turned, or else one at random.
+	 *
+	 * @param forgotten
+	 *            The cards on the board not remembered, of which there is always at least one.
+	 * @param unturned
+	 *            The cards that have never been turned, all of which are among the forgotten.
+	 */
+	private static int pickNew(final long forgotten, final long unturned, final RandomStream random) {
+		if (unturned != 0) {
+			return Long.numberOfTrailingZeros(unturned);
+		}
+		long rest = forgotten;
+		for (int n = random.nextInt(Long.bitCount(forgotten)); n > 0; n--) {
+			rest &= rest - 1;
+		}
+		return Long.numberOfTrailingZeros(rest);
+	}
+
+	/**
+	 * Both players see a card, each forgetting the card they saw longest ago if they now remember too many. Returns the
+	 * clock after the card was seen.
+	 */
+	private static int see(final int card, final int clock, final long[] memories, final int[] seenAt) {
+		seenAt[card] = clock;
+		for (int p = 0; p < memories.length; p++) {
+			long memory = memories[p] | (1L << card);
+			if (Long.bitCount(memory) > REFERENCE_MEMORY_CAPACITY) {
+				int oldest = -1;
+				for (long rest = memory; rest != 0; rest &= rest - 1) {
+					final int c = Long.numberOfTrailingZeros(rest);
+					if (oldest < 0 || seenAt[c] < seenAt[oldest]) {
+						oldest = c;
+					}
+				}
+				memory &= ~(1L << oldest);
+			}
+			memories[p] = memory;
+		}
+		return clock + 1;
+	}
+}
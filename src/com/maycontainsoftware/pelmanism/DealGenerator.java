@@ -0,0 +1,208 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Generates random deals: layouts of pair ids over the cards of a board. Deals are written straight into an int array
+ * supplied by the caller, so generating a deal allocates nothing.
+ *
+ * A deal can optionally be constrained so that the two cards of a pair never lie next to each other on the board grid.
+ * Constrained deals are generated by shuffling and then repairing each conflicting card by swapping it with a random
+ * card that fits, rather than by rejecting whole deals, which would almost never succeed on the larger boards.
+ *
+ * @author Charlie
+ */
+public final class DealGenerator {
+
+	/** Constraints that can be placed on the layout of a deal. */
+	public static enum Constraint {
+		/** Any layout is allowed. */
+		NONE,
+		/** The two cards of a pair may not be horizontally or vertically adjacent. */
+		NO_ADJACENT_PAIRS,
+		/** The two cards of a pair may not be adjacent in any direction, including diagonally. */
+		NO_TOUCHING_PAIRS,
+	}
+
+	/** How many random swap partners to try when repairing a card, before starting the deal again. */
+	private static final int REPAIR_ATTEMPTS = 64;
+
+	/** How many times to start a constrained deal again before giving up. */
+	private static final int MAX_RESTARTS = 100;
+
+	/** The number of cards in each deal. */
+	private final int numberOfCards;
+
+	/** The layout constraint. */
+	private final Constraint constraint;
+
+	/**
+	 * Index into neighbours of the first neighbour of each card, with one extra entry marking the end of the last
+	 * card's neighbours. Null if the deal is unconstrained.
+	 */
+	private final int[] neighbourStart;
+
+	/** The ids of the neighbours of each card, card by card. Null if the deal is unconstrained. */
+	private final int[] neighbours;
+
+	/**
+	 * Create a generator of unconstrained deals.
+	 *
+	 * @param numberOfPairs
+	 *            The number of pairs in each deal.
+	 */
+	public DealGenerator(final int numberOfPairs) {
+		if (numberOfPairs <= 0) {
+			throw new IllegalArgumentException("numberOfPairs = " + numberOfPairs);
+		}
+		this.numberOfCards = numberOfPairs * 2;
+		this.constraint = Constraint.NONE;
+		this.neighbourStart = null;
+		this.neighbours = null;
+	}
+
+	/**
+	 * Create a generator of deals for a grid, with card ids running along each row in turn.
+	 *
+	 * @param columns
+	 *            The number of columns in the grid.
+	 * @param rows
+	 *            The number of rows in the grid.
+	 * @param constraint
+	 *            The layout constraint.
+	 */
+	public DealGenerator(final int columns, final int rows, final Constraint constraint) {
+		if (columns <= 0 || rows <= 0 || (columns * rows) % 2 != 0) {
+			throw new IllegalArgumentException("Invalid grid: " + columns + "x" + rows);
+		}
+		this.numberOfCards = columns * rows;
+		this.constraint = constraint;
+
+		if (constraint == Constraint.NONE) {
+			this.neighbourStart = null;
+			this.neighbours = null;
+			return;
+		}
+
+		// Work out the neighbours of every card
+		final boolean diagonals = (constraint == Constraint.NO_TOUCHING_PAIRS);
+		neighbourStart = new int[numberOfCards + 1];
+		final int[] found = new int[numberOfCards * (diagonals ? 8 : 4)];
+		int count = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				neighbourStart[c + r * columns] = count;
+				for (int dr = -1; dr <= 1; dr++) {
+					for (int dc = -1; dc <= 1; dc++) {
+						if ((dr == 0 && dc == 0) || (!diagonals && dr != 0 && dc != 0)) {
+							continue;
+						}
+						final int nr = r + dr;
+						final int nc = c + dc;
+						if (nr >= 0 && nr < rows && nc >= 0 && nc < columns) {
+							found[count++] = nc + nr * columns;
+						}
+					}
+				}
+			}
+		}
+		neighbourStart[numberOfCards] = count;
+		neighbours = new int[count];
+		System.arraycopy(found, 0, neighbours, 0, count);
+	}
+
+	/** Create a generator of deals for the board used at a given difficulty. */
+	public static DealGenerator forDifficulty(final Difficulty difficulty, final Constraint constraint) {
+		return new DealGenerator(difficulty.getBoardColumns(), difficulty.getBoardRows(), constraint);
+	}
+
+	/** The number of cards in each deal. */
+	public final int getNumberOfCards() {
+		return numberOfCards;
+	}
+
+	/** The number of pairs in each deal. */
+	public final int getNumberOfPairs() {
+		return numberOfCards / 2;
+	}
+
+	/** The layout constraint. */
+	public final Constraint getConstraint() {
+		return constraint;
+	}
+
+	/**
+	 * Generate a deal.
+	 *
+	 * @param buffer
+	 *            The array to write the deal to. The pair id of card i is written to buffer[offset + i].
+	 * @param offset
+	 *            The offset of the deal within the array.
+	 * @param random
+	 *            The random number stream to deal with.
+	 * @throws IllegalStateException
+	 *             If the layout constraint could not be satisfied.
+	 */
+	public void deal(final int[] buffer, final int offset, final RandomStream random) {
+		for (int restart = 0; restart < MAX_RESTARTS; restart++) {
+			shuffle(buffer, offset, random);
+			if (neighbours == null || repair(buffer, offset, random)) {
+				return;
+			}
+		}
+		throw new IllegalStateException("Could not satisfy " + constraint + " on " + numberOfCards + " cards");
+	}
+
+	/** Lay out all the pairs in a random order, using an "inside-out" Fisher-Yates shuffle. */
+	private void shuffle(final int[] buffer, final int offset, final RandomStream random) {
+		for (int i = 0; i < numberOfCards; i++) {
+			final int j = random.nextInt(i + 1);
+			buffer[offset + i] = buffer[offset + j];
+			buffer[offset + j] = i >>> 1;
+		}
+	}
+
+	/**
+	 * Swap cards around until no card breaks the layout constraint. Every conflict involves the card being repaired,
+	 * and a swap is only made if it leaves both swapped cards clear, so no swap can introduce a new conflict.
+	 *
+	 * @return False if a card could not be repaired and the deal should be started again.
+	 */
+	private boolean repair(final int[] buffer, final int offset, final RandomStream random) {
+		for (int i = 0; i < numberOfCards; i++) {
+			if (!hasConflict(buffer, offset, i, buffer[offset + i])) {
+				continue;
+			}
+			boolean repaired = false;
+			for (int attempt = 0; attempt < REPAIR_ATTEMPTS && !repaired; attempt++) {
+				final int j = random.nextInt(numberOfCards);
+				final int pairI = buffer[offset + i];
+				final int pairJ = buffer[offset + j];
+				if (pairI == pairJ) {
+					continue;
+				}
+				// Try the swap, and undo it if either card is left in conflict
+				buffer[offset + i] = pairJ;
+				buffer[offset + j] = pairI;
+				if (hasConflict(buffer, offset, i, pairJ) || hasConflict(buffer, offset, j, pairI)) {
+					buffer[offset + i] = pairI;
+					buffer[offset + j] = pairJ;
+				} else {
+					repaired = true;
+				}
+			}
+			if (!repaired) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Whether any neighbour of a card has the given pair id. */
+	private boolean hasConflict(final int[] buffer, final int offset, final int cardId, final int pairId) {
+		for (int n = neighbourStart[cardId]; n < neighbourStart[cardId + 1]; n++) {
+			if (buffer[offset + neighbours[n]] == pairId) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -8,16 +8,16 @@ package com.maycontainsoftware.pelmanism;
  */
 public enum Difficulty {
 	// Easy difficulty
-	Easy(3, 4, 0.3f),
+	Easy(3, 4, 0.3f, 4, 0.15f, AIStrategy.Simple),
 	// Medium difficulty
-	Medium(4, 5, 0.5f),
+	Medium(4, 5, 0.5f, 8, 0.05f, AIStrategy.Simple),
 	// Hard difficulty
-	Hard(5, 6, 0.9f);
+	Hard(5, 6, 0.9f, 20, 0.01f, AIStrategy.Simple);
 
 	// Difficulties used for testing purposes
-	// Easy(1, 2, 0.3f),
-	// Medium(2, 2, 0.5f),
-	// Hard(3, 2, 0.9f);
+	// Easy(1, 2, 0.3f, 4, 0.15f, AIStrategy.Simple),
+	// Medium(2, 2, 0.5f, 8, 0.05f, AIStrategy.Simple),
+	// Hard(3, 2, 0.9f, 20, 0.01f, AIStrategy.Simple);
 
 	/** The number of columns on the board. */
 	private final int numberOfColumns;
@@ -28,16 +28,33 @@ public enum Difficulty {
 	/** AI intelligence rating. */
 	private final float aiIntelligence;
 
+	/** The maximum number of cards the AI remembers at once. */
+	private final int aiMemoryCapacity;
+
+	/** The probability that the AI forgets each card it remembers, every turn it plays. */
+	private final float aiMemoryDecay;
+
+	/** The kind of computer player. */
+	private final AIStrategy aiStrategy;
+
 	/**
 	 * Construct a new difficulty setting.
 	 * 
 	 * @param numberOfColumns
 	 * @param numberOfRows
+	 * @param aiIntelligence
+	 * @param aiMemoryCapacity
+	 * @param aiMemoryDecay
+	 * @param aiStrategy
 	 */
-	private Difficulty(final int numberOfColumns, final int numberOfRows, final float aiIntelligence) {
+	private Difficulty(final int numberOfColumns, final int numberOfRows, final float aiIntelligence,
+			final int aiMemoryCapacity, final float aiMemoryDecay, final AIStrategy aiStrategy) {
 		this.numberOfColumns = numberOfColumns;
 		this.numberOfRows = numberOfRows;
 		this.aiIntelligence = aiIntelligence;
+		this.aiMemoryCapacity = aiMemoryCapacity;
+		this.aiMemoryDecay = aiMemoryDecay;
+		this.aiStrategy = aiStrategy;
 	}
 
 	/** The number of pairs on the board in this difficulty mode. */
@@ -64,4 +81,28 @@ public enum Difficulty {
 	public float getAiIntelligence() {
 		return aiIntelligence;
 	}
+
+	/** The maximum number of cards the AI remembers at once. When its memory is full, it forgets the oldest. */
+	public int getAiMemoryCapacity() {
+		return aiMemoryCapacity;
+	}
+
+	/** The probability that the AI forgets each card it remembers, every turn it plays. */
+	public float getAiMemoryDecay() {
+		return aiMemoryDecay;
+	}
+
+	/** The kind of computer player at this difficulty. */
+	public AIStrategy getAiStrategy() {
+		return aiStrategy;
+	}
+
+	/**
+	 * Create the computer player for a game at this difficulty. Games the difficulty's strategy cannot play get a Simple
+	 * computer player instead.
+	 */
+	public ComputerPlayer createComputerPlayer(final Pelmanism model, final long seed) {
+		final AIStrategy strategy = aiStrategy.supports(model) ? aiStrategy : AIStrategy.Simple;
+		return strategy.create(this, model, seed);
+	}
 }
\ No newline at end of file
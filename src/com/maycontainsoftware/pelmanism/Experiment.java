@@ -0,0 +1,119 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Compares two computer players by playing games between them until a StoppingRule can call the comparison, rather
+ * than for a number of games guessed beforehand. The games are those of a two-seat Simulation, played a look at a
+ * time: after each look the results so far are passed to a listener and checked against the rule.
+ *
+ * The first look is at one of the simulation's chunks of games, and each look after plays twice as many as the last,
+ * up to the look size, so that a large difference is called after a few hundred games while a small one is not
+ * looked at needlessly often. The looks fall at the same numbers of games whatever the number of threads, so the
+ * verdict and the number of games it took depend only on the seed.
+ *
+ * @author Charlie
+ */
+public final class Experiment {
+
+	/** The outcome of an experiment. */
+	public enum Verdict {
+		// The first seat is the stronger
+		FirstStronger,
+		// The second seat is the stronger
+		SecondStronger,
+		// Neither seat is stronger by more than the rule can tell
+		Level,
+		// The most games allowed were played without a verdict
+		Undecided
+	}
+
+	/** Told of the results so far after every look. */
+	public interface Listener {
+
+		/** The results of every game so far, after a look. */
+		void looked(SimulationResult soFar);
+	}
+
+	/** The default largest number of games in a look. */
+	public static final int DEFAULT_GAMES_PER_LOOK = 16 * Simulation.GAMES_PER_CHUNK;
+
+	/** The simulation whose games are played. */
+	private final Simulation simulation;
+
+	/** The rule for when to stop. */
+	private final StoppingRule rule;
+
+	/** The most games to play. */
+	private final long maxGames;
+
+	/** The largest number of simulation chunks in a look. */
+	private final int chunksPerLook;
+
+	/** Create an experiment with the default largest number of games in a look. */
+	public Experiment(final Simulation simulation, final StoppingRule rule, final long maxGames) {
+		this(simulation, rule, maxGames, DEFAULT_GAMES_PER_LOOK);
+	}
+
+	/**
+	 * Create an experiment.
+	 *
+	 * @param simulation
+	 *            A simulation with two seats.
+	 * @param rule
+	 *            The rule for when to stop.
+	 * @param maxGames
+	 *            The most games to play.
+	 * @param gamesPerLook
+	 *            The largest number of games between looks, which is rounded up to whole simulation chunks. Fewer
+	 *            games can stop sooner; more keep every thread busy for longer between looks.
+	 */
+	public Experiment(final Simulation simulation, final StoppingRule rule, final long maxGames,
+			final int gamesPerLook) {
+		if (simulation.getNumberOfSeats() != 2) {
+			throw new IllegalArgumentException("An experiment compares two seats, not " + simulation.getNumberOfSeats());
+		}
+		if (maxGames <= 0 || gamesPerLook <= 0) {
+			throw new IllegalArgumentException("maxGames = " + maxGames + ", gamesPerLook = " + gamesPerLook);
+		}
+		this.simulation = simulation;
+		this.rule = rule;
+		this.maxGames = maxGames;
+		this.chunksPerLook = (gamesPerLook + Simulation.GAMES_PER_CHUNK - 1) / Simulation.GAMES_PER_CHUNK;
+	}
+
+	/**
+	 * Play games until the rule gives a verdict or the most games have been played.
+	 *
+	 * @param seed
+	 *            The seed from which every game is dealt and played.
+	 * @param executor
+	 *            The executor to play on, or null to play on the calling thread.
+	 * @param threads
+	 *            The number of threads to play on.
+	 * @param listener
+	 *            Told of the results after every look, or null.
+	 */
+	public final ExperimentResult run(final long seed, final ExecutorService executor, final int threads,
+			final Listener listener) {
+		final long start = System.nanoTime();
+		final long totalChunks = (maxGames + Simulation.GAMES_PER_CHUNK - 1) / Simulation.GAMES_PER_CHUNK;
+		final SimulationResult result = new SimulationResult(2);
+		int look = 0;
+		long chunks = 1;
+		for (long chunk = 0; chunk < totalChunks; chunk += chunks) {
+			chunks = Math.min(Math.min(1L << Math.min(look, 30), chunksPerLook), totalChunks - chunk);
+			result.merge(simulation.run(chunk, chunks, maxGames, seed, executor, threads));
+			result.setNanos(System.nanoTime() - start);
+			look++;
+			if (listener != null) {
+				listener.looked(result);
+			}
+			final Verdict verdict = rule.check(result, look);
+			if (verdict != null) {
+				return new ExperimentResult(verdict, result, look);
+			}
+		}
+		return new ExperimentResult(Verdict.Undecided, result, look);
+	}
+}
@@ -0,0 +1,44 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * The outcome of an Experiment: its verdict, the results of every game it played, and how many looks it took.
+ *
+ * @author Charlie
+ */
+public final class ExperimentResult {
+
+	/** The verdict. */
+	private final Experiment.Verdict verdict;
+
+	/** The results of every game played. */
+	private final SimulationResult result;
+
+	/** The number of looks taken. */
+	private final int looks;
+
+	ExperimentResult(final Experiment.Verdict verdict, final SimulationResult result, final int looks) {
+		this.verdict = verdict;
+		this.result = result;
+		this.looks = looks;
+	}
+
+	/** The verdict. */
+	public final Experiment.Verdict getVerdict() {
+		return verdict;
+	}
+
+	/** The results of every game played. */
+	public final SimulationResult getResult() {
+		return result;
+	}
+
+	/** The number of looks taken. */
+	public final int getLooks() {
+		return looks;
+	}
+
+	/** The first seat's mean score, counting a tie as half a win. */
+	public final double getScore() {
+		return (result.getWins(0) + result.getTies() / 2.0) / result.getGames();
+	}
+}
@@ -0,0 +1,186 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a game record written by GameRecordWriter, replaying it into a fresh game model. The record is streamed
+ * through a small fixed buffer, so records of any length can be replayed without loading them into memory.
+ *
+ * @author Charlie
+ */
+public class GameRecordReader {
+
+	/** The size of the read buffer. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The channel the record is read from. */
+	private final ReadableByteChannel channel;
+
+	/** Buffer holding data read from the channel but not yet decoded. */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** Whether the channel has reached end-of-stream. */
+	private boolean endOfStream;
+
+	/** The seed stored in the record header. */
+	private final long seed;
+
+	/** The number of players in the recorded game. */
+	private final int numberOfPlayers;
+
+	/** The recorded deal: the pair id of each card. */
+	private final int[] deal;
+
+	/** The first pick of the most recently decoded turn. */
+	private int previousFirstPick;
+
+	/**
+	 * Start reading a record. The header is read immediately.
+	 *
+	 * @param channel
+	 *            The channel to read the record from.
+	 * @throws IOException
+	 *             If the channel cannot be read, or does not hold a valid record.
+	 */
+	public GameRecordReader(final ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.flip();
+
+		// Header
+		require(13);
+		if (buffer.getInt() != GameRecordWriter.MAGIC) {
+			throw new IOException("Not a game record");
+		}
+		final byte version = buffer.get();
+		if (version != GameRecordWriter.VERSION) {
+			throw new IOException("Unsupported record version: " + version);
+		}
+		seed = buffer.getLong();
+		numberOfPlayers = getVarint();
+		final int numberOfPairs = getVarint();
+		if (numberOfPlayers <= 0 || numberOfPairs <= 0) {
+			throw new IOException("Invalid record header");
+		}
+
+		// Deal
+		deal = new int[numberOfPairs * 2];
+		for (int i = 0; i < deal.length; i++) {
+			deal[i] = getVarint();
+		}
+	}
+
+	/** The seed stored in the record header. */
+	public final long getSeed() {
+		return seed;
+	}
+
+	/** The number of players in the recorded game. */
+	public final int getNumberOfPlayers() {
+		return numberOfPlayers;
+	}
+
+	/** The number of pairs in the recorded game. */
+	public final int getNumberOfPairs() {
+		return deal.length / 2;
+	}
+
+	/** Create a new game model with the recorded players and deal, ready to have the recorded turns replayed into it. */
+	public Pelmanism createGame() throws IOException {
+		try {
+			return new Pelmanism(numberOfPlayers, deal);
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Invalid deal in record: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Read the next turn from the record and play it.
+	 *
+	 * @param model
+	 *            The game model to play the turn into, as created by createGame().
+	 * @return True if a turn was played, false if the record holds no more turns.
+	 * @throws IOException
+	 *             If the channel cannot be read, or the turn is not valid in the game.
+	 */
+	public boolean replayTurn(final Pelmanism model) throws IOException {
+		if (!buffer.hasRemaining() && !fill()) {
+			return false;
+		}
+		final int firstPick = previousFirstPick + GameRecordWriter.unzigzag(getVarint());
+		final int secondPick = firstPick + GameRecordWriter.unzigzag(getVarint());
+		try {
+			model.turn(firstPick, secondPick);
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Invalid turn in record: " + e.getMessage());
+		}
+		previousFirstPick = firstPick;
+		return true;
+	}
+
+	/**
+	 * Replay a whole record into a fresh game model.
+	 *
+	 * @param channel
+	 *            The channel to read the record from.
+	 * @return The game model, in the state it was in when the record was last flushed.
+	 */
+	public static Pelmanism replay(final ReadableByteChannel channel) throws IOException {
+		final GameRecordReader reader = new GameRecordReader(channel);
+		final Pelmanism model = reader.createGame();
+		while (reader.replayTurn(model)) {
+			// Keep going
+		}
+		return model;
+	}
+
+	/** Decode an unsigned varint. */
+	private int getVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (!buffer.hasRemaining() && !fill()) {
+				throw new IOException("Truncated record");
+			}
+			final byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/** Make sure at least the given number of bytes are buffered. */
+	private void require(final int bytes) throws IOException {
+		while (buffer.remaining() < bytes) {
+			if (!fill()) {
+				throw new IOException("Truncated record");
+			}
+		}
+	}
+
+	/**
+	 * Read more data from the channel into the buffer.
+	 *
+	 * @return False if no more data could be read because the channel is at end-of-stream.
+	 */
+	private boolean fill() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		buffer.compact();
+		try {
+			int read;
+			do {
+				read = channel.read(buffer);
+			} while (read == 0 && buffer.hasRemaining());
+			if (read < 0) {
+				endOfStream = true;
+			}
+		} finally {
+			buffer.flip();
+		}
+		return buffer.hasRemaining();
+	}
+}
@@ -0,0 +1,159 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a game to a compact binary record, incrementally, as turns are played.
+ *
+ * A record starts with a header: a magic number, a format version, the seed the deal was generated from, the number of
+ * players, the number of pairs, and then the pair id of every card. Turns follow, each as two varints: the first pick
+ * as a zigzag-encoded delta from the previous turn's first pick, and the second pick as a zigzag-encoded delta from the
+ * first. Everything else about a turn - the player, whether it matched, whether it ended the game - follows from the
+ * deal and the picks, so is recovered on replay rather than stored. On the standard boards that is two bytes a turn.
+ *
+ * @author Charlie
+ */
+public class GameRecordWriter implements Closeable {
+
+	/** Magic number at the start of every record: "PLMR". */
+	static final int MAGIC = 0x504C4D52;
+
+	/** The version of the record format. */
+	static final byte VERSION = 1;
+
+	/** The size of the write buffer. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The channel the record is written to. */
+	private final WritableByteChannel channel;
+
+	/** The game being recorded. */
+	private final Pelmanism model;
+
+	/** Buffer holding encoded data not yet written to the channel. */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** The number of the game's turns that have been encoded so far. */
+	private int turnsWritten;
+
+	/** The first pick of the most recently encoded turn. */
+	private int previousFirstPick;
+
+	/** The game's deal count when its deal was encoded in the header. */
+	private final int dealCount;
+
+	/** The game's rewind count when recording started. */
+	private final int rewindCount;
+
+	/**
+	 * Start recording a game. The header is encoded immediately; turns already played are encoded on the next call to
+	 * sync() or flush().
+	 *
+	 * @param channel
+	 *            The channel to write the record to.
+	 * @param model
+	 *            The game to record.
+	 * @param seed
+	 *            The seed the deal was generated from, stored for reference.
+	 * @throws IllegalArgumentException
+	 *             If the game is endless, as its replacement pairs are not recorded.
+	 */
+	public GameRecordWriter(final WritableByteChannel channel, final Pelmanism model, final long seed)
+			throws IOException {
+		if (model.isEndless()) {
+			throw new IllegalArgumentException("Endless games cannot be recorded");
+		}
+		this.channel = channel;
+		this.model = model;
+		this.dealCount = model.getDealCount();
+		this.rewindCount = model.getRewindCount();
+
+		// Header
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.putLong(seed);
+		putVarint(model.getNumberOfPlayers());
+		putVarint(model.getNumberOfPairs());
+
+		// Deal
+		for (int i = 0; i < model.getNumberOfCards(); i++) {
+			putVarint(model.getPairId(i));
+		}
+	}
+
+	/**
+	 * Encode any turns played since the last call. Data is only written to the channel when the buffer fills up.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the game has been rewound, or reset and dealt again, since recording started. A game rewound
+	 *             and played on past the turns already encoded has the same turn count either way, so any rewind is
+	 *             refused rather than only one that leaves fewer turns than were encoded.
+	 */
+	public void sync() throws IOException {
+		if (model.getDealCount() != dealCount) {
+			throw new IllegalStateException("Game reset and dealt again after its deal was recorded");
+		}
+		if (model.getRewindCount() != rewindCount) {
+			throw new IllegalStateException("Game rewound after " + turnsWritten + " turns were recorded");
+		}
+		final int turnCount = model.getTurnCount();
+		while (turnsWritten < turnCount) {
+			final int firstPick = model.getTurnFirstPickId(turnsWritten);
+			final int secondPick = model.getTurnSecondPickId(turnsWritten);
+			putVarint(zigzag(firstPick - previousFirstPick));
+			putVarint(zigzag(secondPick - firstPick));
+			previousFirstPick = firstPick;
+			turnsWritten++;
+		}
+	}
+
+	/** Encode any turns played since the last call, and write everything encoded so far to the channel. */
+	public void flush() throws IOException {
+		sync();
+		drain();
+	}
+
+	/** Flush the record and close the channel. */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/** Write the contents of the buffer to the channel. */
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/** Encode an unsigned varint, draining the buffer first if it might not fit. */
+	private void putVarint(int value) throws IOException {
+		if (buffer.remaining() < 5) {
+			drain();
+		}
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/** Map a signed value to an unsigned one, so that values close to zero encode in few bytes. */
+	static final int zigzag(final int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/** Reverse of zigzag(). */
+	static final int unzigzag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -1,10 +1,10 @@
 package com.maycontainsoftware.pelmanism;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
@@ -23,6 +23,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.NinePatchDrawable;
@@ -42,6 +43,9 @@ public class GameScreen implements Screen {
 	/** Tag, for logging purposes. */
 	private static final String TAG = GameScreen.class.getSimpleName();
 
+	/** The number of card front textures in each card set. */
+	private static final int NUMBER_OF_CARD_TEXTURES = 32;
+
 	/** Reference to the Game instance. */
 	private final MyGame game;
 
@@ -75,8 +79,14 @@ public class GameScreen implements Screen {
 	/** The Pelmanism game model object. */
 	private final Pelmanism model;
 
-	/** The computer player. */
-	private final PelmanismAI ai;
+	/** The computer player, which thinks on a background thread. */
+	private final BackgroundComputerPlayer ai;
+
+	/** The executor the computer player thinks on. */
+	private final ExecutorService aiExecutor;
+
+	/** Estimates each player's chance of winning, or null if the game is not one it supports. */
+	private final WinEstimator winEstimator;
 
 	/** Map of Card to CardActor, used to relate AI's selections to Scene2D Actors. */
 	private final Map<Card, CardActor> cardToCardActor = new HashMap<Card, CardActor>();
@@ -129,7 +139,8 @@ public class GameScreen implements Screen {
 		gameState = GameState.PendingSecondPick;
 
 		if (isComputerTurn()) {
-			// Computer's turn!
+			// Computer's turn! Start thinking while the card flips over
+			ai.startSecondPick();
 			stage.addAction(Actions.sequence(Actions.delay(0.25f), new Action() {
 				@Override
 				public boolean act(float delta) {
@@ -167,8 +178,12 @@ public class GameScreen implements Screen {
 	/** Given the two previously-chosen cards, process the turn in the game model and update the interface as required. */
 	private void processTurn() {
 
+		// The computer must not be thinking while the model changes
+		ai.discardMove();
+
 		// The results of submitting the turn
 		final Turn turn = model.turn(firstPick.card, secondPick.card);
+		updateWinProbabilities();
 
 		if (turn.isMatch()) {
 
@@ -177,16 +192,36 @@ public class GameScreen implements Screen {
 
 			// Score changed, update label
 			final int playerId = turn.getPlayerId();
-			updateScore(playerId, model.getPlayerScore(playerId));
+			updateScore(playerId, model.getSnapshot().getPlayerScore(playerId));
 
-			firstPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f)));
-			secondPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f), new Action() {
-				@Override
-				public boolean act(final float delta) {
-					postTurn(turn);
-					return true;
-				}
-			}));
+			if (model.isEndless()) {
+
+				// The pair has been replaced, and shuffled in among the other cards
+				replaceCards();
+
+				// Deal the replacement cards into the empty places, face down
+				firstPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f),
+						firstPick.actionBackTexture(), Actions.fadeIn(0.25f)));
+				secondPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f),
+						secondPick.actionBackTexture(), Actions.fadeIn(0.25f), new Action() {
+							@Override
+							public boolean act(final float delta) {
+								postTurn(turn);
+								return true;
+							}
+						}));
+
+			} else {
+
+				firstPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f)));
+				secondPick.addAction(Actions.sequence(Actions.delay(0.5f), Actions.fadeOut(0.25f), new Action() {
+					@Override
+					public boolean act(final float delta) {
+						postTurn(turn);
+						return true;
+					}
+				}));
+			}
 
 		} else {
 
@@ -200,6 +235,25 @@ public class GameScreen implements Screen {
 			}));
 
 		}
+
+		if (!turn.isGameOver() && isComputerTurn()) {
+			// Computer's turn next: start thinking while the cards animate
+			ai.startFirstPick();
+		}
+	}
+
+	/**
+	 * In an endless game, give each card whose pair was changed by the last turn its new front texture. Only the affected
+	 * actors are touched. The textures of face-down cards can be switched straight away; face-up cards keep showing their
+	 * old texture until they are next flipped.
+	 */
+	private void replaceCards() {
+		for (int i = 0; i < model.getReplacedCardCount(); i++) {
+			final Card card = model.getCard(model.getReplacedCardId(i));
+			cardToCardActor.get(card).setCardTexture(cardRegions[card.getPairId()]);
+			// Nobody has seen the new card
+			ai.cardReplaced(card);
+		}
 	}
 
 	/**
@@ -212,10 +266,7 @@ public class GameScreen implements Screen {
 		// TODO: Need to move timing-related float primitives to constant fields
 
 		// Update highlights as required
-		if (model.getNumberOfPlayers() > 1) {
-			playerOne.setHighlight(model.getCurrentPlayerId() == 0);
-			playerTwo.setHighlight(model.getCurrentPlayerId() == 1);
-		}
+		updateHighlights(model.getSnapshot());
 
 		if (!turn.isMatch()) {
 			// Update game state
@@ -248,6 +299,51 @@ public class GameScreen implements Screen {
 		}
 	}
 
+	/**
+	 * Take back the most recent turn played by a user-controlled player, along with any computer turns played since. The
+	 * model is rewound, and only the cards whose pairs were found in the undone turns are brought back on screen.
+	 */
+	private void undoTurn() {
+
+		// Only undo when the user is about to pick a card, and nothing is animating
+		if (model.isEndless() || gameState != GameState.PendingFirstPick || isComputerTurn()) {
+			return;
+		}
+
+		// Find the most recent turn played by the user
+		int turnId = model.getTurnCount() - 1;
+		while (turnId >= 0 && !playerConfiguration.isPlayerUserControlled(model.getTurnPlayerId(turnId))) {
+			turnId--;
+		}
+		if (turnId < 0) {
+			return;
+		}
+
+		ai.discardMove();
+		model.rewind(turnId);
+		ai.gameRewound();
+
+		// Bring back any cards that are on the board again, face down
+		for (final CardActor cardActor : cardToCardActor.values()) {
+			if (!cardActor.card.isMatched() && cardActor.getColor().a < 1.0f) {
+				cardActor.clearActions();
+				cardActor.addAction(Actions.sequence(cardActor.actionBackTexture(), Actions.fadeIn(0.25f)));
+				ai.cardRestored(cardActor.card);
+			}
+		}
+
+		// Scores and highlights
+		final GameSnapshot snapshot = model.getSnapshot();
+		for (int playerId = 0; playerId < snapshot.getNumberOfPlayers(); playerId++) {
+			updateScore(playerId, snapshot.getPlayerScore(playerId));
+		}
+		updateHighlights(snapshot);
+		if (winEstimator != null) {
+			winEstimator.rewound();
+		}
+		updateWinProbabilities();
+	}
+
 	/**
 	 * Object representing the actual card on the screen.
 	 * 
@@ -260,8 +356,8 @@ public class GameScreen implements Screen {
 		/** The card represented by this actor. */
 		private final Card card;
 
-		/** This card's front texture. */
-		private final TextureRegion cardTexture;
+		/** This card's front texture. Changes when an endless game replaces the card. */
+		private TextureRegion cardTexture;
 
 		/** This card's back texture. */
 		private final TextureRegion cardBackTexture;
@@ -325,6 +421,11 @@ public class GameScreen implements Screen {
 			});
 		}
 
+		/** Set the front texture used the next time the card is flipped over. */
+		void setCardTexture(final TextureRegion cardTexture) {
+			this.cardTexture = cardTexture;
+		}
+
 		/** Switch the current texture region for a different region. */
 		/*
 		 * private final void switchTexture(final TextureRegion region) { final TextureRegionDrawable drawable =
@@ -399,18 +500,46 @@ public class GameScreen implements Screen {
 		difficulty = game.getDifficultyFromPrefs();
 		cardSet = game.getCardSetFromPrefs();
 
+		// All randomness in the game derives from a single seed
+		final RandomStream random = new RandomStream(RandomStream.randomSeed());
+
 		// Create game model
-		model = new Pelmanism(playerConfiguration.getNumberOfPlayers(), difficulty.getNumberOfPairs());
+		// An endless game draws each new pair's texture from the textures not on the board
+		final int numberOfPairs = difficulty.getNumberOfPairs();
+		final int numberOfTextures = Math.min(NUMBER_OF_CARD_TEXTURES, numberOfPairs * 2);
+		if (game.getEndlessFromPrefs()) {
+			model = new Pelmanism(playerConfiguration.getNumberOfPlayers(), new DealGenerator(numberOfPairs),
+					random.nextLong(), numberOfTextures);
+		} else {
+			// Deal one of the balanced deals, so that no game is much easier than another or favours the first player;
+			// the pictures are shuffled every deal, so the same few deals do not come round looking alike
+			model = new Pelmanism(playerConfiguration.getNumberOfPlayers(), new DealGenerator(numberOfPairs),
+					random.nextLong(), BalancedDeals.getSeeds(difficulty));
+		}
+		// The score display reads the model's published snapshots
+		model.setSnapshotPublishing(true);
 
 		// Create AI player
 		// For simplicity, we create an AI even when no AI player exists
-		ai = new PelmanismAI(difficulty, model);
+		aiExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "Computer player");
+				// Never keep the app alive
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		ai = new BackgroundComputerPlayer(difficulty.createComputerPlayer(model, random.nextLong()), model, aiExecutor);
+
+		// Create win probability estimator, for two player games that end
+		winEstimator = WinEstimator.supports(model) ? new WinEstimator(model) : null;
 
 		// Load graphic assets
 		atlas = game.manager.get(cardSet.atlasName, TextureAtlas.class);
 		cardBackRegion = atlas.findRegion(cardSet.backRegionName);
 		// Given numberOfPairs, return that number of unique random TextureRegions from appropriate TextureAtlas.
-		cardRegions = selectCardTextures(difficulty.getNumberOfPairs());
+		cardRegions = selectCardTextures(model.isEndless() ? numberOfTextures : numberOfPairs, random);
 
 		// Create Stage
 		stage = new Stage(MyGame.VIRTUAL_WIDTH, MyGame.VIRTUAL_HEIGHT, true, game.batch);
@@ -421,6 +550,7 @@ public class GameScreen implements Screen {
 
 		// Create UI elements
 		createUi();
+		updateWinProbabilities();
 
 		// Play shuffle sound
 		game.playCardDealSound();
@@ -464,6 +594,7 @@ public class GameScreen implements Screen {
 
 	@Override
 	public void dispose() {
+		aiExecutor.shutdownNow();
 		stage.dispose();
 	}
 
@@ -472,24 +603,31 @@ public class GameScreen implements Screen {
 	 * 
 	 * @param numberOfTexturesRequired
 	 *            The number of unique textures required.
+	 * @param random
+	 *            The random number stream to pick with.
 	 * @return An unsorted array containing the selected TextureRegions
 	 */
-	private final TextureRegion[] selectCardTextures(final int numberOfTexturesRequired) {
+	private final TextureRegion[] selectCardTextures(final int numberOfTexturesRequired, final RandomStream random) {
 		final TextureRegion[] regions = new TextureRegion[numberOfTexturesRequired];
 
 		// Generate list of numbers from 1 to 32
-		final List<Integer> allNumbers = new ArrayList<Integer>(32);
-		for (int i = 1; i <= 32; i++) {
-			allNumbers.add(i);
+		final int[] allNumbers = new int[NUMBER_OF_CARD_TEXTURES];
+		for (int i = 0; i < NUMBER_OF_CARD_TEXTURES; i++) {
+			allNumbers[i] = i + 1;
 		}
 
 		// Shuffle the list
-		Collections.shuffle(allNumbers);
+		for (int i = allNumbers.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int number = allNumbers[i];
+			allNumbers[i] = allNumbers[j];
+			allNumbers[j] = number;
+		}
 
 		// Pick the first n textures
 		for (int i = 0; i < numberOfTexturesRequired; i++) {
 			// Determine the region name
-			String regionName = String.valueOf(allNumbers.get(i));
+			String regionName = String.valueOf(allNumbers[i]);
 			if (regionName.length() < 2) {
 				regionName = "0" + regionName;
 			}
@@ -526,7 +664,7 @@ public class GameScreen implements Screen {
 
 			playerTwo = new PlayerScoreActor(playerConfiguration.getPlayerName(1),
 					playerConfiguration.getPlayerColor(1), game.skin, highlightDrawable);
-			table.add(playerTwo).colspan(2).fillX();
+			table.add(playerTwo).colspan(3).fillX();
 		}
 
 		// Game area
@@ -589,7 +727,7 @@ public class GameScreen implements Screen {
 		}
 
 		// Add game area, fix size and expand to consume all extra space in outer table.
-		table.add(gameArea).width(boardWidth).height(boardHeight).expandX().expandY().colspan(2);
+		table.add(gameArea).width(boardWidth).height(boardHeight).expandX().expandY().colspan(3);
 
 		// Primary score display
 
@@ -598,7 +736,7 @@ public class GameScreen implements Screen {
 
 		playerOne = new PlayerScoreActor(playerConfiguration.getPlayerName(0), playerConfiguration.getPlayerColor(0),
 				game.skin, highlightDrawable);
-		table.add(playerOne).colspan(2).fillX();
+		table.add(playerOne).colspan(3).fillX();
 
 		// Player one starts the game
 		playerOne.setHighlight(true);
@@ -617,6 +755,18 @@ public class GameScreen implements Screen {
 		});
 		table.add(backButton).left();
 
+		// Undo
+		final Button undoButton = new TextButton("Undo", game.skin);
+		undoButton.addListener(new ChangeListener() {
+			@Override
+			public void changed(final ChangeEvent event, final Actor actor) {
+				undoTurn();
+			}
+		});
+		// Endless games cannot be rewound
+		undoButton.setVisible(!model.isEndless());
+		table.add(undoButton).expandX();
+
 		// Sound on/off
 		final Button soundButton = game.makeTexturedButton("sound_button", true);
 		soundButton.setChecked(game.sound);
@@ -654,6 +804,22 @@ public class GameScreen implements Screen {
 		(player == 0 ? playerOne : playerTwo).updateScore(score);
 	}
 
+	/** Show each player's chance of winning, if it can be estimated. */
+	private final void updateWinProbabilities() {
+		if (winEstimator != null) {
+			playerOne.updateWinProbability(winEstimator.getWinProbability(0));
+			playerTwo.updateWinProbability(winEstimator.getWinProbability(1));
+		}
+	}
+
+	/** Highlight the score display of the current player, if there is more than one player. */
+	private final void updateHighlights(final GameSnapshot snapshot) {
+		if (snapshot.getNumberOfPlayers() > 1) {
+			playerOne.setHighlight(snapshot.getCurrentPlayerId() == 0);
+			playerTwo.setHighlight(snapshot.getCurrentPlayerId() == 1);
+		}
+	}
+
 	/**
 	 * An actor that represents a player's name and score. The actor contains convenience methods for highlighting and
 	 * updating the score.
@@ -664,6 +830,9 @@ public class GameScreen implements Screen {
 		/** The label that holds the score; kept for future access. */
 		private final Label scoreLabel;
 
+		/** The label that holds the player's chance of winning, empty if not estimated. */
+		private final Label winProbabilityLabel;
+
 		/** A drawable used as a background to highlight the actor. */
 		private final Drawable highlightDrawable;
 
@@ -681,6 +850,10 @@ public class GameScreen implements Screen {
 			// Middle, an empty cell that takes up all remaining space
 			add().expandX();
 
+			// Then the chance of winning, if estimated
+			winProbabilityLabel = new Label("", skin, "arcena32", playerColor);
+			add(winProbabilityLabel).padRight(20.0f);
+
 			// Right edge, the player score
 			scoreLabel = new Label("", skin, "arcena48", playerColor);
 			add(scoreLabel).padRight(10.0f);
@@ -704,5 +877,10 @@ public class GameScreen implements Screen {
 		public void updateScore(final int score) {
 			scoreLabel.setText(score + " Point" + (score != 1 ? "s" : ""));
 		}
+
+		/** Update the display of the player's chance of winning. */
+		public void updateWinProbability(final float probability) {
+			winProbabilityLabel.setText(Math.round(probability * 100.0f) + "%");
+		}
 	}
 }
@@ -0,0 +1,112 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * An immutable, versioned snapshot of the state of a game: the scores, the current player, the set of matched cards and
+ * the turn count, all as they were at the same moment. Snapshots are published by the game model after every turn, and
+ * can be read from any thread without locking.
+ * 
+ * Consecutive snapshots share their arrays wherever nothing changed between them, so a turn without a match copies
+ * nothing.
+ * 
+ * @author Charlie
+ */
+public final class GameSnapshot {
+
+	/** The version of this snapshot. Versions increase by one with every snapshot a game publishes. */
+	private final long version;
+
+	/** The number of turns played. */
+	private final int turnCount;
+
+	/** The id of the player due to play the next turn. */
+	private final int currentPlayerId;
+
+	/** The number of pairs found. */
+	private final int pairsFound;
+
+	/** The number of pairs still on the board. */
+	private final int pairsRemaining;
+
+	/** The number of cards on the board. */
+	private final int numberOfCards;
+
+	/** Whether the game is over. */
+	private final boolean gameOver;
+
+	/** Player scores, indexed by player id. Never written to once published. */
+	private final int[] playerScores;
+
+	/** Matched state of each card, one bit per card id. Never written to once published. */
+	private final long[] matched;
+
+	/** Create a new snapshot. The arrays are taken over by the snapshot, and must not be written to afterwards. */
+	GameSnapshot(final long version, final int turnCount, final int currentPlayerId, final int pairsFound,
+			final int pairsRemaining, final int numberOfCards, final boolean gameOver, final int[] playerScores,
+			final long[] matched) {
+		this.version = version;
+		this.turnCount = turnCount;
+		this.currentPlayerId = currentPlayerId;
+		this.pairsFound = pairsFound;
+		this.pairsRemaining = pairsRemaining;
+		this.numberOfCards = numberOfCards;
+		this.gameOver = gameOver;
+		this.playerScores = playerScores;
+		this.matched = matched;
+	}
+
+	/** The version of this snapshot. A snapshot with a higher version was taken later. */
+	public final long getVersion() {
+		return version;
+	}
+
+	/** The number of turns played. */
+	public final int getTurnCount() {
+		return turnCount;
+	}
+
+	/** The id of the player due to play the next turn. */
+	public final int getCurrentPlayerId() {
+		return currentPlayerId;
+	}
+
+	/** The number of players in the game. */
+	public final int getNumberOfPlayers() {
+		return playerScores.length;
+	}
+
+	/** Player score. */
+	public final int getPlayerScore(final int playerId) {
+		if (playerId < 0 || playerId >= playerScores.length) {
+			throw new IllegalArgumentException("Invalid player id: " + playerId);
+		}
+		return playerScores[playerId];
+	}
+
+	/** The number of pairs found. */
+	public final int getPairsFound() {
+		return pairsFound;
+	}
+
+	/** The number of pairs still on the board. */
+	public final int getPairsRemaining() {
+		return pairsRemaining;
+	}
+
+	/** Whether the game is over. */
+	public final boolean isGameOver() {
+		return gameOver;
+	}
+
+	/** Whether a card had been matched. */
+	public final boolean isMatched(final int cardId) {
+		if (cardId < 0 || cardId >= numberOfCards) {
+			throw new IllegalArgumentException("Card id invalid: " + cardId);
+		}
+		return (matched[cardId >>> 6] & (1L << cardId)) != 0;
+	}
+
+	/** The scores array, for sharing with the next snapshot. */
+	final int[] scores() {
+		return playerScores;
+	}
+}
@@ -0,0 +1,106 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * A set of small non-negative ints, held so that adding, removing, testing for and picking a random element all take
+ * constant time. Elements are kept packed at the front of an array, with each element's position recorded in a second
+ * array indexed by element; an element is removed by moving the last element into its place.
+ *
+ * @author Charlie
+ */
+final class IntPool {
+
+	/** The elements, packed into the first size entries. */
+	private final int[] elements;
+
+	/** The position of each possible element in elements, or -1 if it is not in the pool. */
+	private final int[] positions;
+
+	/** The number of elements in the pool. */
+	private int size;
+
+	/**
+	 * Create a new, empty, pool.
+	 *
+	 * @param capacity
+	 *            Elements must be at least zero and less than this.
+	 */
+	IntPool(final int capacity) {
+		elements = new int[capacity];
+		positions = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			positions[i] = -1;
+		}
+	}
+
+	/** The number of elements in the pool. */
+	final int size() {
+		return size;
+	}
+
+	/** Whether the pool is empty. */
+	final boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Whether an element is in the pool. */
+	final boolean contains(final int element) {
+		return positions[element] >= 0;
+	}
+
+	/** Get the element at a position, from zero to size() - 1. Positions change as elements are removed. */
+	final int get(final int position) {
+		return elements[position];
+	}
+
+	/** Add an element, if it is not already in the pool. */
+	final void add(final int element) {
+		if (positions[element] < 0) {
+			elements[size] = element;
+			positions[element] = size++;
+		}
+	}
+
+	/** Remove an element, if it is in the pool. */
+	final void remove(final int element) {
+		final int position = positions[element];
+		if (position >= 0) {
+			final int last = elements[--size];
+			elements[position] = last;
+			positions[last] = position;
+			positions[element] = -1;
+		}
+	}
+
+	/** Remove every element. */
+	final void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[elements[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/** Make this pool a copy of another of the same capacity, in the same order. */
+	final void copyFrom(final IntPool other) {
+		System.arraycopy(other.elements, 0, elements, 0, other.size);
+		System.arraycopy(other.positions, 0, positions, 0, positions.length);
+		size = other.size;
+	}
+
+	/** Pick a random element. The pool must not be empty. */
+	final int random(final RandomStream random) {
+		return elements[random.nextInt(size)];
+	}
+
+	/**
+	 * Pick a random element other than the given one, without having to retry. The pool must contain at least one
+	 * element other than the excluded one.
+	 */
+	final int randomExcluding(final RandomStream random, final int excluded) {
+		final int position = positions[excluded];
+		if (position < 0) {
+			return random(random);
+		}
+		final int r = random.nextInt(size - 1);
+		return elements[(r < position) ? r : r + 1];
+	}
+}
@@ -0,0 +1,278 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * One computer player's memory of a shared ObservationLog. All the player keeps is a cursor into the log, the oldest
+ * entry it may still remember, and a bitset of the cards it has forgotten since they were last revealed; a card is
+ * remembered if its latest entry is between the oldest entry and the cursor, it has not been forgotten, and it is still
+ * on the board.
+ *
+ * Memory holds at most a fixed number of cards. When it is full, the least recently seen card is forgotten by moving the
+ * oldest entry past it, which is the log's order of reveals. Remembered cards can also be made to decay, each being
+ * forgotten with a fixed probability every move.
+ *
+ * The remembered cards are listed by walking the log from the oldest entry, which with a small memory is a short walk.
+ * The list is kept until the cursor moves or a card leaves the board, so a move lists them once or twice.
+ *
+ * @author Charlie
+ */
+final class LogMemory {
+
+	/** The number of random cards tried when looking for an unknown card, before listing them instead. */
+	private static final int UNKNOWN_TRIES = 8;
+
+	/** The shared log. */
+	private final ObservationLog log;
+
+	/** The maximum number of cards remembered at once. */
+	private final int capacity;
+
+	/** The number of log entries read. */
+	private int cursor;
+
+	/** The oldest entry that may still be remembered. */
+	private int oldest;
+
+	/** One bit per card, set if the card has been forgotten since its latest entry. */
+	private final long[] forgotten;
+
+	/** The remembered cards, least recently seen first, if listed. */
+	private int[] remembered;
+
+	/** The number of remembered cards, if listed. */
+	private int rememberedCount;
+
+	/** Whether the remembered cards are listed. */
+	private boolean listed;
+
+	/** The log's count of removals when the remembered cards were listed. */
+	private int listedRemovals;
+
+	/** Working space for picking cards. */
+	private int[] picks;
+
+	/** The cursor, oldest entry and forgotten cards saved by checkpoint(). */
+	private int savedCursor, savedOldest;
+	private long[] savedForgotten;
+
+	/**
+	 * Create a memory of a log, in which no card is remembered.
+	 *
+	 * @param log
+	 *            The shared log.
+	 * @param numberOfCards
+	 *            The number of cards in the game.
+	 * @param capacity
+	 *            The maximum number of cards remembered at once.
+	 */
+	LogMemory(final ObservationLog log, final int numberOfCards, final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity = " + capacity);
+		}
+		this.log = log;
+		this.capacity = capacity;
+		this.forgotten = new long[(numberOfCards + 63) >>> 6];
+		this.remembered = new int[Math.min(capacity, numberOfCards) + 2];
+		this.picks = new int[remembered.length];
+		this.cursor = log.size();
+		this.oldest = cursor;
+		log.addReader(this);
+	}
+
+	/** The oldest entry that may still be remembered; the log keeps every entry from here on. */
+	final int getOldest() {
+		return oldest;
+	}
+
+	/** Save what is remembered, so that restore() can go back to it. */
+	final void checkpoint() {
+		if (savedForgotten == null) {
+			savedForgotten = new long[forgotten.length];
+		}
+		savedCursor = cursor;
+		savedOldest = oldest;
+		System.arraycopy(forgotten, 0, savedForgotten, 0, forgotten.length);
+	}
+
+	/**
+	 * Go back to remembering what was remembered at the last checkpoint(). The log must not have been added to since,
+	 * as it may have dropped entries that were then still remembered.
+	 */
+	final void restore() {
+		cursor = savedCursor;
+		oldest = savedOldest;
+		System.arraycopy(savedForgotten, 0, forgotten, 0, forgotten.length);
+		listed = false;
+	}
+
+	/** Whether a card is remembered. */
+	final boolean isRemembered(final int cardId) {
+		final int entry = log.getLastEntry(cardId);
+		return entry >= oldest && entry < cursor && log.getPairId(entry) >= 0
+				&& (forgotten[cardId >>> 6] & (1L << cardId)) == 0 && log.getOnBoard().contains(cardId);
+	}
+
+	/** Forget a card, which goes back to being unknown. */
+	final void forget(final int cardId) {
+		forgotten[cardId >>> 6] |= 1L << cardId;
+		listed = false;
+	}
+
+	/**
+	 * Read the entries logged since the last call, and forget the least recently seen cards if memory is over capacity.
+	 * Cards revealed again are remembered again. Must be called before asking what is remembered.
+	 */
+	final void catchUp() {
+		log.sync();
+		final int size = log.size();
+		if (cursor == size) {
+			return;
+		}
+		for (; cursor < size; cursor++) {
+			final int cardId = log.getCardId(cursor);
+			forgotten[cardId >>> 6] &= ~(1L << cardId);
+		}
+		listed = false;
+		final int count = list();
+		if (count > capacity) {
+			// Forget the least recently seen cards, which are listed first
+			final int excess = count - capacity;
+			oldest = log.getLastEntry(remembered[excess - 1]) + 1;
+			System.arraycopy(remembered, excess, remembered, 0, capacity);
+			rememberedCount = capacity;
+		}
+	}
+
+	/**
+	 * List the remembered cards, least recently seen first, and return how many there are. Entries before the first
+	 * remembered card can never be remembered again, so the oldest entry is moved up to it.
+	 */
+	private int list() {
+		if (listed && listedRemovals == log.getRemovals()) {
+			return rememberedCount;
+		}
+		final IntPool onBoard = log.getOnBoard();
+		int count = 0;
+		for (int entry = oldest; entry < cursor; entry++) {
+			// As isRemembered(), knowing the entry is in range
+			final int cardId = log.getCardId(entry);
+			if (log.getLastEntry(cardId) != entry || log.getPairId(entry) < 0
+					|| (forgotten[cardId >>> 6] & (1L << cardId)) != 0 || !onBoard.contains(cardId)) {
+				if (count == 0) {
+					oldest = entry + 1;
+				}
+				continue;
+			}
+			if (count == remembered.length) {
+				final int[] grown = new int[count * 2];
+				System.arraycopy(remembered, 0, grown, 0, count);
+				remembered = grown;
+				picks = new int[grown.length];
+			}
+			remembered[count++] = cardId;
+		}
+		rememberedCount = count;
+		listed = true;
+		listedRemovals = log.getRemovals();
+		return count;
+	}
+
+	/** The number of cards remembered. */
+	final int getRememberedCount() {
+		return list();
+	}
+
+	/** The remembered partner of a card, or -1 if the card or its partner is not remembered. */
+	final int getPartner(final int cardId) {
+		if (!isRemembered(cardId)) {
+			return -1;
+		}
+		final int partner = log.getPartner(cardId);
+		return (partner >= 0 && isRemembered(partner)) ? partner : -1;
+	}
+
+	/** Pick a random remembered card whose partner is also remembered, or return -1 if there is none. */
+	final int randomKnownPairCard(final RandomStream random) {
+		final int count = list();
+		int pairs = 0;
+		for (int i = 0; i < count; i++) {
+			final int cardId = remembered[i];
+			// Keep one card of each pair, whichever was seen first
+			final int partner = log.getPartner(cardId);
+			if (partner >= 0 && log.getLastEntry(partner) > log.getLastEntry(cardId) && isRemembered(partner)) {
+				picks[pairs++] = cardId;
+			}
+		}
+		return (pairs == 0) ? -1 : picks[random.nextInt(pairs)];
+	}
+
+	/** Pick a random remembered card other than the given one. At least one such card must be remembered. */
+	final int randomRemembered(final RandomStream random, final int excluded) {
+		final int count = list();
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (remembered[i] != excluded) {
+				picks[kept++] = remembered[i];
+			}
+		}
+		return picks[random.nextInt(kept)];
+	}
+
+	/** Pick a random card on the board that is not remembered. There must be one. */
+	final int randomUnknown(final RandomStream random) {
+		final IntPool onBoard = log.getOnBoard();
+
+		// Usually most cards are unknown, so try a few at random
+		for (int i = 0; i < UNKNOWN_TRIES; i++) {
+			final int cardId = onBoard.random(random);
+			if (!isRemembered(cardId)) {
+				return cardId;
+			}
+		}
+
+		// Otherwise list them
+		final int[] unknown = new int[onBoard.size()];
+		int count = 0;
+		for (int i = 0; i < onBoard.size(); i++) {
+			final int cardId = onBoard.get(i);
+			if (!isRemembered(cardId)) {
+				unknown[count++] = cardId;
+			}
+		}
+		return unknown[random.nextInt(count)];
+	}
+
+	/**
+	 * Forget each remembered card with the given probability. Rather than drawing a random number for every card, the
+	 * gaps between forgotten cards are drawn from the geometric distribution.
+	 */
+	final void decay(final double rate, final RandomStream random) {
+		if (rate <= 0.0) {
+			return;
+		}
+		final int count = list();
+		if (rate >= 1.0) {
+			oldest = cursor;
+			rememberedCount = 0;
+			return;
+		}
+		final double logSurvival = Math.log(1.0 - rate);
+		int kept = 0;
+		int next = skip(random, logSurvival);
+		for (int i = 0; i < count; i++) {
+			final int cardId = remembered[i];
+			if (i == next) {
+				forgotten[cardId >>> 6] |= 1L << cardId;
+				next += 1 + skip(random, logSurvival);
+			} else {
+				remembered[kept++] = cardId;
+			}
+		}
+		rememberedCount = kept;
+	}
+
+	/** The number of cards that survive before the next one decays. */
+	private static int skip(final RandomStream random, final double logSurvival) {
+		final double skip = Math.log(1.0 - random.nextDouble()) / logSurvival;
+		return (skip < Integer.MAX_VALUE / 2) ? (int) skip : Integer.MAX_VALUE / 2;
+	}
+}
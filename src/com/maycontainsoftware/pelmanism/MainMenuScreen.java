@@ -13,6 +13,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.ButtonGroup;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
@@ -103,6 +104,18 @@ public class MainMenuScreen implements Screen {
 		}
 		table.row();
 
+		// Endless mode toggle
+		final Button endlessButton = new TextButton("Endless", game.skin, "toggle");
+		endlessButton.setChecked(game.getEndlessFromPrefs());
+		endlessButton.addListener(new ChangeListener() {
+			@Override
+			public void changed(final ChangeEvent event, final Actor actor) {
+				game.saveEndlessToPrefs(endlessButton.isChecked());
+			}
+		});
+		table.add(endlessButton).colspan(3).padTop(20.0f);
+		table.row();
+
 		// Buttons
 		// Help Button
 		final Drawable helpButtonOn = new TextureRegionDrawable(game.uiAtlas.findRegion("help_button_on"));
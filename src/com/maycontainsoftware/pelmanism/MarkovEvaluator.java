@@ -0,0 +1,296 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Evaluates the computer player's strategy exactly, by treating a two player game between two such players as a Markov
+ * chain, rather than by simulating games. Each player goes for a pair with a probability given by its intelligence, as
+ * PelmanismAI does, and otherwise picks two cards at random; unlike PelmanismAI, both are taken to remember every card
+ * seen, so the chain models Difficulty settings whose memory is large enough never to forget.
+ *
+ * The state of the board is the number of pairs remaining, the number of singles (seen cards whose partner has not been
+ * seen), and the number of known pairs (both cards seen); the number of unseen cards follows from those. Together with
+ * the player to move and the score difference, that is all that matters to how the game goes on.
+ *
+ * Probability mass is pushed forwards from the start of the game to the end. Every turn either finds a pair, or turns
+ * over at least one unseen card, or changes nothing but whose turn it is, so states are visited in a fixed order, and
+ * turns that change nothing are summed as a geometric series. The number of turns played is the total mass of every
+ * state visited, and the chance of winning is read from the mass at the end. The work grows with the fourth power of the
+ * number of pairs, but is still only a fraction of a second for a hundred pairs.
+ *
+ * @author Charlie
+ */
+public final class MarkovEvaluator {
+
+	/** The largest number of transitions from one state. */
+	private static final int MAX_TRANSITIONS = 16;
+
+	/** The number of pairs on the board. */
+	private final int numberOfPairs;
+
+	/** The number of singles after each transition of the state being expanded. */
+	private final int[] toSingles = new int[MAX_TRANSITIONS];
+
+	/** The number of known pairs after each transition of the state being expanded. */
+	private final int[] toKnownPairs = new int[MAX_TRANSITIONS];
+
+	/** Whether each transition of the state being expanded finds a pair. */
+	private final boolean[] toMatch = new boolean[MAX_TRANSITIONS];
+
+	/** The probability of each transition of the state being expanded. */
+	private final double[] toProbability = new double[MAX_TRANSITIONS];
+
+	/** The number of transitions of the state being expanded. */
+	private int transitions;
+
+	/** The probability of the state being expanded passing the turn on with nothing changed. */
+	private double loop;
+
+	/** Create an evaluator for boards with a number of pairs. */
+	public MarkovEvaluator(final int numberOfPairs) {
+		if (numberOfPairs <= 0) {
+			throw new IllegalArgumentException("numberOfPairs = " + numberOfPairs);
+		}
+		this.numberOfPairs = numberOfPairs;
+	}
+
+	/** The number of pairs on the board. */
+	public final int getNumberOfPairs() {
+		return numberOfPairs;
+	}
+
+	/** The result of an evaluation. */
+	public static final class Result {
+
+		/** The expected number of turns to clear the board. */
+		private final double expectedTurns;
+
+		/** The probability that the evaluated player wins. */
+		private final double winProbability;
+
+		/** The probability of a tie. */
+		private final double tieProbability;
+
+		private Result(final double expectedTurns, final double winProbability, final double tieProbability) {
+			this.expectedTurns = expectedTurns;
+			this.winProbability = winProbability;
+			this.tieProbability = tieProbability;
+		}
+
+		/** The expected number of turns, by both players, to clear the board. */
+		public final double getExpectedTurns() {
+			return expectedTurns;
+		}
+
+		/** The probability that the evaluated player wins outright. */
+		public final double getWinProbability() {
+			return winProbability;
+		}
+
+		/** The probability that the game is tied. */
+		public final double getTieProbability() {
+			return tieProbability;
+		}
+
+		/** The probability that the evaluated player loses. */
+		public final double getLossProbability() {
+			return 1.0 - winProbability - tieProbability;
+		}
+	}
+
+	/**
+	 * Evaluate a player against a reference opponent.
+	 *
+	 * @param intelligence
+	 *            The evaluated player's intelligence, as in Difficulty: the probability of going for a pair each turn.
+	 * @param referenceIntelligence
+	 *            The opponent's intelligence.
+	 * @param movesFirst
+	 *            Whether the evaluated player moves first.
+	 */
+	public final Result evaluate(final double intelligence, final double referenceIntelligence,
+			final boolean movesFirst) {
+		if (intelligence < 0.0 || intelligence > 1.0 || referenceIntelligence < 0.0 || referenceIntelligence > 1.0) {
+			throw new IllegalArgumentException("Intelligence must be between 0 and 1");
+		}
+		final int n = numberOfPairs;
+		double turns = 0.0;
+
+		// Mass of each state of the current layer, by player to move, by score difference of the evaluated player
+		int width = 1;
+		double[] layer = new double[stateCount(n) * 2 * width];
+		layer[movesFirst ? 0 : 1] = 1.0;
+
+		final double[] a = new double[2 * n + 1];
+		final double[] b = new double[2 * n + 1];
+		for (int p = n; p > 0; p--) {
+			final int nextWidth = width + 2;
+			final double[] next = new double[stateCount(p - 1) * 2 * nextWidth];
+
+			// Visit states in order of unseen cards, most first, so that every state's mass is in before it is expanded
+			for (int t = 0; t <= 2 * p; t++) {
+				for (int knownPairs = 0; knownPairs * 2 <= t; knownPairs++) {
+					final int singles = t - knownPairs * 2;
+					if (singles + knownPairs > p) {
+						continue;
+					}
+					final int at = stateIndex(p, singles, knownPairs) * 2 * width;
+
+					// Both players' chances of passing the turn on with nothing changed
+					expand(p, singles, knownPairs, referenceIntelligence);
+					final double loopB = loop;
+					expand(p, singles, knownPairs, intelligence);
+					final double loopA = loop;
+					final double scale = 1.0 / (1.0 - loopA * loopB);
+
+					// Sum the turns passed back and forth
+					boolean any = false;
+					for (int d = 0; d < width; d++) {
+						final double inA = layer[at + d];
+						final double inB = layer[at + width + d];
+						a[d] = (inA + loopB * inB) * scale;
+						b[d] = (inB + loopA * inA) * scale;
+						turns += a[d] + b[d];
+						any |= a[d] != 0.0 || b[d] != 0.0;
+					}
+					if (!any) {
+						continue;
+					}
+
+					// Push the mass on: the evaluated player's moves first, while its transitions are still expanded
+					push(a, 0, width, layer, next, p, +1);
+					expand(p, singles, knownPairs, referenceIntelligence);
+					push(b, 1, width, layer, next, p, -1);
+				}
+			}
+			layer = next;
+			width = nextWidth;
+		}
+
+		// The empty board, by score difference
+		double win = 0.0;
+		double tie = 0.0;
+		for (int d = 0; d < width; d++) {
+			final double mass = layer[d] + layer[width + d];
+			if (d > n) {
+				win += mass;
+			} else if (d == n) {
+				tie += mass;
+			}
+		}
+		return new Result(turns, win, tie);
+	}
+
+	/**
+	 * Push the mass of a state, for one player to move, along the expanded transitions.
+	 *
+	 * @param mass
+	 *            The mass, by score difference.
+	 * @param mover
+	 *            The player to move: 0 for the evaluated player, 1 for the opponent.
+	 * @param width
+	 *            The number of score differences in the current layer.
+	 * @param sign
+	 *            The change in score difference when the mover finds a pair.
+	 */
+	private void push(final double[] mass, final int mover, final int width, final double[] layer,
+			final double[] next, final int p, final int sign) {
+		for (int i = 0; i < transitions; i++) {
+			final double probability = toProbability[i];
+			if (toMatch[i]) {
+				// A pair found: one fewer pair, the same player to move, and the score difference shifts
+				final int at = stateIndex(p - 1, toSingles[i], toKnownPairs[i]) * 2 * (width + 2) + mover * (width + 2)
+						+ 1 + sign;
+				for (int d = 0; d < width; d++) {
+					next[at + d] += mass[d] * probability;
+				}
+			} else {
+				// No pair found: the other player to move
+				final int at = stateIndex(p, toSingles[i], toKnownPairs[i]) * 2 * width + (1 - mover) * width;
+				for (int d = 0; d < width; d++) {
+					layer[at + d] += mass[d] * probability;
+				}
+			}
+		}
+	}
+
+	/** The number of states with a number of pairs remaining. */
+	private static int stateCount(final int p) {
+		return (p + 1) * (p + 2) / 2;
+	}
+
+	/** The index of a state among those with the same number of pairs remaining. */
+	private static int stateIndex(final int p, final int singles, final int knownPairs) {
+		return knownPairs * (p + 1) - knownPairs * (knownPairs - 1) / 2 + singles;
+	}
+
+	/** Add a transition of the state being expanded. */
+	private void add(final double probability, final int singles, final int knownPairs, final boolean match) {
+		if (probability <= 0.0) {
+			return;
+		}
+		toProbability[transitions] = probability;
+		toSingles[transitions] = singles;
+		toKnownPairs[transitions] = knownPairs;
+		toMatch[transitions] = match;
+		transitions++;
+	}
+
+	/**
+	 * Work out the transitions of a state for a player of some intelligence, leaving the chance of nothing changing in
+	 * loop. The cards on the board are the unseen partners of singles, unseen cards whose partners are unseen too, the
+	 * singles themselves, and the cards of known pairs.
+	 */
+	private void expand(final int p, final int s, final int kp, final double intelligence) {
+		transitions = 0;
+		loop = 0.0;
+		final int u = 2 * p - s - 2 * kp;
+
+		// Going for a pair
+		final double q = intelligence;
+		if (kp > 0) {
+			add(q, s, kp - 1, true);
+		} else {
+			// An unseen card: the partner of a single, found, or a new card
+			add(q * s / u, s - 1, 0, true);
+			if (s > 0) {
+				// Then a seen card, which gives nothing away
+				add(q * (u - s) / u, s + 1, 0, false);
+			} else {
+				// Then any other card, all of them unseen
+				add(q / (u - 1), 0, 0, true);
+				add(q * (u - 2) / (u - 1), 2, 0, false);
+			}
+		}
+
+		// Two random cards
+		final double r = (1.0 - q) / (2.0 * p * (2 * p - 1));
+		final int u2 = u - s;
+		if (s > 0) {
+			// First the unseen partner of a single: its partner, the partner of another single, a new card, or a seen one
+			add(r * s, s - 1, kp, true);
+			add(r * s * (s - 1), s - 2, kp + 2, false);
+			add(r * s * u2, s, kp + 1, false);
+			add(r * s * (s - 1 + 2 * kp), s - 1, kp + 1, false);
+		}
+		if (u2 > 0) {
+			// First a new card
+			add(r * u2, s, kp, true);
+			add(r * u2 * s, s, kp + 1, false);
+			add(r * u2 * (u2 - 2), s + 2, kp, false);
+			add(r * u2 * (s + 2 * kp), s + 1, kp, false);
+		}
+		if (s > 0) {
+			// First a single
+			add(r * s, s - 1, kp, true);
+			add(r * s * (s - 1), s - 1, kp + 1, false);
+			add(r * s * u2, s + 1, kp, false);
+			loop += r * s * (s - 1 + 2 * kp);
+		}
+		if (kp > 0) {
+			// First a card of a known pair
+			add(r * 2 * kp, s, kp - 1, true);
+			add(r * 2 * kp * s, s - 1, kp + 1, false);
+			add(r * 2 * kp * u2, s + 1, kp, false);
+			loop += r * 2 * kp * (s + 2 * kp - 2);
+		}
+	}
+}
@@ -0,0 +1,461 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computer player that looks ahead by Monte Carlo sampling. Whenever it has a real choice to make, it samples layouts of
+ * the unseen cards that are consistent with everything seen so far, plays each one out to the end of the game with every
+ * player remembering every card, and picks the option with the best average final margin over the best opponent.
+ *
+ * The choices are whether to turn over an unseen card or a card already seen, first and then second. Taking a known pair
+ * is always right, and unseen cards are all alike, so nothing else needs sampling. Both options are played out on the
+ * same sampled layout each time, so that the difference between them is measured with as little noise as possible.
+ *
+ * Sampling is spread across the threads of an executor, and stops when the move's time budget runs out, at which point
+ * the best option found so far is taken. With no time budget, a fixed number of samples is taken instead, which is what
+ * batch simulations want.
+ *
+ * @author Charlie
+ */
+public class MonteCarloAI implements ComputerPlayer {
+
+	/** A time budget per move suitable for a device: 20 ms. */
+	public static final long DEVICE_BUDGET_NANOS = 20000000L;
+
+	/**
+	 * The number of samples of each option per pick when playing without a display, with no time budget, so that the
+	 * moves depend only on the seed and not on how fast the machine is.
+	 */
+	public static final int HEADLESS_SAMPLES = 256;
+
+	/** Option: turn over an unseen card. */
+	private static final int UNKNOWN = 0;
+
+	/** Option: turn over a card that has already been seen. */
+	private static final int KNOWN = 1;
+
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
+
+	/** What the AI knows about the cards on the table. Its memory is perfect. */
+	private final CardKnowledge knowledge;
+
+	/** Random number stream, used for picking cards. */
+	private final RandomStream random;
+
+	/** Executor to sample on, or null to sample on the calling thread. */
+	private final ExecutorService executor;
+
+	/** Samplers, one per thread. */
+	private final Sampler[] samplers;
+
+	/** The time budget for each move, in nanoseconds, or zero for no limit. */
+	private final long budgetNanos;
+
+	/** The maximum number of samples of each option per pick. */
+	private final int maxSamples;
+
+	/** After an invocation to pickFirstCard(), the id of the first card picked, or -1. */
+	private int firstCardId = -1;
+
+	/** After an invocation to pickFirstCard(), the id of the second card to pick if already decided, or -1. */
+	private int secondCardId = -1;
+
+	/** The time spent sampling so far this move. */
+	private long nanosUsed;
+
+	/** The knowledge saved by checkpoint(), created by the first checkpoint. */
+	private CardKnowledge savedKnowledge;
+
+	/** The picks, time spent and random number stream positions saved by checkpoint(), the samplers' last. */
+	private int savedFirstCardId, savedSecondCardId;
+	private long savedNanosUsed;
+	private long[] savedRandomStates;
+
+	// The state being sampled from, set before each round of sampling
+
+	/** The number of pairs with one card remembered. Those cards' pairs are labelled from zero upwards. */
+	private int singles;
+
+	/** The number of pairs with both cards remembered. */
+	private int knownPairs;
+
+	/** The number of cards not seen. */
+	private int unknowns;
+
+	/** The player to move. */
+	private int rootPlayerId;
+
+	/** Player scores. */
+	private int[] rootScores;
+
+	/** Whether the first card of the turn has already been turned over; if so, it is the single with label zero. */
+	private boolean firstPicked;
+
+	/**
+	 * Construct a new Monte Carlo computer player.
+	 *
+	 * @param model
+	 *            The game model.
+	 * @param seed
+	 *            The seed for the player's random number stream.
+	 * @param executor
+	 *            The executor to sample on, or null to sample on the calling thread.
+	 * @param threads
+	 *            The number of sampling tasks to run at once on the executor.
+	 * @param budgetNanos
+	 *            The time budget for each move in nanoseconds, such as DEVICE_BUDGET_NANOS, or zero for no limit.
+	 * @param maxSamples
+	 *            The maximum number of samples of each option per pick.
+	 */
+	public MonteCarloAI(final Pelmanism model, final long seed, final ExecutorService executor, final int threads,
+			final long budgetNanos, final int maxSamples) {
+		if (threads <= 0 || (executor == null && threads != 1)) {
+			throw new IllegalArgumentException("threads = " + threads);
+		}
+		if (maxSamples <= 0) {
+			throw new IllegalArgumentException("maxSamples = " + maxSamples);
+		}
+		this.model = model;
+		this.knowledge = new CardKnowledge(model);
+		this.random = new RandomStream(seed);
+		this.executor = executor;
+		this.budgetNanos = budgetNanos;
+		this.maxSamples = maxSamples;
+		this.samplers = new Sampler[threads];
+		for (int i = 0; i < threads; i++) {
+			samplers[i] = new Sampler(random.split());
+		}
+	}
+
+	@Override
+	public void cardSeen(final Card card) {
+		knowledge.seen(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void cardRestored(final Card card) {
+		knowledge.restored(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void gameRewound() {
+		knowledge.rewound(model.getTurnCount());
+	}
+
+	@Override
+	public void cardReplaced(final Card card) {
+		knowledge.forget(card.getId());
+	}
+
+	@Override
+	public void updateCards() {
+		firstCardId = -1;
+		secondCardId = -1;
+		nanosUsed = 0;
+		knowledge.catchUp(model);
+	}
+
+	@Override
+	public Card pickFirstCard() {
+		final IntPool seen = knowledge.getSeen();
+		final IntPool unknown = knowledge.getUnknown();
+		if (!knowledge.getKnownPairs().isEmpty()) {
+			// Always take a known pair
+			final int pairId = knowledge.getKnownPairs().random(random);
+			firstCardId = knowledge.getPairCard(pairId, 0);
+			secondCardId = knowledge.getPairCard(pairId, 1);
+		} else if (seen.isEmpty()) {
+			firstCardId = unknown.random(random);
+		} else if (unknown.isEmpty()) {
+			// Cannot happen: with every card seen, every pair is known
+			throw new IllegalStateException("No pairs known and no unknown cards");
+		} else {
+			// Turn over an unseen card, or a seen one and then an unseen one?
+			firstCardId = (sample(false, budgetNanos / 2) == UNKNOWN) ? unknown.random(random) : seen.random(random);
+		}
+		return model.getCard(firstCardId);
+	}
+
+	@Override
+	public Card pickSecondCard() {
+		if (secondCardId >= 0) {
+			return model.getCard(secondCardId);
+		}
+		final IntPool seen = knowledge.getSeen();
+		final IntPool unknown = knowledge.getUnknown();
+		final int partnerId = knowledge.getPartner(firstCardId);
+		if (partnerId >= 0) {
+			// Found a pair
+			secondCardId = partnerId;
+		} else if (unknown.isEmpty()) {
+			secondCardId = seen.randomExcluding(random, firstCardId);
+		} else if (seen.size() <= 1) {
+			secondCardId = unknown.randomExcluding(random, firstCardId);
+		} else {
+			// Try for a match with an unseen card, or give nothing away with a seen one?
+			final long budget = (budgetNanos == 0) ? 0 : Math.max(1, budgetNanos - nanosUsed);
+			secondCardId = (sample(true, budget) == UNKNOWN) ? unknown.randomExcluding(random, firstCardId) : seen
+					.randomExcluding(random, firstCardId);
+		}
+		return model.getCard(secondCardId);
+	}
+
+	@Override
+	public void checkpoint() {
+		if (savedKnowledge == null) {
+			savedKnowledge = new CardKnowledge(model);
+			savedRandomStates = new long[samplers.length + 1];
+		}
+		savedKnowledge.copyFrom(knowledge);
+		savedFirstCardId = firstCardId;
+		savedSecondCardId = secondCardId;
+		savedNanosUsed = nanosUsed;
+		savedRandomStates[0] = random.getState();
+		for (int i = 0; i < samplers.length; i++) {
+			savedRandomStates[i + 1] = samplers[i].random.getState();
+		}
+	}
+
+	@Override
+	public void restore() {
+		knowledge.copyFrom(savedKnowledge);
+		firstCardId = savedFirstCardId;
+		secondCardId = savedSecondCardId;
+		nanosUsed = savedNanosUsed;
+		random.setState(savedRandomStates[0]);
+		for (int i = 0; i < samplers.length; i++) {
+			samplers[i].random.setState(savedRandomStates[i + 1]);
+		}
+	}
+
+	/**
+	 * Sample both options, and return the better one.
+	 *
+	 * @param firstPicked
+	 *            Whether the first card of the turn has already been turned over, so that this is the choice of the
+	 *            second card. The first card must then be a single.
+	 * @param budget
+	 *            The time budget for sampling, or zero for no limit.
+	 */
+	private int sample(final boolean firstPicked, final long budget) {
+		final long start = System.nanoTime();
+
+		// Describe the state to sample from
+		this.firstPicked = firstPicked;
+		knownPairs = knowledge.getKnownPairs().size();
+		singles = knowledge.getSeen().size() - knownPairs * 2;
+		unknowns = knowledge.getUnknown().size();
+		rootPlayerId = model.getCurrentPlayerId();
+		rootScores = new int[model.getNumberOfPlayers()];
+		for (int i = 0; i < rootScores.length; i++) {
+			rootScores[i] = model.getPlayerScore(i);
+		}
+		final long deadline = (budget == 0) ? 0 : start + budget;
+		final int samplesEach = maxSamples / samplers.length + ((maxSamples % samplers.length == 0) ? 0 : 1);
+		for (final Sampler sampler : samplers) {
+			sampler.reset(deadline, samplesEach);
+		}
+
+		// Sample
+		if (executor == null) {
+			samplers[0].call();
+		} else {
+			final List<Sampler> tasks = new ArrayList<Sampler>(samplers.length);
+			for (final Sampler sampler : samplers) {
+				tasks.add(sampler);
+			}
+			try {
+				for (final Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		// Compare the options' average margins
+		double margins = 0.0;
+		long samples = 0;
+		for (final Sampler sampler : samplers) {
+			margins += sampler.marginDifference;
+			samples += sampler.samples;
+		}
+		nanosUsed += System.nanoTime() - start;
+		return (samples == 0 || margins >= 0.0) ? UNKNOWN : KNOWN;
+	}
+
+	/** Plays out sampled layouts of the unseen cards, on one thread. */
+	private final class Sampler implements Callable<Void> {
+
+		/** Random number stream, owned by this sampler. */
+		private final RandomStream random;
+
+		/** The sampled pair labels of the unseen cards, in the order they will be turned over. */
+		private final int[] labels;
+
+		/** Whether one card of each labelled pair has been seen, in the current playout. */
+		private final boolean[] singleSeen;
+
+		/** Player scores, in the current playout. */
+		private int[] scores;
+
+		/** The number of pairs with both cards seen, in the current playout. */
+		private int knownPairCount;
+
+		/** The number of pairs still on the board, in the current playout. */
+		private int pairsRemaining;
+
+		/** The number of unseen cards turned over so far, in the current playout. */
+		private int next;
+
+		/** The time sampling must stop by, or zero for no limit. */
+		private long deadline;
+
+		/** The maximum number of samples to take. */
+		private int maxSamples;
+
+		/** The sum over samples of the margin with UNKNOWN less the margin with KNOWN. */
+		double marginDifference;
+
+		/** The number of samples taken. */
+		int samples;
+
+		Sampler(final RandomStream random) {
+			this.random = random;
+			this.labels = new int[model.getNumberOfCards()];
+			this.singleSeen = new boolean[model.getNumberOfCards() / 2];
+		}
+
+		/** Get ready for a new round of sampling. */
+		void reset(final long deadline, final int maxSamples) {
+			this.deadline = deadline;
+			this.maxSamples = maxSamples;
+			this.marginDifference = 0.0;
+			this.samples = 0;
+			if (scores == null || scores.length != rootScores.length) {
+				scores = new int[rootScores.length];
+			}
+		}
+
+		@Override
+		public Void call() {
+			final int freshPairs = (unknowns - singles) / 2;
+			while (samples < maxSamples && (deadline == 0 || System.nanoTime() < deadline)) {
+
+				// Sample a layout: each single's partner and both cards of each unseen pair, in a random order
+				int n = 0;
+				for (int label = 0; label < singles; label++) {
+					labels[n++] = label;
+				}
+				for (int label = singles; label < singles + freshPairs; label++) {
+					labels[n++] = label;
+					labels[n++] = label;
+				}
+				for (int i = n - 1; i > 0; i--) {
+					final int j = random.nextInt(i + 1);
+					final int label = labels[i];
+					labels[i] = labels[j];
+					labels[j] = label;
+				}
+
+				// Play out both options on the same layout
+				marginDifference += playOut(UNKNOWN) - playOut(KNOWN);
+				samples++;
+			}
+			return null;
+		}
+
+		/** Play out the rest of the game after taking an option, and return the margin of the player to move. */
+		private int playOut(final int option) {
+
+			// Set up the playout
+			final int freshPairs = (unknowns - singles) / 2;
+			for (int label = 0; label < singles + freshPairs; label++) {
+				singleSeen[label] = label < singles;
+			}
+			System.arraycopy(rootScores, 0, scores, 0, scores.length);
+			knownPairCount = knownPairs;
+			pairsRemaining = knownPairs + singles + freshPairs;
+			next = 0;
+
+			// Take the option
+			int playerId = rootPlayerId;
+			if (option == UNKNOWN && !firstPicked) {
+				playerId = playTurn(playerId);
+			} else if (option == UNKNOWN || !firstPicked) {
+				// With the single labelled zero turned over first, turn over an unseen card
+				playerId = playSecondCard(playerId, 0);
+			} else {
+				// Turn over two seen cards, and give nothing away
+				playerId = nextPlayer(playerId);
+			}
+
+			// Play out the rest of the game, with everybody remembering everything
+			while (pairsRemaining > 0) {
+				playerId = playTurn(playerId);
+			}
+
+			// Margin over the best opponent
+			int best = Integer.MIN_VALUE;
+			for (int i = 0; i < scores.length; i++) {
+				if (i != rootPlayerId && scores[i] > best) {
+					best = scores[i];
+				}
+			}
+			return (best == Integer.MIN_VALUE) ? scores[rootPlayerId] : scores[rootPlayerId] - best;
+		}
+
+		/** Play a turn with perfect memory, and return the player to play the next turn. */
+		private int playTurn(final int playerId) {
+			if (knownPairCount > 0) {
+				knownPairCount--;
+				return scorePair(playerId);
+			}
+			final int first = labels[next++];
+			if (singleSeen[first]) {
+				// Partner already seen
+				singleSeen[first] = false;
+				return scorePair(playerId);
+			}
+			singleSeen[first] = true;
+			return playSecondCard(playerId, first);
+		}
+
+		/** With a single's card turned over first, turn over an unseen card, and return the next player. */
+		private int playSecondCard(final int playerId, final int first) {
+			final int second = labels[next++];
+			if (second == first) {
+				singleSeen[first] = false;
+				return scorePair(playerId);
+			}
+			if (singleSeen[second]) {
+				// Both cards of the second card's pair are now known
+				singleSeen[second] = false;
+				knownPairCount++;
+			} else {
+				singleSeen[second] = true;
+			}
+			return nextPlayer(playerId);
+		}
+
+		/** Score a pair for a player, who plays again. */
+		private int scorePair(final int playerId) {
+			scores[playerId]++;
+			pairsRemaining--;
+			return playerId;
+		}
+
+		/** The player after the given one. */
+		private int nextPlayer(final int playerId) {
+			return (playerId + 1) % scores.length;
+		}
+	}
+}
@@ -97,6 +97,11 @@ public class MyGame extends Game {
 	/** The name of the preference entry that holds the card set setting. */
 	public static final String PREF_CARD_SET = "card_set";
 
+	// Endless mode
+
+	/** The name of the preference entry that holds the endless mode setting. */
+	private static final String PREF_ENDLESS = "endless";
+
 	// Audio settings
 
 	/** The name of the preference entry that holds the sound setting. */
@@ -254,6 +259,17 @@ public class MyGame extends Game {
 		return PlayerConfiguration.valueOf(pref);
 	}
 
+	/** Load endless mode setting based on saved value in preferences, or default to off if preference not available. */
+	public final boolean getEndlessFromPrefs() {
+		return mPrefs.getBoolean(MyGame.PREF_ENDLESS, false);
+	}
+
+	/** Save endless mode setting to app's preferences file. */
+	public final void saveEndlessToPrefs(final boolean endless) {
+		mPrefs.putBoolean(PREF_ENDLESS, endless);
+		mPrefs.flush();
+	}
+
 	/** Load audio setting based on saved value in preferences, or default to on if preference not available. */
 	public final boolean getSoundFromPrefs() {
 		return mPrefs.getBoolean(MyGame.PREF_SOUND, true);
@@ -0,0 +1,242 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * An append-only log of the cards revealed in a game, shared by every computer player watching it. Each player keeps
+ * only a cursor into the log and a mask of the cards it has forgotten (see LogMemory), so that adding a computer player
+ * costs a bit per card rather than its own copy of everything seen.
+ *
+ * Every player that is shown a card reports it, and reports of the same card at the same version of the game are
+ * logged once, so the game can go on telling each player about each card as before. When an endless game replaces a
+ * card, a tombstone is logged for it instead, as nothing is known about the new card.
+ *
+ * As well as the log itself, the cards still on the board are kept here, and for each pair id the cards whose latest
+ * entry shows that pair id. The log grows by an entry for each card turned over. Entries keep their numbers for as long
+ * as the log lasts, but those older than the oldest entry any LogMemory reading the log may still remember are dropped
+ * when the log fills up, so that an endless game's log stays bounded however long it is played.
+ *
+ * @author Charlie
+ */
+public final class ObservationLog {
+
+	/** The initial capacity of the log, in entries. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
+
+	/** The card id of each entry. */
+	private int[] cardIds = new int[INITIAL_CAPACITY];
+
+	/** The pair id of each entry, or -1 for a tombstone. */
+	private int[] pairIds = new int[INITIAL_CAPACITY];
+
+	/** The number of entries, counting those dropped. */
+	private int size;
+
+	/** The number of the first entry still held, at index zero of the arrays. */
+	private int base;
+
+	/** The memories reading the log. */
+	private LogMemory[] readers = new LogMemory[2];
+
+	/** The number of memories reading the log. */
+	private int readerCount;
+
+	/** The latest entry for each card, or -1. */
+	private final int[] lastEntry;
+
+	/** The pair id of each card's latest entry, which may have been dropped, or -1. */
+	private final int[] lastPairId;
+
+	/** The version of the game when each card's latest entry was logged. */
+	private final long[] lastEntryVersion;
+
+	/** The cards whose latest entry shows each pair id, two slots per pair id, each -1 if empty. */
+	private final int[] pairCards;
+
+	/** Cards still on the board. */
+	private final IntPool onBoard;
+
+	/** The number of cards removed from the board so far. */
+	private int removals;
+
+	/** The number of the game's turns that have been read for matches. */
+	private int turnCursor;
+
+	/** Create an empty log for a game. */
+	public ObservationLog(final Pelmanism model) {
+		this.model = model;
+		final int numberOfCards = model.getNumberOfCards();
+		lastEntry = new int[numberOfCards];
+		lastPairId = new int[numberOfCards];
+		lastEntryVersion = new long[numberOfCards];
+		onBoard = new IntPool(numberOfCards);
+		for (int i = 0; i < numberOfCards; i++) {
+			lastEntry[i] = -1;
+			lastPairId[i] = -1;
+			if (model.isCardPickable(i)) {
+				onBoard.add(i);
+			}
+		}
+		pairCards = new int[model.getPairIdLimit() * 2];
+		for (int i = 0; i < pairCards.length; i++) {
+			pairCards[i] = -1;
+		}
+		turnCursor = model.getTurnCount();
+	}
+
+	/** Add a memory reading the log, whose oldest entry must not be dropped. */
+	final void addReader(final LogMemory reader) {
+		if (readerCount == readers.length) {
+			final LogMemory[] grown = new LogMemory[readerCount * 2];
+			System.arraycopy(readers, 0, grown, 0, readerCount);
+			readers = grown;
+		}
+		readers[readerCount++] = reader;
+	}
+
+	/** The number of entries in the log, counting those dropped. */
+	final int size() {
+		return size;
+	}
+
+	/** The card id of an entry, which must not have been dropped. */
+	final int getCardId(final int entry) {
+		return cardIds[entry - base];
+	}
+
+	/** The pair id of an entry, which must not have been dropped, or -1 for a tombstone. */
+	final int getPairId(final int entry) {
+		return pairIds[entry - base];
+	}
+
+	/** The latest entry for a card, or -1. */
+	final int getLastEntry(final int cardId) {
+		return lastEntry[cardId];
+	}
+
+	/** Cards still on the board. */
+	final IntPool getOnBoard() {
+		return onBoard;
+	}
+
+	/** The number of cards removed from the board so far, which changes whenever a card is removed. */
+	final int getRemovals() {
+		return removals;
+	}
+
+	/** The other card whose latest entry shows the same pair id as a card's latest entry, or -1. */
+	final int getPartner(final int cardId) {
+		final int pairId = lastPairId[cardId];
+		if (pairId < 0) {
+			return -1;
+		}
+		final int slot = pairId * 2;
+		return (pairCards[slot] == cardId) ? pairCards[slot + 1] : pairCards[slot];
+	}
+
+	/** Log a card as revealed, with the given pair id. */
+	final void reveal(final int cardId, final int pairId) {
+		append(cardId, pairId);
+	}
+
+	/** Log that an endless game has replaced a card with one nobody has seen. */
+	final void replaced(final int cardId) {
+		append(cardId, -1);
+	}
+
+	/** Put a card back on the board after the turn that matched it has been rewound, revealing it. */
+	final void restored(final int cardId, final int pairId) {
+		onBoard.add(cardId);
+		append(cardId, pairId);
+	}
+
+	/** Note that the game has been rewound, so turns from there on must be read again. */
+	final void rewound() {
+		turnCursor = Math.min(turnCursor, model.getTurnCount());
+	}
+
+	/** Read any turns played since the last sync, removing the cards of any pairs found from the board. */
+	final void sync() {
+		final int turnCount = model.getTurnCount();
+		if (model.isEndless()) {
+			// Found pairs are replaced rather than removed, and the replaced cards are logged separately
+			turnCursor = turnCount;
+			return;
+		}
+		for (; turnCursor < turnCount; turnCursor++) {
+			if (model.isTurnMatch(turnCursor)) {
+				onBoard.remove(model.getTurnFirstPickId(turnCursor));
+				onBoard.remove(model.getTurnSecondPickId(turnCursor));
+				removals += 2;
+			}
+		}
+	}
+
+	/** Append an entry, unless it repeats the card's latest entry at the same version of the game. */
+	private void append(final int cardId, final int pairId) {
+		final int previous = lastEntry[cardId];
+		final int previousPairId = lastPairId[cardId];
+		final long version = model.getVersion();
+		if (previous >= 0 && lastEntryVersion[cardId] == version && previousPairId == pairId) {
+			return;
+		}
+		if (size - base == cardIds.length) {
+			makeRoom();
+		}
+
+		// Move the card to its new pair id's slots
+		if (previousPairId >= 0) {
+			final int slot = previousPairId * 2;
+			if (pairCards[slot] == cardId) {
+				pairCards[slot] = pairCards[slot + 1];
+				pairCards[slot + 1] = -1;
+			} else if (pairCards[slot + 1] == cardId) {
+				pairCards[slot + 1] = -1;
+			}
+		}
+		if (pairId >= 0) {
+			final int slot = pairId * 2;
+			if (pairCards[slot] < 0) {
+				pairCards[slot] = cardId;
+			} else {
+				pairCards[slot + 1] = cardId;
+			}
+		}
+
+		cardIds[size - base] = cardId;
+		pairIds[size - base] = pairId;
+		lastEntry[cardId] = size++;
+		lastPairId[cardId] = pairId;
+		lastEntryVersion[cardId] = version;
+	}
+
+	/**
+	 * Make room for another entry in the full arrays: drop the entries older than every reader's oldest entry, and grow
+	 * the arrays if that leaves them more than half full.
+	 */
+	private void makeRoom() {
+		int keep = size;
+		for (int i = 0; i < readerCount; i++) {
+			keep = Math.min(keep, readers[i].getOldest());
+		}
+		final int dropped = keep - base;
+		if (dropped > 0) {
+			final int held = size - keep;
+			System.arraycopy(cardIds, dropped, cardIds, 0, held);
+			System.arraycopy(pairIds, dropped, pairIds, 0, held);
+			base = keep;
+		}
+		if (size - base > cardIds.length / 2) {
+			cardIds = grow(cardIds);
+			pairIds = grow(pairIds);
+		}
+	}
+
+	/** Double the length of an array. */
+	private static int[] grow(final int[] array) {
+		final int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
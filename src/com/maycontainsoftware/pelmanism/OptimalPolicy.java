@@ -0,0 +1,177 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The result of solving the two player game exactly, as computed by OptimalSolver: for every state, the probability that
+ * the player to move wins with best play by both players, and the best move to make. Ties count as half a win.
+ *
+ * A state is the number of pairs remaining, the number of cards no player has seen, and the score of the player to move
+ * less their opponent's. Every player is assumed to remember every card seen, and to take any pair they know at once,
+ * so every card that has been seen and is still on the board is a single whose partner has not been seen. The number
+ * of such singles therefore follows from the other two numbers: it is twice the pairs remaining, less the unseen cards.
+ * A player may pass by turning over two seen cards, but a pass must be answered by a move, so that games end; the
+ * values and moves here are for a player whose opponent has not just passed.
+ *
+ * States are held densely, indexed by pairs remaining, then unseen cards, then score difference, with one byte of
+ * policy and one float of value per state, so a lookup is a little arithmetic and two array reads. The tables for up to
+ * 15 pairs, enough for every Difficulty, take about 14 KB.
+ *
+ * @author Charlie
+ */
+public final class OptimalPolicy {
+
+	/** Magic number at the start of an exported table: "PLMO". */
+	private static final int MAGIC = 0x504C4D4F;
+
+	/** Policy flag: turn over two seen cards, giving nothing away, rather than an unseen card. */
+	static final byte PASS = 1;
+
+	/** Policy flag: having turned over an unseen card that matched nothing, turn over another unseen card. */
+	static final byte SECOND_UNKNOWN = 2;
+
+	/** The largest number of pairs solved for. */
+	private final int maxPairs;
+
+	/** The index of the first state with each number of pairs remaining. */
+	private final int[] layerOffsets;
+
+	/** The policy flags of each state. */
+	final byte[] actions;
+
+	/** The probability that the player to move wins from each state. */
+	final float[] values;
+
+	/** Create an empty table, to be filled in by a solver or a reader. */
+	OptimalPolicy(final int maxPairs) {
+		if (maxPairs < 0) {
+			throw new IllegalArgumentException("maxPairs = " + maxPairs);
+		}
+		this.maxPairs = maxPairs;
+		this.layerOffsets = new int[maxPairs + 2];
+		long offset = 0;
+		for (int p = 0; p <= maxPairs + 1; p++) {
+			if (offset > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many pairs to solve: " + maxPairs);
+			}
+			layerOffsets[p] = (int) offset;
+			// p + 1 unseen card counts, from p to 2p, by 2p + 1 score differences
+			offset += (p + 1L) * (2L * p + 1L);
+		}
+		final int states = layerOffsets[maxPairs + 1];
+		this.actions = new byte[states];
+		this.values = new float[states];
+	}
+
+	/** The largest number of pairs solved for. */
+	public final int getMaxPairs() {
+		return maxPairs;
+	}
+
+	/** The number of states in the table. */
+	public final int getNumberOfStates() {
+		return values.length;
+	}
+
+	/** The index of a state. The score difference must be no more than the pairs remaining either way. */
+	final int index(final int pairsRemaining, final int unknownCards, final int scoreDifference) {
+		return layerOffsets[pairsRemaining] + (unknownCards - pairsRemaining) * (2 * pairsRemaining + 1)
+				+ (scoreDifference + pairsRemaining);
+	}
+
+	/** Check that a state is valid. */
+	private void checkState(final int pairsRemaining, final int unknownCards) {
+		if (pairsRemaining < 0 || pairsRemaining > maxPairs) {
+			throw new IllegalArgumentException("Invalid number of pairs remaining: " + pairsRemaining);
+		}
+		if (unknownCards < pairsRemaining || unknownCards > pairsRemaining * 2) {
+			throw new IllegalArgumentException("Invalid number of unseen cards: " + unknownCards + " with "
+					+ pairsRemaining + " pairs remaining");
+		}
+	}
+
+	/**
+	 * The probability that the player to move wins, with best play by both players. Ties count as half a win.
+	 *
+	 * @param pairsRemaining
+	 *            The number of pairs still on the board.
+	 * @param unknownCards
+	 *            The number of cards on the board that have not been seen.
+	 * @param scoreDifference
+	 *            The score of the player to move, less their opponent's.
+	 */
+	public final float getWinProbability(final int pairsRemaining, final int unknownCards, final int scoreDifference) {
+		checkState(pairsRemaining, unknownCards);
+		if (scoreDifference > pairsRemaining) {
+			return 1.0f;
+		}
+		if (scoreDifference < -pairsRemaining) {
+			return 0.0f;
+		}
+		return values[index(pairsRemaining, unknownCards, scoreDifference)];
+	}
+
+	/**
+	 * Whether the player to move should pass, by turning over two seen cards, rather than turn over an unseen card. Only
+	 * applies when they know no pair, and their opponent has not just passed.
+	 */
+	public final boolean isPass(final int pairsRemaining, final int unknownCards, final int scoreDifference) {
+		return (action(pairsRemaining, unknownCards, scoreDifference) & PASS) != 0;
+	}
+
+	/**
+	 * Whether the player to move, having turned over an unseen card that matched nothing, should turn over another
+	 * unseen card rather than a seen one. The state is the one before the first card was turned over.
+	 */
+	public final boolean isSecondUnknown(final int pairsRemaining, final int unknownCards, final int scoreDifference) {
+		return (action(pairsRemaining, unknownCards, scoreDifference) & SECOND_UNKNOWN) != 0;
+	}
+
+	/** The policy flags of a state. Once the game is decided, nothing matters, so unseen cards are turned over. */
+	private int action(final int pairsRemaining, final int unknownCards, final int scoreDifference) {
+		checkState(pairsRemaining, unknownCards);
+		if (scoreDifference > pairsRemaining || scoreDifference < -pairsRemaining) {
+			return SECOND_UNKNOWN;
+		}
+		return actions[index(pairsRemaining, unknownCards, scoreDifference)];
+	}
+
+	/** Export the table to a stream. */
+	public final void write(final OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(maxPairs);
+		data.write(actions);
+		for (final float value : values) {
+			data.writeFloat(value);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Import a table exported by write().
+	 *
+	 * @throws IOException
+	 *             If the stream cannot be read, or does not hold a table.
+	 */
+	public static OptimalPolicy read(final InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a policy table");
+		}
+		final int maxPairs = data.readInt();
+		if (maxPairs < 0 || maxPairs > 1000) {
+			throw new IOException("Invalid number of pairs: " + maxPairs);
+		}
+		final OptimalPolicy policy = new OptimalPolicy(maxPairs);
+		data.readFully(policy.actions);
+		for (int i = 0; i < policy.values.length; i++) {
+			policy.values[i] = data.readFloat();
+		}
+		return policy;
+	}
+}
@@ -0,0 +1,212 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Solves the two player game exactly, for players who remember every card, producing an OptimalPolicy.
+ *
+ * With no pair known, the player to move has three sensible moves. They can turn over an unseen card: if it matches a
+ * single they take the pair and move again, and otherwise they turn over either a second unseen card, hoping for a
+ * match but risking showing their opponent one, or a seen card, giving nothing away. Or they can turn over two seen
+ * cards, giving nothing away and learning nothing, which passes the move. Turning over a seen card and then an unseen
+ * one is never better than the other way round, so is not considered.
+ *
+ * Were both players free to pass, they could pass forever, so a pass must be answered by a move: the other player
+ * cannot pass straight back. Passing only changes who is to move, so the value of passing is the value of the state's
+ * mirror image, with the scores the other way round and passing not allowed.
+ *
+ * Every other move leads to a state with fewer pairs remaining, or fewer unseen cards, or both, so states are solved in
+ * waves: a state with p pairs remaining and u unseen cards depends only on states with a smaller p + u. The states in a
+ * wave are independent of each other, and are shared out between tasks on an executor.
+ *
+ * @author Charlie
+ */
+public final class OptimalSolver {
+
+	/** The fewest states worth a task of their own; smaller waves are solved on the calling thread. */
+	private static final int MIN_TASK_STATES = 4096;
+
+	/** The table being filled in. */
+	private final OptimalPolicy policy;
+
+	/** The values of the states, at full precision while solving. */
+	private final double[] values;
+
+	/** Create a solver for games of up to a number of pairs. */
+	private OptimalSolver(final int maxPairs) {
+		policy = new OptimalPolicy(maxPairs);
+		values = new double[policy.getNumberOfStates()];
+	}
+
+	/** The shared table, or null. */
+	private static OptimalPolicy shared;
+
+	/**
+	 * A table for games of up to at least a number of pairs, solved once and shared between callers. It is solved again,
+	 * on the calling thread, only when a caller needs more pairs than it has.
+	 */
+	public static synchronized OptimalPolicy shared(final int maxPairs) {
+		if (shared == null || shared.getMaxPairs() < maxPairs) {
+			shared = solve(maxPairs);
+		}
+		return shared;
+	}
+
+	/** Solve games of up to a number of pairs, on the calling thread. */
+	public static OptimalPolicy solve(final int maxPairs) {
+		return solve(maxPairs, null, 1);
+	}
+
+	/**
+	 * Solve games of up to a number of pairs.
+	 *
+	 * @param maxPairs
+	 *            The largest number of pairs to solve for.
+	 * @param executor
+	 *            The executor to solve on, or null to solve on the calling thread.
+	 * @param threads
+	 *            The largest number of tasks to split each wave of states into.
+	 */
+	public static OptimalPolicy solve(final int maxPairs, final ExecutorService executor, final int threads) {
+		if (threads <= 0 || (executor == null && threads != 1)) {
+			throw new IllegalArgumentException("threads = " + threads);
+		}
+		final OptimalSolver solver = new OptimalSolver(maxPairs);
+
+		// The empty board is a tie
+		solver.values[0] = 0.5;
+
+		for (int wave = 1; wave <= maxPairs * 3; wave++) {
+			// The states in this wave: p pairs remaining and wave - p unseen cards, where p <= wave - p <= 2p
+			final int minPairs = (wave + 2) / 3;
+			final int maxWavePairs = Math.min(wave / 2, maxPairs);
+			if (minPairs > maxWavePairs) {
+				continue;
+			}
+			int states = 0;
+			for (int p = minPairs; p <= maxWavePairs; p++) {
+				states += 2 * p + 1;
+			}
+			final int tasks = Math.min(threads, Math.max(1, states / MIN_TASK_STATES));
+			if (tasks == 1) {
+				solver.solveStates(wave, minPairs, maxWavePairs);
+			} else {
+				solver.solveInParallel(executor, tasks, wave, minPairs, maxWavePairs);
+			}
+		}
+
+		// Keep the values at table precision
+		for (int i = 0; i < solver.values.length; i++) {
+			solver.policy.values[i] = (float) solver.values[i];
+		}
+		return solver.policy;
+	}
+
+	/** Solve a wave by sharing its numbers of pairs remaining out between tasks on an executor. */
+	private void solveInParallel(final ExecutorService executor, final int tasks, final int wave, final int minPairs,
+			final int maxPairs) {
+		final List<Callable<Void>> callables = new ArrayList<Callable<Void>>(tasks);
+		final int count = maxPairs - minPairs + 1;
+		for (int t = 0; t < tasks; t++) {
+			final int from = minPairs + (int) ((long) count * t / tasks);
+			final int to = minPairs + (int) ((long) count * (t + 1) / tasks) - 1;
+			if (from > to) {
+				continue;
+			}
+			callables.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					solveStates(wave, from, to);
+					return null;
+				}
+			});
+		}
+		try {
+			for (final Future<Void> future : executor.invokeAll(callables)) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while solving");
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/** Solve the states of a wave with a range of numbers of pairs remaining. */
+	private void solveStates(final int wave, final int fromPairs, final int toPairs) {
+		for (int p = fromPairs; p <= toPairs; p++) {
+			solveStates(p, wave - p);
+		}
+	}
+
+	/** Solve the states with a number of pairs remaining and unseen cards, for every score difference. */
+	private void solveStates(final int p, final int u) {
+		final int k = 2 * p - u;
+		final int base = policy.index(p, u, 0);
+
+		// The best move other than passing, for every score difference
+		for (int d = -p; d <= p; d++) {
+			// First an unseen card, which may match a single
+			final double firstMatches = (k == 0) ? 0.0 : value(p - 1, u - 1, d + 1);
+			if (k == u) {
+				// Every unseen card is the partner of a single
+				values[base + d] = firstMatches;
+				policy.actions[base + d] = OptimalPolicy.SECOND_UNKNOWN;
+				continue;
+			}
+
+			// It did not match, so a second unseen card: a match, the partner of a single, or another new card
+			final int newCards = u - 2 - k;
+			double secondUnknown = value(p - 1, u - 2, d + 1) + k * (1.0 - value(p - 1, u - 2, 1 - d));
+			if (newCards > 0) {
+				secondUnknown += newCards * (1.0 - value(p, u - 2, -d));
+			}
+			secondUnknown /= u - 1;
+			// Or a seen card, which changes nothing but whose turn it is
+			final double secondKnown = (k == 0) ? -1.0 : 1.0 - value(p, u - 1, -d);
+			final double second;
+			if (secondUnknown >= secondKnown) {
+				second = secondUnknown;
+				policy.actions[base + d] = OptimalPolicy.SECOND_UNKNOWN;
+			} else {
+				second = secondKnown;
+				policy.actions[base + d] = 0;
+			}
+			values[base + d] = (k * firstMatches + (u - k) * second) / u;
+		}
+
+		// Passing needs two seen cards, and must be answered by a move
+		if (k < 2) {
+			return;
+		}
+		for (int d = 0; d <= p; d++) {
+			final double move = values[base + d];
+			final double mirrorMove = values[base - d];
+			if (1.0 - mirrorMove > move) {
+				values[base + d] = 1.0 - mirrorMove;
+				policy.actions[base + d] |= OptimalPolicy.PASS;
+			}
+			if (d != 0 && 1.0 - move > mirrorMove) {
+				values[base - d] = 1.0 - move;
+				policy.actions[base - d] |= OptimalPolicy.PASS;
+			}
+		}
+	}
+
+	/** The value of a solved state, allowing for score differences that have already decided the game. */
+	private double value(final int p, final int u, final int d) {
+		if (d > p) {
+			return 1.0;
+		}
+		if (d < -p) {
+			return 0.0;
+		}
+		return values[policy.index(p, u, d)];
+	}
+}
@@ -1,9 +1,5 @@
 package com.maycontainsoftware.pelmanism;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
  * Pelmanism game model.
  * 
@@ -30,13 +26,36 @@ public class Pelmanism {
 	/** How many pairs of cards have been found so far in this game. */
 	private int pairsFound;
 
+	/** The id of the turn that found each pair, in the order the pairs were found. Only the first pairsFound are valid. */
+	private int[] matchTurnIds;
+
+	/** Whether matchTurnIds may be shared with another game, and must be copied before being written to. */
+	private boolean matchTurnIdsShared;
+
 	// Cards
 
 	/** The number of cards on the table. */
 	final int numberOfCards;
 
-	/** The cards on the board. */
-	private final Card[] cards;
+	/** Primitive storage for the pair ids and matched state of every card on the board. */
+	private final Board board;
+
+	/** Card views over the board, created on demand so that large boards need not hold an object per card. */
+	private Card[] cards;
+
+	// Randomness
+
+	/** The seed the game's random number stream was created with. */
+	private final long seed;
+
+	/** The game's random number stream, used to deal the cards. */
+	private final RandomStream random;
+
+	/** The generator used to deal the cards. */
+	private final DealGenerator dealGenerator;
+
+	/** The seeds of the deals each new game is drawn from, or null to deal each game at random. */
+	private long[] dealSeeds;
 
 	// Other game state
 
@@ -44,13 +63,62 @@ public class Pelmanism {
 	private int currentTurnId;
 
 	/** The turns made in this game */
-	private final List<Turn> turns = new ArrayList<Turn>(20);
+	private final TurnLog turns;
+
+	/** Reusable Turn object handed out to callers that want the turn history as objects. */
+	private final Turn turnCursor = new Turn();
 
 	/** Whether or not the game is over. */
 	private boolean gameOver;
 
+	/** Incremented by every change to the game state: every turn, rewind and reset. */
+	private long version;
+
+	/** The number of times the cards have been dealt, counting the first deal. */
+	private int dealCount;
+
+	/** The number of times the game has been rewound to an earlier turn. */
+	private int rewindCount;
+
+	// Snapshots
+
+	/** Whether a snapshot is published after every change to the game state. */
+	private boolean publishingSnapshots;
+
+	/** The most recently published snapshot, or null if snapshots are not being published. */
+	private volatile GameSnapshot snapshot;
+
+	/** The version of the most recently published snapshot. */
+	private long snapshotVersion;
+
+	// Endless mode
+
+	/** The number of recent turns kept in the turn history of an endless game. */
+	public static final int ENDLESS_HISTORY_TURNS = 4096;
+
+	/** Whether the game is endless: every pair found is replaced by a new pair, and the game never finishes. */
+	private final boolean endless;
+
 	/**
-	 * Create a new instance of the game model.
+	 * The pair ids not currently on the board, as a ring in the order they were released. The oldest is used for the
+	 * next new pair, and the pair id it replaces takes its place. Null unless the game is endless.
+	 */
+	private int[] freePairIds;
+
+	/** Whether freePairIds may be shared with another game, and must be copied before being written to. */
+	private boolean freePairIdsShared;
+
+	/** The index in freePairIds of the pair id to be used next. */
+	private int nextFreePairId;
+
+	/** The ids of the cards whose pair id was changed by the most recent turn. Null unless the game is endless. */
+	private int[] replacedCardIds;
+
+	/** The number of valid entries in replacedCardIds. */
+	private int replacedCardCount;
+
+	/**
+	 * Create a new instance of the game model, with an unpredictable deal.
 	 * 
 	 * @param numberOfPlayers
 	 *            The number of players in the game.
@@ -58,27 +126,253 @@ public class Pelmanism {
 	 *            The number of pairs on the table.
 	 */
 	public Pelmanism(final int numberOfPlayers, final int numberOfPairs) {
+		this(numberOfPlayers, numberOfPairs, RandomStream.randomSeed());
+	}
+
+	/**
+	 * Create a new instance of the game model.
+	 * 
+	 * @param numberOfPlayers
+	 *            The number of players in the game.
+	 * @param numberOfPairs
+	 *            The number of pairs on the table.
+	 * @param seed
+	 *            The seed for the game's random number stream. Games with the same seed have the same deal.
+	 */
+	public Pelmanism(final int numberOfPlayers, final int numberOfPairs, final long seed) {
+		this(numberOfPlayers, new DealGenerator(numberOfPairs), seed);
+	}
+
+	/**
+	 * Create a new instance of the game model, with deals made by a specific generator.
+	 * 
+	 * @param numberOfPlayers
+	 *            The number of players in the game.
+	 * @param dealGenerator
+	 *            The generator to deal the cards with, which also determines the number of pairs.
+	 * @param seed
+	 *            The seed for the game's random number stream. Games with the same seed have the same deal.
+	 */
+	public Pelmanism(final int numberOfPlayers, final DealGenerator dealGenerator, final long seed) {
+		this(numberOfPlayers, dealGenerator, seed, 0, false, null);
+	}
+
+	/**
+	 * Create a new instance of the game model, with every game's deal drawn from a set of deals, as setDealSeeds()
+	 * describes.
+	 * 
+	 * @param numberOfPlayers
+	 *            The number of players in the game.
+	 * @param dealGenerator
+	 *            The generator to deal the cards with, which also determines the number of pairs.
+	 * @param seed
+	 *            The seed for the game's random number stream, which chooses the deals.
+	 * @param dealSeeds
+	 *            The deal seeds, such as those in BalancedDeals.
+	 */
+	public Pelmanism(final int numberOfPlayers, final DealGenerator dealGenerator, final long seed,
+			final long[] dealSeeds) {
+		this(numberOfPlayers, dealGenerator, seed, 0, false, checkDealSeeds(dealSeeds));
+	}
+
+	/**
+	 * Create a new instance of an endless game. Whenever a pair is found it is replaced by a new pair with a pair id that
+	 * is not on the board, and the new cards are shuffled in among the cards already there, so the game never finishes.
+	 * Only the most recent ENDLESS_HISTORY_TURNS turns are kept, so the game can run indefinitely in bounded memory.
+	 * 
+	 * @param numberOfPlayers
+	 *            The number of players in the game.
+	 * @param dealGenerator
+	 *            The generator to deal the cards with, which also determines the number of pairs. Any layout
+	 *            constraint only applies to the first deal.
+	 * @param seed
+	 *            The seed for the game's random number stream.
+	 * @param pairIdLimit
+	 *            Pair ids are allocated from zero up to, but not including, this limit. Must be greater than the number
+	 *            of pairs. A pair id that leaves the board is only used again once every other free pair id has been.
+	 */
+	public Pelmanism(final int numberOfPlayers, final DealGenerator dealGenerator, final long seed,
+			final int pairIdLimit) {
+		this(numberOfPlayers, dealGenerator, seed, pairIdLimit, true, null);
+	}
+
+	/** Create a new instance of the game model, either endless or not, with its deal seeds or null. */
+	private Pelmanism(final int numberOfPlayers, final DealGenerator dealGenerator, final long seed,
+			final int pairIdLimit, final boolean endless, final long[] dealSeeds) {
 
 		// Check arguments
 		if (numberOfPlayers <= 0) {
 			throw new IllegalArgumentException("numberOfPlayers = " + numberOfPlayers);
 		}
-		if (numberOfPairs <= 0) {
-			throw new IllegalArgumentException("numberOfPairs = " + numberOfPairs);
+		if (endless && pairIdLimit <= dealGenerator.getNumberOfPairs()) {
+			throw new IllegalArgumentException("pairIdLimit = " + pairIdLimit);
 		}
 
 		// Set up all game properties
 		// Constants
 		this.numberOfPlayers = numberOfPlayers;
-		this.numberOfPairs = numberOfPairs;
-		this.numberOfCards = numberOfPairs * 2;
+		this.numberOfPairs = dealGenerator.getNumberOfPairs();
+		this.numberOfCards = dealGenerator.getNumberOfCards();
+		this.dealGenerator = dealGenerator;
 		// Constant arrays of variables
 		this.playerScores = new int[numberOfPlayers];
-		this.cards = new Card[numberOfCards];
+		this.board = new Board(numberOfCards);
+		this.matchTurnIds = endless ? null : new int[numberOfPairs];
+		this.turns = endless ? new TurnLog(32, ENDLESS_HISTORY_TURNS) : new TurnLog(32);
+		// Endless mode
+		this.endless = endless;
+		this.freePairIds = endless ? new int[pairIdLimit - numberOfPairs] : null;
+		this.replacedCardIds = endless ? new int[4] : null;
+		// Randomness
+		this.seed = seed;
+		this.random = new RandomStream(seed);
+		this.dealSeeds = dealSeeds;
 
 		resetGame();
 	}
 
+	/**
+	 * Create a new instance of the game model, with a specific layout of cards rather than a random one.
+	 * 
+	 * @param numberOfPlayers
+	 *            The number of players in the game.
+	 * @param deal
+	 *            The pair id of each card, indexed by card id. Each pair id from zero upwards must appear exactly
+	 *            twice.
+	 */
+	public Pelmanism(final int numberOfPlayers, final int[] deal) {
+		this(numberOfPlayers, getNumberOfPairsInDeal(deal));
+
+		// Replace the random layout with the requested one
+		for (int i = 0; i < numberOfCards; i++) {
+			board.setPairId(i, deal[i]);
+		}
+	}
+
+	/** Create a copy of another game, sharing its arrays until one or the other is written to. */
+	private Pelmanism(final Pelmanism source) {
+		this.numberOfPlayers = source.numberOfPlayers;
+		this.currentPlayerId = source.currentPlayerId;
+		this.playerScores = source.playerScores.clone();
+		this.numberOfPairs = source.numberOfPairs;
+		this.pairsFound = source.pairsFound;
+		this.matchTurnIds = source.matchTurnIds;
+		this.matchTurnIdsShared = true;
+		source.matchTurnIdsShared = true;
+		this.numberOfCards = source.numberOfCards;
+		this.board = source.board.fork();
+		this.seed = source.seed;
+		this.random = source.random.copy();
+		this.dealGenerator = source.dealGenerator;
+		this.dealSeeds = source.dealSeeds;
+		this.currentTurnId = source.currentTurnId;
+		this.turns = source.turns.fork();
+		this.gameOver = source.gameOver;
+		this.version = source.version;
+		this.dealCount = source.dealCount;
+		this.rewindCount = source.rewindCount;
+		this.snapshotVersion = source.snapshotVersion;
+		this.endless = source.endless;
+		this.freePairIds = source.freePairIds;
+		this.freePairIdsShared = true;
+		source.freePairIdsShared = true;
+		this.nextFreePairId = source.nextFreePairId;
+		this.replacedCardIds = (source.replacedCardIds == null) ? null : source.replacedCardIds.clone();
+		this.replacedCardCount = source.replacedCardCount;
+	}
+
+	/**
+	 * Create an independent, mutable copy of the game in its current state, for looking ahead. The board and turn
+	 * history are shared with this game until either game changes them, so forking does not copy any per-card state.
+	 * The first turn played in the fork then copies the matched bitset (one bit per card) and the latest chunk of turn
+	 * history. The fork has its own Card objects, so changes to it are never visible through this game's Cards.
+	 */
+	public final Pelmanism fork() {
+		return new Pelmanism(this);
+	}
+
+	/**
+	 * Set whether the game publishes an immutable snapshot of its state after every turn, rewind and reset. Snapshots
+	 * can be read from any thread with getSnapshot(), with no locking. Publishing is off by default, in which case the
+	 * model does no extra work at all; forks never publish until told to.
+	 */
+	public final void setSnapshotPublishing(final boolean publishingSnapshots) {
+		this.publishingSnapshots = publishingSnapshots;
+		if (publishingSnapshots) {
+			publishSnapshot(true);
+		} else {
+			snapshot = null;
+		}
+	}
+
+	/**
+	 * Get the most recently published snapshot of the game state. This is the only method of the model that is safe to
+	 * call from a thread other than the one playing the game.
+	 * 
+	 * @return The snapshot, or null if snapshots are not being published.
+	 */
+	public final GameSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Publish a snapshot of the current state. The snapshot takes over the board's matched bitset, which the board copies
+	 * before it is next written to, so the bitset is only ever copied by turns that find a match.
+	 * 
+	 * @param scoresChanged
+	 *            Whether the scores may have changed since the last snapshot. If not, the scores array is shared.
+	 */
+	private void publishSnapshot(final boolean scoresChanged) {
+		final GameSnapshot previous = snapshot;
+		final int[] scores = (scoresChanged || previous == null) ? playerScores.clone() : previous.scores();
+		final int pairsRemaining = endless ? numberOfPairs : numberOfPairs - pairsFound;
+		snapshot = new GameSnapshot(++snapshotVersion, currentTurnId, currentPlayerId, pairsFound, pairsRemaining,
+				numberOfCards, gameOver, scores, board.shareMatched());
+	}
+
+	/** Check that a deal is valid, and return the number of pairs in it. */
+	private static final int getNumberOfPairsInDeal(final int[] deal) {
+		if (deal == null || deal.length == 0 || deal.length % 2 != 0) {
+			throw new IllegalArgumentException("Deal must contain a positive, even number of cards");
+		}
+		final int numberOfPairs = deal.length / 2;
+		final int[] counts = new int[numberOfPairs];
+		for (int i = 0; i < deal.length; i++) {
+			final int pairId = deal[i];
+			if (pairId < 0 || pairId >= numberOfPairs || ++counts[pairId] > 2) {
+				throw new IllegalArgumentException("Invalid pair id in deal: " + pairId);
+			}
+		}
+		return numberOfPairs;
+	}
+
+	/**
+	 * Set the deals that each new game is drawn from, such as the balanced deals in BalancedDeals, from the next call to
+	 * resetGame() on. Each new game is given the deal the game's generator makes from a random number stream created
+	 * with one of the seeds, chosen at random, as DealAnalyzer.deal() does, and then the pair ids are shuffled. Where
+	 * the pairs lie is all that DealAnalyzer measures, so the shuffle keeps a deal's balance, while a deal that comes
+	 * round again shows different pictures and cannot be recognised.
+	 * 
+	 * @param dealSeeds
+	 *            The deal seeds, or null to deal each game at random again.
+	 */
+	public final void setDealSeeds(final long[] dealSeeds) {
+		this.dealSeeds = (dealSeeds == null) ? null : checkDealSeeds(dealSeeds);
+	}
+
+	/** Check that there is at least one deal seed, and return a copy of them. */
+	private static long[] checkDealSeeds(final long[] dealSeeds) {
+		if (dealSeeds.length == 0) {
+			throw new IllegalArgumentException("No deal seeds");
+		}
+		return dealSeeds.clone();
+	}
+
+	/** The seed the game's random number stream was created with. */
+	public final long getSeed() {
+		return seed;
+	}
+
 	/** The total number of pairs available on the board. */
 	public final int getNumberOfPairs() {
 		return numberOfPairs;
@@ -114,13 +408,35 @@ public class Pelmanism {
 		}
 	}
 
-	/** Get a card, by id. */
+	/** Get a card, by id. The same Card object is returned for every call with the same id. */
 	public final Card getCard(final int cardId) {
 		// Check arguments
 		if (cardId < 0 || cardId >= numberOfCards) {
 			throw new IllegalArgumentException("Card id invalid: " + cardId);
 		}
-		return cards[cardId];
+		if (cards == null) {
+			cards = new Card[numberOfCards];
+		}
+		Card card = cards[cardId];
+		if (card == null) {
+			card = new Card(board, cardId);
+			cards[cardId] = card;
+		}
+		return card;
+	}
+
+	/** Get the pair id of a card, by id, without going through a Card object. */
+	public final int getPairId(final int cardId) {
+		// Check arguments
+		if (cardId < 0 || cardId >= numberOfCards) {
+			throw new IllegalArgumentException("Card id invalid: " + cardId);
+		}
+		return board.getPairId(cardId);
+	}
+
+	/** The number of pairs still on the board. */
+	public final int getPairsRemaining() {
+		return board.getPairsRemaining();
 	}
 
 	/** Whether card is a valid choice to turn over at this time. */
@@ -131,7 +447,7 @@ public class Pelmanism {
 		}
 
 		// If already matched, cannot pick again
-		if (cards[cardId].isMatched()) {
+		if (board.isMatched(cardId)) {
 			return false;
 		}
 
@@ -143,64 +459,328 @@ public class Pelmanism {
 		return gameOver;
 	}
 
-	/** Submit a new turn. */
+	/** Whether the game is endless. */
+	public final boolean isEndless() {
+		return endless;
+	}
+
+	/** Every pair id in the game is below this limit. In a game that is not endless, it is the number of pairs. */
+	public final int getPairIdLimit() {
+		return endless ? numberOfPairs + freePairIds.length : numberOfPairs;
+	}
+
+	/**
+	 * The number of cards whose pair id was changed by the most recent turn of an endless game: the two cards of a pair
+	 * that was found, and any cards they were shuffled with. Always zero in a game that is not endless.
+	 */
+	public final int getReplacedCardCount() {
+		return replacedCardCount;
+	}
+
+	/** The id of one of the cards whose pair id was changed by the most recent turn. */
+	public final int getReplacedCardId(final int index) {
+		// Check arguments
+		if (index < 0 || index >= replacedCardCount) {
+			throw new IllegalArgumentException("Replaced card index invalid: " + index);
+		}
+		return replacedCardIds[index];
+	}
+
+	/**
+	 * Submit a new turn. The returned Turn is a cursor owned by the model, and is only valid until the next turn is
+	 * submitted.
+	 */
 	public final Turn turn(final Card firstPick, final Card secondPick) {
 
 		// Sanity check data
 		if (firstPick == null || secondPick == null) {
 			throw new IllegalArgumentException("Cards cannot be null!");
 		}
-		if (firstPick == secondPick) {
+
+		return getTurn(turn(firstPick.getId(), secondPick.getId()), turnCursor);
+	}
+
+	/**
+	 * Submit a new turn, by card id. The turn is recorded in the primitive turn log and nothing is allocated, so this
+	 * is the path to use for bulk simulation.
+	 * 
+	 * @return The id of the turn played.
+	 */
+	public final int turn(final int firstPickId, final int secondPickId) {
+
+		// Sanity check data
+		if (firstPickId < 0 || firstPickId >= numberOfCards || secondPickId < 0 || secondPickId >= numberOfCards) {
+			throw new IllegalArgumentException("Card id invalid: " + firstPickId + ", " + secondPickId);
+		}
+		if (firstPickId == secondPickId) {
 			throw new IllegalArgumentException("Cannot pick the same card twice!");
 		}
-		if (firstPick.isMatched() || secondPick.isMatched()) {
+		if (board.isMatched(firstPickId) || board.isMatched(secondPickId)) {
 			throw new IllegalArgumentException("Neither card can be already matched!");
 		}
 
-		// The turn being played
-		final Turn turn = new Turn();
-
-		// Update basic information
-		turn.setId(currentTurnId);
-		turn.setPlayerId(currentPlayerId);
-
-		// Update card information
-		turn.setFirstPick(firstPick);
-		turn.setSecondPick(secondPick);
+		// The player playing this turn
+		final int playerId = currentPlayerId;
 
 		// Determine whether or not there was a match
-		turn.setMatch(Card.isMatch(firstPick, secondPick));
+		final boolean match = board.isMatch(firstPickId, secondPickId);
 
-		if (turn.isMatch()) {
-			// Mark cards as matched
-			firstPick.setMatched(true);
-			secondPick.setMatched(true);
+		replacedCardCount = 0;
+		if (match && endless) {
+			// Replace the pair with a new one
+			replacePair(firstPickId, secondPickId);
 
 			// Update pairs found
 			pairsFound++;
 
 			// Update player score
-			playerScores[currentPlayerId]++;
+			playerScores[playerId]++;
+		} else if (match) {
+			// Mark cards as matched
+			board.setMatched(firstPickId, true);
+			board.setMatched(secondPickId, true);
+
+			// Update pairs found, and index the turn that found the pair
+			if (matchTurnIdsShared) {
+				matchTurnIds = matchTurnIds.clone();
+				matchTurnIdsShared = false;
+			}
+			matchTurnIds[pairsFound++] = currentTurnId;
+
+			// Update player score
+			playerScores[playerId]++;
 		} else {
 			// Control passes to next player
 			nextPlayer();
 		}
 
 		// Update whether or not the game is over
-		this.gameOver = (pairsFound >= numberOfPairs);
-		turn.setGameOver(this.gameOver);
+		this.gameOver = !endless && (pairsFound >= numberOfPairs);
 
 		// Add the new turn to the turn history
-		turns.add(turn);
+		turns.append(playerId, firstPickId, secondPickId, match, gameOver);
 
 		// Increment the turn counter
-		currentTurnId++;
+		final int turnId = currentTurnId++;
+		version++;
+
+		// Let other threads see the new state
+		if (publishingSnapshots) {
+			publishSnapshot(match);
+		}
+
+		return turnId;
+	}
+
+	/**
+	 * Rewind the game to the start of an earlier turn, as if that turn and every turn after it had never been played.
+	 * Only the pairs found since that turn are touched: they are found in the match index by binary search and put back
+	 * on the board, and the turn history is cut back to the turn. Rewinding therefore takes O(log n) time plus the time
+	 * to restore the pairs, and needs no state beyond one turn id per pair found.
+	 * 
+	 * @param turnId
+	 *            The id of the turn to rewind to. Rewinding to the current turn count changes nothing.
+	 */
+	public final void rewind(final int turnId) {
+		// Check arguments
+		if (turnId < 0 || turnId > currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		if (endless) {
+			throw new IllegalStateException("An endless game cannot be rewound");
+		}
+		if (turnId == currentTurnId) {
+			return;
+		}
+
+		// Find the first pair found at or after the turn
+		int low = 0;
+		int high = pairsFound;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (matchTurnIds[mid] < turnId) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		// Put those pairs back on the board, and take them off their finders' scores
+		for (int i = low; i < pairsFound; i++) {
+			final int matchTurnId = matchTurnIds[i];
+			board.setMatched(turns.getFirstPick(matchTurnId), false);
+			board.setMatched(turns.getSecondPick(matchTurnId), false);
+			playerScores[turns.getPlayerId(matchTurnId)]--;
+		}
+		pairsFound = low;
+
+		// Control returns to the player who played the turn
+		currentPlayerId = turns.getPlayerId(turnId);
 
-		return turn;
+		// Forget the rewound turns
+		turns.truncate(turnId);
+		currentTurnId = turnId;
+		gameOver = false;
+		version++;
+		rewindCount++;
+
+		// Let other threads see the new state
+		if (publishingSnapshots) {
+			publishSnapshot(true);
+		}
 	}
 
-	/** Reset game state in preparation for next game. */
-	private final void resetGame() {
+	/**
+	 * Replace a pair that has just been found in an endless game. The new pair takes the oldest free pair id, and its two
+	 * cards are dealt into the empty places, then each is swapped with a random card so that nobody knows where the new
+	 * pair is. Every card whose pair id changes is listed in replacedCardIds.
+	 */
+	private void replacePair(final int firstPickId, final int secondPickId) {
+
+		// Take the oldest free pair id, and release the pair id that was found in its place
+		if (freePairIdsShared) {
+			freePairIds = freePairIds.clone();
+			freePairIdsShared = false;
+		}
+		final int pairId = freePairIds[nextFreePairId];
+		freePairIds[nextFreePairId] = board.getPairId(firstPickId);
+		nextFreePairId = (nextFreePairId + 1) % freePairIds.length;
+
+		// Deal the new pair into the empty places
+		board.setPairId(firstPickId, pairId);
+		board.setPairId(secondPickId, pairId);
+		addReplacedCard(firstPickId);
+		addReplacedCard(secondPickId);
+
+		// Shuffle each new card in among the rest
+		swapWithRandomCard(firstPickId);
+		swapWithRandomCard(secondPickId);
+	}
+
+	/** Swap the pair ids of a card and a random card on the board, which may be the same card. */
+	private void swapWithRandomCard(final int cardId) {
+		final int otherCardId = random.nextInt(numberOfCards);
+		final int pairId = board.getPairId(cardId);
+		board.setPairId(cardId, board.getPairId(otherCardId));
+		board.setPairId(otherCardId, pairId);
+		addReplacedCard(otherCardId);
+	}
+
+	/** Add a card to the cards replaced by this turn, unless it is already there. */
+	private void addReplacedCard(final int cardId) {
+		for (int i = 0; i < replacedCardCount; i++) {
+			if (replacedCardIds[i] == cardId) {
+				return;
+			}
+		}
+		replacedCardIds[replacedCardCount++] = cardId;
+	}
+
+	/** Make sure the turn history can hold at least the given number of turns without growing. */
+	public final void ensureTurnCapacity(final int numberOfTurns) {
+		turns.ensureCapacity(numberOfTurns);
+	}
+
+	/** The number of turns played so far in this game. */
+	public final int getTurnCount() {
+		return currentTurnId;
+	}
+
+	/**
+	 * The version of the game state, which changes with every turn, rewind and reset. Work done against one version of
+	 * the game, such as a computer player's move, can be checked against it to see whether the game has since moved on.
+	 */
+	public final long getVersion() {
+		return version;
+	}
+
+	/** The number of times the cards have been dealt, counting the first deal; each resetGame() deals again. */
+	final int getDealCount() {
+		return dealCount;
+	}
+
+	/** The number of times the game has been rewound to an earlier turn; rewinding to the current turn does not count. */
+	final int getRewindCount() {
+		return rewindCount;
+	}
+
+	/** The id of the oldest turn still in the turn history. Always zero unless the game is endless. */
+	public final int getFirstTurnId() {
+		return turns.getFirstTurnId();
+	}
+
+	/**
+	 * Get a turn from the turn history. The returned Turn is a cursor owned by the model, and is only valid until the
+	 * next call to this method or to turn().
+	 */
+	public final Turn getTurn(final int turnId) {
+		return getTurn(turnId, turnCursor);
+	}
+
+	/**
+	 * Get a turn from the turn history, filling in a Turn object supplied by the caller.
+	 * 
+	 * @param turnId
+	 *            The id of the turn to get.
+	 * @param cursor
+	 *            The Turn to fill in.
+	 * @return The cursor, for convenience.
+	 */
+	public final Turn getTurn(final int turnId, final Turn cursor) {
+		// Check arguments
+		if (turnId < turns.getFirstTurnId() || turnId >= currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		cursor.setId(turnId);
+		cursor.setPlayerId(turns.getPlayerId(turnId));
+		cursor.setFirstPick(getCard(turns.getFirstPick(turnId)));
+		cursor.setSecondPick(getCard(turns.getSecondPick(turnId)));
+		cursor.setMatch(turns.isMatch(turnId));
+		cursor.setGameOver(turns.isGameOver(turnId));
+		return cursor;
+	}
+
+	/** The id of the player who played a turn. */
+	public final int getTurnPlayerId(final int turnId) {
+		// Check arguments
+		if (turnId < turns.getFirstTurnId() || turnId >= currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		return turns.getPlayerId(turnId);
+	}
+
+	/** The id of the card picked first in a turn. */
+	public final int getTurnFirstPickId(final int turnId) {
+		// Check arguments
+		if (turnId < turns.getFirstTurnId() || turnId >= currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		return turns.getFirstPick(turnId);
+	}
+
+	/** The id of the card picked second in a turn. */
+	public final int getTurnSecondPickId(final int turnId) {
+		// Check arguments
+		if (turnId < turns.getFirstTurnId() || turnId >= currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		return turns.getSecondPick(turnId);
+	}
+
+	/** Whether a turn resulted in a match. */
+	public final boolean isTurnMatch(final int turnId) {
+		// Check arguments
+		if (turnId < turns.getFirstTurnId() || turnId >= currentTurnId) {
+			throw new IllegalArgumentException("Turn id invalid: " + turnId);
+		}
+		return turns.isMatch(turnId);
+	}
+
+	/**
+	 * Reset game state and deal the cards again, ready for the next game. The board is reused as it is, so existing Card
+	 * objects stay valid and refer to the same positions in the new deal.
+	 */
+	public final void resetGame() {
 
 		// Initialise variables
 
@@ -224,15 +804,43 @@ public class Pelmanism {
 			playerScores[i] = 0;
 		}
 
-		// Generate new card layout
-		final List<Integer> pairIds = new ArrayList<Integer>(numberOfCards);
-		for (int i = 0; i < numberOfPairs; i++) {
-			pairIds.add(i);
-			pairIds.add(i);
+		// All cards are back on the board
+		board.clearMatched();
+
+		// Every pair id above the first deal's is free, oldest first
+		if (endless) {
+			if (freePairIdsShared) {
+				freePairIds = new int[freePairIds.length];
+				freePairIdsShared = false;
+			}
+			for (int i = 0; i < freePairIds.length; i++) {
+				freePairIds[i] = numberOfPairs + i;
+			}
+			nextFreePairId = 0;
+			replacedCardCount = 0;
 		}
-		Collections.shuffle(pairIds);
-		for (int i = 0; i < numberOfCards; i++) {
-			cards[i] = new Card(i, pairIds.get(i));
+
+		// Generate new card layout, or draw one from the deal seeds and shuffle its pair ids
+		if (dealSeeds == null) {
+			board.deal(dealGenerator, random);
+		} else {
+			board.deal(dealGenerator, new RandomStream(dealSeeds[random.nextInt(dealSeeds.length)]));
+			final int[] pairIds = new int[numberOfPairs];
+			for (int i = 0; i < numberOfPairs; i++) {
+				final int j = random.nextInt(i + 1);
+				pairIds[i] = pairIds[j];
+				pairIds[j] = i;
+			}
+			for (int i = 0; i < numberOfCards; i++) {
+				board.setPairId(i, pairIds[board.getPairId(i)]);
+			}
+		}
+		dealCount++;
+		version++;
+
+		// Let other threads see the new state
+		if (publishingSnapshots) {
+			publishSnapshot(true);
 		}
 	}
 }
\ No newline at end of file
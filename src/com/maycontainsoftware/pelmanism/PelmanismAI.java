@@ -1,52 +1,39 @@
 package com.maycontainsoftware.pelmanism;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
-
 /**
- * Computer player, with very simple AI.
+ * Computer player, with very simple AI. Its memory is imperfect: the difficulty level sets how many cards it can
+ * remember at once, and how quickly it forgets them.
+ * 
+ * What has been seen is kept in an ObservationLog, which several computer players watching the same game can share;
+ * each keeps only its own memory of the log.
  * 
  * @author Charlie
  */
-public class PelmanismAI {
-	// Needs to have a memory of previous picks
-	// Needs to have an *imperfect* memory at times
-	// Needs to vary based on difficulty level
-
-	/** Difficulty level of the AI. */
-	private final Difficulty difficulty;
+public class PelmanismAI implements ComputerPlayer {
 
-	// ** The Pelmanism game model. */
-	// private final Pelmanism model;
+	/** The probability of going for a pair each turn: 0.0f is moronic, 1.0f is Godly. */
+	private final float intelligence;
 
-	/** All cards currently in the game. */
-	private final Set<Card> allCards = new HashSet<Card>();
+	/** The probability of forgetting each card remembered, every turn played. */
+	private final float memoryDecay;
 
-	/** All cards that have been seen. */
-	private final Set<Card> seenCards = new HashSet<Card>();
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
 
-	/** All cards that have not been revealed yet. */
-	private final Set<Card> unknownCards = new HashSet<Card>();
+	/** The log of cards seen, possibly shared with other computer players. */
+	private final ObservationLog log;
 
-	/** Mapping of pairId to collection of Cards. */
-	private final Map<Integer, Set<Card>> cardsByPairId = new HashMap<Integer, Set<Card>>();
+	/** What the AI remembers of the log. */
+	private final LogMemory memory;
 
-	/** All known pairIds where both Cards of the pair have been seen. */
-	private final Set<Integer> knownPairs = new HashSet<Integer>();
+	/** After an invocation to pickFirstCard(), the id of the first card picked, or -1. */
+	private int firstCardId = -1;
 
-	/** After an invocation to pickCards(), the first card picked. */
-	private Card firstCard;
-
-	/** After an invocation to pickCards(), the second card picked. */
-	private Card secondCard;
+	/** After an invocation to pickFirstCard(), the id of the second card to pick if already decided, or -1. */
+	private int secondCardId = -1;
 
 	/** Random number generator. */
-	private final Random random = new Random();
+	private final RandomStream random;
 
 	/** Enumeration of the ways the AI could try to play the next turn. */
 	private static enum Intention {
@@ -59,163 +46,191 @@ public class PelmanismAI {
 	/** The AI's current intention. */
 	private Intention intention;
 
-	/** Construct a new PelmanismAI object. */
+	/** The picks, intention and random number stream position saved by checkpoint(). */
+	private int savedFirstCardId, savedSecondCardId;
+	private Intention savedIntention;
+	private long savedRandomState;
+
+	/** Construct a new PelmanismAI object, with unpredictable behaviour. */
 	public PelmanismAI(final Difficulty difficulty, final Pelmanism model) {
-		// this.model = model;
-		this.difficulty = difficulty;
+		this(difficulty, model, RandomStream.randomSeed());
+	}
 
-		// Generate a list of all cards, but DON'T LOOK AT THEM! :-)
-		for (int i = 0; i < model.getNumberOfCards(); i++) {
-			allCards.add(model.getCard(i));
-		}
+	/**
+	 * Construct a new PelmanismAI object.
+	 * 
+	 * @param difficulty
+	 *            The difficulty level.
+	 * @param model
+	 *            The game model.
+	 * @param seed
+	 *            The seed for the AI's random number stream. The same seed in the same game produces the same moves.
+	 */
+	public PelmanismAI(final Difficulty difficulty, final Pelmanism model, final long seed) {
+		this(difficulty, model, new ObservationLog(model), seed);
+	}
+
+	/**
+	 * Construct a new PelmanismAI object, sharing a log of the cards seen with other computer players.
+	 * 
+	 * @param difficulty
+	 *            The difficulty level.
+	 * @param model
+	 *            The game model.
+	 * @param log
+	 *            The log of cards seen in the game. Every computer player sharing it must be told about every card.
+	 * @param seed
+	 *            The seed for the AI's random number stream. The same seed in the same game produces the same moves.
+	 */
+	public PelmanismAI(final Difficulty difficulty, final Pelmanism model, final ObservationLog log, final long seed) {
+		this(model, difficulty.getAiIntelligence(), difficulty.getAiMemoryCapacity(), difficulty.getAiMemoryDecay(), log,
+				seed);
+	}
+
+	/**
+	 * Construct a new PelmanismAI object with settings other than a difficulty level's, as used when tuning them.
+	 * 
+	 * @param model
+	 *            The game model.
+	 * @param intelligence
+	 *            The probability of going for a pair each turn.
+	 * @param memoryCapacity
+	 *            The maximum number of cards remembered at once.
+	 * @param memoryDecay
+	 *            The probability of forgetting each card remembered, every turn played.
+	 * @param log
+	 *            The log of cards seen in the game. Every computer player sharing it must be told about every card.
+	 * @param seed
+	 *            The seed for the AI's random number stream. The same seed in the same game produces the same moves.
+	 */
+	public PelmanismAI(final Pelmanism model, final float intelligence, final int memoryCapacity,
+			final float memoryDecay, final ObservationLog log, final long seed) {
+		this.model = model;
+		this.intelligence = intelligence;
+		this.memoryDecay = memoryDecay;
+		this.random = new RandomStream(seed);
+
+		// Note all cards on the table, but DON'T LOOK AT THEM! :-)
+		this.log = log;
+		this.memory = new LogMemory(log, model.getNumberOfCards(), memoryCapacity);
 
 		// Update our current understanding of the cards
 		updateCards();
 	}
 
-	/** Log a card as having been seen. */
+	@Override
 	public void cardSeen(final Card card) {
-		// Make sure it's been seen
-		seenCards.add(card);
-		// Make sure it's no longer unseen
-		if (unknownCards.contains(card)) {
-			unknownCards.remove(card);
-		}
-		// Update the record of pairs
-		final int pairId = card.getPairId();
-		if (cardsByPairId.containsKey(pairId)) {
-			cardsByPairId.get(pairId).add(card);
-		} else {
-			cardsByPairId.put(pairId, new HashSet<Card>(Arrays.asList(card)));
-		}
-		// Update the log of known pairs
-		if (cardsByPairId.get(pairId).size() == 2) {
-			knownPairs.add(pairId);
-		}
+		log.reveal(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void cardRestored(final Card card) {
+		log.restored(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void gameRewound() {
+		log.rewound();
+	}
+
+	@Override
+	public void cardReplaced(final Card card) {
+		log.replaced(card.getId());
 	}
 
-	/** Update information we know about the cards on the table. */
+	@Override
 	public void updateCards() {
 
 		// Forget about any previous selection
-		firstCard = null;
-		secondCard = null;
-
-		// Remove any cards that have been matched
-		final Iterator<Card> i = allCards.iterator();
-		while (i.hasNext()) {
-			final Card c = i.next();
-			if (c.isMatched()) {
-				i.remove();
-				// If it had been seen previously, remove it from there as well
-				if (seenCards.contains(c)) {
-					seenCards.remove(c);
-				}
-			}
-		}
+		firstCardId = -1;
+		secondCardId = -1;
 
-		// Work out what cards are unknown
-		unknownCards.clear();
-		for (final Card c : allCards) {
-			if (!seenCards.contains(c)) {
-				unknownCards.add(c);
-			}
-		}
+		// Remove any cards that have been matched since the last update
+		memory.catchUp();
+
+		// Forget some of what we remember
+		memory.decay(memoryDecay, random);
 
 		// Work out current approach to picking a card
 		// Generate a random number between 0 and 1. If the AI intelligence is set higher, go for a pair.
-		intention = (difficulty.getAiIntelligence() > random.nextFloat()) ? Intention.PAIR : Intention.RANDOM;
-
-		// Work out whether any pairs are known
-
-		// Arrange cards by pairId
-		cardsByPairId.clear();
-		for (final Card c : seenCards) {
-			final int pairId = c.getPairId();
-			if (cardsByPairId.containsKey(pairId)) {
-				cardsByPairId.get(pairId).add(c);
-			} else {
-				cardsByPairId.put(pairId, new HashSet<Card>(Arrays.asList(c)));
-			}
-		}
-		// Log ids for any known pairs
-		knownPairs.clear();
-		for (final Integer pairId : cardsByPairId.keySet()) {
-			if (cardsByPairId.get(pairId).size() == 2) {
-				knownPairs.add(pairId);
-			}
-		}
+		intention = (intelligence > random.nextFloat()) ? Intention.PAIR : Intention.RANDOM;
 	}
 
+	@Override
 	public Card pickFirstCard() {
 		switch (intention) {
 		case PAIR:
-			if (!knownPairs.isEmpty()) {
+			final int pairCardId = memory.randomKnownPairCard(random);
+			if (pairCardId >= 0) {
 				// We know about at least one pair! Pick a random one
-				final int pairId = randomElement(knownPairs);
-				final Card[] cards = cardsByPairId.get(pairId).toArray(new Card[] {});
-				firstCard = cards[0];
-				secondCard = cards[1];
+				firstCardId = pairCardId;
+				secondCardId = memory.getPartner(pairCardId);
 			} else {
 				// Don't know any pairs - pick a random unseen card
-				firstCard = randomElement(unknownCards);
+				firstCardId = memory.randomUnknown(random);
 				// Can this fail? Only if no unseen cards exist. It is not possible to have both no known pairs and no
 				// unseen cards.
 			}
 			break;
 		case RANDOM:
 			// Pick a random card
-			firstCard = randomElement(allCards);
+			firstCardId = log.getOnBoard().random(random);
 			break;
 		default:
 			throw new IllegalStateException();
 		}
-		return firstCard;
+		return model.getCard(firstCardId);
 	}
 
+	@Override
 	public Card pickSecondCard() {
-		if (secondCard == null) {
+		if (secondCardId < 0) {
+			// Take in the first card
+			memory.catchUp();
+
 			switch (intention) {
 			case PAIR:
 				// Want a pair, but didn't originally know any
 				// Might have found one now?
-				final int pairId = firstCard.getPairId();
-				if (knownPairs.contains(pairId)) {
+				final int partnerId = memory.getPartner(firstCardId);
+				if (partnerId >= 0) {
 					// Have just found a pair!
-					// Need to find the other half of it...
-					final Card[] pair = cardsByPairId.get(pairId).toArray(new Card[] {});
-					secondCard = (firstCard == pair[1]) ? pair[0] : pair[1];
-				} else {
+					secondCardId = partnerId;
+				} else if (memory.getRememberedCount() > 1) {
 					// Still don't know any pairs.
 					// Be a little clever - try and pick an already-known card so we don't give anything away
-					if (seenCards.size() > 1) {
-						do {
-							secondCard = randomElement(seenCards);
-						} while (firstCard == secondCard);
-					} else {
-						// Don't know any other cards; just pick a random one
-						do {
-							secondCard = randomElement(allCards);
-						} while (firstCard == secondCard);
-					}
+					secondCardId = memory.randomRemembered(random, firstCardId);
+				} else {
+					// Don't know any other cards; just pick a random one
+					secondCardId = log.getOnBoard().randomExcluding(random, firstCardId);
 				}
 				break;
 			case RANDOM:
 				// Moronic AI - pick a random card
-				do {
-					secondCard = randomElement(allCards);
-				} while (firstCard == secondCard);
+				secondCardId = log.getOnBoard().randomExcluding(random, firstCardId);
 				break;
 			default:
 				throw new IllegalStateException();
 			}
 		}
-		return secondCard;
+		return model.getCard(secondCardId);
+	}
+
+	@Override
+	public void checkpoint() {
+		memory.checkpoint();
+		savedFirstCardId = firstCardId;
+		savedSecondCardId = secondCardId;
+		savedIntention = intention;
+		savedRandomState = random.getState();
 	}
 
-	@SuppressWarnings("unchecked")
-	private final <T extends Object> T randomElement(final Set<T> set) {
-		final Object[] cards = set.toArray();
-		return (T) cards[random.nextInt(cards.length)];
+	@Override
+	public void restore() {
+		memory.restore();
+		firstCardId = savedFirstCardId;
+		secondCardId = savedSecondCardId;
+		intention = savedIntention;
+		random.setState(savedRandomState);
 	}
-}
\ No newline at end of file
+}
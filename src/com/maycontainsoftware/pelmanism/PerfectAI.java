@@ -0,0 +1,177 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Computer player that plays perfectly, for two player games. It remembers every card, takes any pair it knows, and
+ * otherwise looks its move up in an OptimalPolicy, so every decision takes constant time.
+ *
+ * @author Charlie
+ */
+public class PerfectAI implements ComputerPlayer {
+
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
+
+	/** The table of best moves. */
+	private final OptimalPolicy policy;
+
+	/** What the AI knows about the cards on the table. Its memory is perfect. */
+	private final CardKnowledge knowledge;
+
+	/** Random number stream, used to choose between equally good cards. */
+	private final RandomStream random;
+
+	/** After an invocation to pickFirstCard(), the id of the first card picked, or -1. */
+	private int firstCardId = -1;
+
+	/** After an invocation to pickFirstCard(), the id of the second card to pick if already decided, or -1. */
+	private int secondCardId = -1;
+
+	/** Whether the last two cards seen had not been seen before, most recent first. */
+	private boolean lastCardNew, previousCardNew;
+
+	/** Whether the opponent's last turn was a pass, which must be answered by a move. */
+	private boolean opponentPassed;
+
+	/** The knowledge saved by checkpoint(), created by the first checkpoint. */
+	private CardKnowledge savedKnowledge;
+
+	/** The picks, pass and random number stream position saved by checkpoint(). */
+	private int savedFirstCardId, savedSecondCardId;
+	private boolean savedOpponentPassed;
+	private long savedRandomState;
+
+	/** Construct a new perfect computer player, using the shared table of best moves. */
+	public PerfectAI(final Pelmanism model, final long seed) {
+		this(model, OptimalSolver.shared(model.getNumberOfPairs()), seed);
+	}
+
+	/**
+	 * Construct a new perfect computer player.
+	 *
+	 * @param model
+	 *            The game model, which must have two players and not be endless.
+	 * @param policy
+	 *            The table of best moves, solved for at least the model's number of pairs.
+	 * @param seed
+	 *            The seed for the player's random number stream.
+	 */
+	public PerfectAI(final Pelmanism model, final OptimalPolicy policy, final long seed) {
+		if (model.getNumberOfPlayers() != 2 || model.isEndless()) {
+			throw new IllegalArgumentException("Perfect play needs a two player game that ends");
+		}
+		if (model.getNumberOfPairs() > policy.getMaxPairs()) {
+			throw new IllegalArgumentException("Policy solved for " + policy.getMaxPairs() + " pairs, game has "
+					+ model.getNumberOfPairs());
+		}
+		this.model = model;
+		this.policy = policy;
+		this.knowledge = new CardKnowledge(model);
+		this.random = new RandomStream(seed);
+	}
+
+	@Override
+	public void cardSeen(final Card card) {
+		previousCardNew = lastCardNew;
+		lastCardNew = !knowledge.getSeen().contains(card.getId());
+		knowledge.seen(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void cardRestored(final Card card) {
+		knowledge.restored(card.getId(), card.getPairId());
+	}
+
+	@Override
+	public void gameRewound() {
+		knowledge.rewound(model.getTurnCount());
+	}
+
+	@Override
+	public void cardReplaced(final Card card) {
+		// Unreachable, as endless games are rejected, but keep the knowledge consistent all the same
+		knowledge.forget(card.getId());
+	}
+
+	@Override
+	public void updateCards() {
+		firstCardId = -1;
+		secondCardId = -1;
+		knowledge.catchUp(model);
+
+		// The opponent passed if their last turn showed nothing new
+		final int turnCount = model.getTurnCount();
+		opponentPassed = turnCount > 0 && model.getTurnPlayerId(turnCount - 1) != model.getCurrentPlayerId()
+				&& !lastCardNew && !previousCardNew;
+	}
+
+	/** The score of the player to move, less their opponent's. */
+	private int scoreDifference() {
+		final int playerId = model.getCurrentPlayerId();
+		return model.getPlayerScore(playerId) - model.getPlayerScore(1 - playerId);
+	}
+
+	@Override
+	public Card pickFirstCard() {
+		final IntPool seen = knowledge.getSeen();
+		final IntPool unknown = knowledge.getUnknown();
+		if (!knowledge.getKnownPairs().isEmpty()) {
+			// Always take a known pair
+			final int pairId = knowledge.getKnownPairs().random(random);
+			firstCardId = knowledge.getPairCard(pairId, 0);
+			secondCardId = knowledge.getPairCard(pairId, 1);
+		} else if (!opponentPassed
+				&& policy.isPass((unknown.size() + seen.size()) / 2, unknown.size(), scoreDifference())) {
+			// Give nothing away
+			firstCardId = seen.random(random);
+			secondCardId = seen.randomExcluding(random, firstCardId);
+		} else {
+			firstCardId = unknown.random(random);
+		}
+		return model.getCard(firstCardId);
+	}
+
+	@Override
+	public Card pickSecondCard() {
+		if (secondCardId >= 0) {
+			return model.getCard(secondCardId);
+		}
+		final IntPool seen = knowledge.getSeen();
+		final IntPool unknown = knowledge.getUnknown();
+		final int partnerId = knowledge.getPartner(firstCardId);
+		if (partnerId >= 0) {
+			// Found a pair
+			secondCardId = partnerId;
+		} else {
+			// The first card was new, so look up the state from before it was turned over
+			final int unknownCards = unknown.size() + 1;
+			final int pairsRemaining = (unknownCards + seen.size() - 1) / 2;
+			if (seen.size() == 1 || policy.isSecondUnknown(pairsRemaining, unknownCards, scoreDifference())) {
+				secondCardId = unknown.random(random);
+			} else {
+				secondCardId = seen.randomExcluding(random, firstCardId);
+			}
+		}
+		return model.getCard(secondCardId);
+	}
+
+	@Override
+	public void checkpoint() {
+		if (savedKnowledge == null) {
+			savedKnowledge = new CardKnowledge(model);
+		}
+		savedKnowledge.copyFrom(knowledge);
+		savedFirstCardId = firstCardId;
+		savedSecondCardId = secondCardId;
+		savedOpponentPassed = opponentPassed;
+		savedRandomState = random.getState();
+	}
+
+	@Override
+	public void restore() {
+		knowledge.copyFrom(savedKnowledge);
+		firstCardId = savedFirstCardId;
+		secondCardId = savedSecondCardId;
+		opponentPassed = savedOpponentPassed;
+		random.setState(savedRandomState);
+	}
+}
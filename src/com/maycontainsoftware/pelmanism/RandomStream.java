@@ -0,0 +1,155 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A seedable, splittable stream of pseudo-random numbers, using the SplitMix64 algorithm. Unlike java.util.Random,
+ * nothing is shared between instances and nothing is synchronized: each game, computer player or worker thread should
+ * own its stream, created from a seed or split off a parent stream. The same seed always produces the same sequence.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Charlie
+ */
+public final class RandomStream {
+
+	/** The default gamma: the odd integer closest to 2^64 divided by the golden ratio. */
+	static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** Source of seeds for streams created without one. */
+	private static final AtomicLong seeder = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+	/** The current state of the stream. */
+	private long state;
+
+	/** The amount the state advances by on each step. Always odd. */
+	private final long gamma;
+
+	/**
+	 * Create a new stream.
+	 *
+	 * @param seed
+	 *            The seed. Streams created with the same seed produce the same sequence.
+	 */
+	public RandomStream(final long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	/** Create a new stream with a specific state and gamma. */
+	private RandomStream(final long state, final long gamma) {
+		this.state = state;
+		this.gamma = gamma;
+	}
+
+	/** Generate a fresh seed, for when a game does not need to be reproducible. */
+	public static final long randomSeed() {
+		return mix64(seeder.getAndAdd(GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Derive the seed of one of a numbered family of streams from a root seed. Any worker can compute the seed for any
+	 * index without coordinating with the others, so a whole simulation can be reproduced from the root seed however its
+	 * work is divided up.
+	 *
+	 * @param rootSeed
+	 *            The seed of the whole family.
+	 * @param index
+	 *            The index of the stream within the family, for example a game number.
+	 */
+	public static final long seedFor(final long rootSeed, final long index) {
+		return mix64(rootSeed + mix64(index * GOLDEN_GAMMA + GOLDEN_GAMMA));
+	}
+
+	/** Split off a new stream, statistically independent of this one. This stream is advanced by two steps. */
+	public RandomStream split() {
+		return new RandomStream(nextLong(), mixGamma(nextState()));
+	}
+
+	/** Create a copy of this stream, which will produce the same sequence as this one from now on. */
+	public RandomStream copy() {
+		return new RandomStream(state, gamma);
+	}
+
+	/** The stream's position in its sequence, which setState() goes back to. */
+	long getState() {
+		return state;
+	}
+
+	/** Go back to a position in the sequence, as returned by getState(). */
+	void setState(final long state) {
+		this.state = state;
+	}
+
+	/** The next pseudo-random long. */
+	public long nextLong() {
+		return mix64(nextState());
+	}
+
+	/** The next pseudo-random int. */
+	public int nextInt() {
+		return mix32(nextState());
+	}
+
+	/**
+	 * The next pseudo-random int, uniformly distributed between zero (inclusive) and a bound (exclusive).
+	 *
+	 * @param bound
+	 *            The upper bound. Must be positive.
+	 */
+	public int nextInt(final int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound = " + bound);
+		}
+		int r = mix32(nextState());
+		final int m = bound - 1;
+		if ((bound & m) == 0) {
+			// Power of two
+			return r & m;
+		}
+		// Reject values from the incomplete final range, to avoid bias
+		for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextState()) >>> 1) {
+			// Try again
+		}
+		return r;
+	}
+
+	/** The next pseudo-random float, uniformly distributed between 0.0f (inclusive) and 1.0f (exclusive). */
+	public float nextFloat() {
+		return (mix32(nextState()) >>> 8) * 0x1.0p-24f;
+	}
+
+	/** The next pseudo-random double, uniformly distributed between 0.0 (inclusive) and 1.0 (exclusive). */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/** Advance the state by one step. */
+	private long nextState() {
+		return (state += gamma);
+	}
+
+	/**
+	 * Scramble a state value into a 64-bit output. Also used by code that keeps many streams' states in an array rather
+	 * than in objects, advancing each by GOLDEN_GAMMA.
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/** Scramble a state value into a 32-bit output. */
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/** Derive a gamma for a split-off stream. Gammas are odd, and avoid bit patterns that mix poorly. */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		final int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
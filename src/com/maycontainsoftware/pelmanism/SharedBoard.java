@@ -0,0 +1,209 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A board shared by many players at once, each playing from its own thread with no turn order. A player claims a card
+ * with an atomic compare-and-set on that card's state, looks at it, claims a second card, and then either takes the pair
+ * or puts both cards back. A card can only be held by one player at a time, so when two players go for the same card
+ * the compare-and-set decides which gets it, and the other simply picks a different card. No locks are taken.
+ *
+ * Every card has its own state, and every player its own score, padded so that players on different cores do not
+ * share cache lines. The only state all players write to is the count of pairs remaining, and only when they find a
+ * pair.
+ *
+ * @author Charlie
+ */
+public final class SharedBoard {
+
+	/** Card state of a card that is face down on the board, and can be claimed. */
+	private static final int FREE = 0;
+
+	/** Card state of a card that has been matched, and removed from the board. */
+	private static final int MATCHED = -1;
+
+	/** Spacing of the player scores, in ints, so that each sits on its own cache line. */
+	private static final int SCORE_STRIDE = 16;
+
+	/** The number of players. */
+	private final int numberOfPlayers;
+
+	/** The number of cards on the board. */
+	private final int numberOfCards;
+
+	/** The pair id of each card, indexed by card id. Never changes once dealt. */
+	private final int[] pairIds;
+
+	/** The state of each card: FREE, MATCHED, or one more than the id of the player holding it. */
+	private final AtomicIntegerArray cardStates;
+
+	/** Player scores, at intervals of SCORE_STRIDE. */
+	private final AtomicIntegerArray playerScores;
+
+	/** The id of the player who found each pair, or -1 if it has not been found. */
+	private final AtomicIntegerArray pairFinders;
+
+	/** The number of pairs not yet found. */
+	private final AtomicInteger pairsRemaining;
+
+	/**
+	 * Create a new shared board.
+	 *
+	 * @param numberOfPlayers
+	 *            The number of players.
+	 * @param dealGenerator
+	 *            The generator to deal the cards with.
+	 * @param seed
+	 *            The seed for the deal.
+	 */
+	public SharedBoard(final int numberOfPlayers, final DealGenerator dealGenerator, final long seed) {
+
+		// Check arguments
+		if (numberOfPlayers <= 0) {
+			throw new IllegalArgumentException("numberOfPlayers = " + numberOfPlayers);
+		}
+
+		this.numberOfPlayers = numberOfPlayers;
+		this.numberOfCards = dealGenerator.getNumberOfCards();
+		this.pairIds = new int[numberOfCards];
+		dealGenerator.deal(pairIds, 0, new RandomStream(seed));
+		this.cardStates = new AtomicIntegerArray(numberOfCards);
+		this.playerScores = new AtomicIntegerArray(numberOfPlayers * SCORE_STRIDE);
+		this.pairFinders = new AtomicIntegerArray(dealGenerator.getNumberOfPairs());
+		for (int i = 0; i < dealGenerator.getNumberOfPairs(); i++) {
+			pairFinders.set(i, -1);
+		}
+		this.pairsRemaining = new AtomicInteger(dealGenerator.getNumberOfPairs());
+	}
+
+	/** The number of players. */
+	public final int getNumberOfPlayers() {
+		return numberOfPlayers;
+	}
+
+	/** The number of cards on the board. */
+	public final int getNumberOfCards() {
+		return numberOfCards;
+	}
+
+	/** The number of pairs on the board at the start of the game. */
+	public final int getNumberOfPairs() {
+		return pairFinders.length();
+	}
+
+	/** Check that a player id is valid. */
+	private void checkPlayerId(final int playerId) {
+		if (playerId < 0 || playerId >= numberOfPlayers) {
+			throw new IllegalArgumentException("Invalid player id: " + playerId);
+		}
+	}
+
+	/** Check that a card id is valid. */
+	private void checkCardId(final int cardId) {
+		if (cardId < 0 || cardId >= numberOfCards) {
+			throw new IllegalArgumentException("Card id invalid: " + cardId);
+		}
+	}
+
+	/**
+	 * Try to claim a card, turning it face up for the claiming player.
+	 *
+	 * @return True if the card was claimed. False if it has been matched, or is held by another player (or this one).
+	 */
+	public final boolean claim(final int playerId, final int cardId) {
+		checkPlayerId(playerId);
+		checkCardId(cardId);
+		return cardStates.compareAndSet(cardId, FREE, playerId + 1);
+	}
+
+	/** Put a claimed card back on the board, face down, without playing it. */
+	public final void release(final int playerId, final int cardId) {
+		checkHeld(playerId, cardId);
+		cardStates.set(cardId, FREE);
+	}
+
+	/** Check that a card is held by a player. */
+	private void checkHeld(final int playerId, final int cardId) {
+		checkPlayerId(playerId);
+		checkCardId(cardId);
+		if (cardStates.get(cardId) != playerId + 1) {
+			throw new IllegalStateException("Card " + cardId + " is not held by player " + playerId);
+		}
+	}
+
+	/** Get the pair id of a card held by a player. Players may only look at cards they have claimed. */
+	public final int getPairId(final int playerId, final int cardId) {
+		checkHeld(playerId, cardId);
+		return pairIds[cardId];
+	}
+
+	/**
+	 * Play two cards held by a player. If they match, the pair is removed from the board and the player scores it;
+	 * otherwise both cards are put back face down.
+	 *
+	 * @return Whether the cards matched.
+	 * @throws IllegalStateException
+	 *             If the player does not hold both cards.
+	 */
+	public final boolean turn(final int playerId, final int firstCardId, final int secondCardId) {
+		checkHeld(playerId, firstCardId);
+		checkHeld(playerId, secondCardId);
+		if (firstCardId == secondCardId) {
+			throw new IllegalArgumentException("Cannot pick the same card twice!");
+		}
+
+		final int pairId = pairIds[firstCardId];
+		if (pairId != pairIds[secondCardId]) {
+			cardStates.set(firstCardId, FREE);
+			cardStates.set(secondCardId, FREE);
+			return false;
+		}
+
+		// The player holds both cards of the pair, so nobody else can be scoring it
+		if (!pairFinders.compareAndSet(pairId, -1, playerId)) {
+			throw new IllegalStateException("Pair " + pairId + " has already been found");
+		}
+		cardStates.set(firstCardId, MATCHED);
+		cardStates.set(secondCardId, MATCHED);
+		playerScores.incrementAndGet(playerId * SCORE_STRIDE);
+		pairsRemaining.decrementAndGet();
+		return true;
+	}
+
+	/** Whether a card is still on the board, face down and free to be claimed. */
+	public final boolean isFree(final int cardId) {
+		checkCardId(cardId);
+		return cardStates.get(cardId) == FREE;
+	}
+
+	/** Whether a card has been matched, and removed from the board. */
+	public final boolean isMatched(final int cardId) {
+		checkCardId(cardId);
+		return cardStates.get(cardId) == MATCHED;
+	}
+
+	/** Player score. */
+	public final int getPlayerScore(final int playerId) {
+		checkPlayerId(playerId);
+		return playerScores.get(playerId * SCORE_STRIDE);
+	}
+
+	/** The id of the player who found a pair, or -1 if it has not been found. */
+	public final int getPairFinder(final int pairId) {
+		if (pairId < 0 || pairId >= pairFinders.length()) {
+			throw new IllegalArgumentException("Invalid pair id: " + pairId);
+		}
+		return pairFinders.get(pairId);
+	}
+
+	/** The number of pairs not yet found. */
+	public final int getPairsRemaining() {
+		return pairsRemaining.get();
+	}
+
+	/** Whether every pair has been found. */
+	public final boolean isGameOver() {
+		return pairsRemaining.get() == 0;
+	}
+}
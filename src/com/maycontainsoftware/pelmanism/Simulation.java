@@ -0,0 +1,234 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays games between computer players without any display, as fast as possible, across any number of threads. Each
+ * seat at the table is a computer player of some strategy and difficulty, and the seats take turns to move first, game
+ * by game. The number of pairs is the simulation's own, not the difficulties'. Players are made headless (see
+ * AIStrategy.createHeadless), so that none plays to a clock.
+ *
+ * Games are dealt out in chunks. Each thread claims the next chunk as it finishes the last, so fast threads take more
+ * chunks and no thread is left idle while others have a long queue, and counts its games in a SimulationResult of its
+ * own; the threads' results are merged at the end. Every chunk is seeded from the simulation's seed and its own index,
+ * so the results depend only on the seed and the number of games, not on the number of threads or how the chunks fell.
+ *
+ * @author Charlie
+ */
+public final class Simulation {
+
+	/** The number of games in each chunk. */
+	public static final int GAMES_PER_CHUNK = 256;
+
+	/** The most seats read, so that a corrupt stream cannot ask for huge arrays. */
+	private static final int MAX_READ_SEATS = 1024;
+
+	/** The number of pairs on the board. */
+	private final int numberOfPairs;
+
+	/** The strategy of each seat. */
+	private final AIStrategy[] strategies;
+
+	/** The difficulty of each seat. */
+	private final Difficulty[] difficulties;
+
+	/**
+	 * Create a simulation.
+	 *
+	 * @param numberOfPairs
+	 *            The number of pairs on the board.
+	 * @param strategies
+	 *            The strategy of each seat.
+	 * @param difficulties
+	 *            The difficulty of each seat, which sets its memory and intelligence.
+	 */
+	public Simulation(final int numberOfPairs, final AIStrategy[] strategies, final Difficulty[] difficulties) {
+		if (numberOfPairs <= 0) {
+			throw new IllegalArgumentException("numberOfPairs = " + numberOfPairs);
+		}
+		if (strategies.length == 0 || strategies.length != difficulties.length) {
+			throw new IllegalArgumentException("Every seat needs a strategy and a difficulty");
+		}
+		this.numberOfPairs = numberOfPairs;
+		this.strategies = strategies.clone();
+		this.difficulties = difficulties.clone();
+
+		// Check every strategy can play such a game
+		final Pelmanism sample = new Pelmanism(strategies.length, numberOfPairs, 0);
+		for (final AIStrategy strategy : strategies) {
+			if (!strategy.supports(sample)) {
+				throw new IllegalArgumentException(strategy + " cannot play a " + strategies.length + " player game");
+			}
+		}
+	}
+
+	/** The number of seats. */
+	public final int getNumberOfSeats() {
+		return strategies.length;
+	}
+
+	/** Write the board size and each seat's strategy and difficulty, so that another process can play the same games. */
+	final void write(final DataOutputStream out) throws IOException {
+		out.writeInt(numberOfPairs);
+		out.writeInt(strategies.length);
+		for (int seat = 0; seat < strategies.length; seat++) {
+			out.writeUTF(strategies[seat].name());
+			out.writeUTF(difficulties[seat].name());
+		}
+	}
+
+	/** Read a simulation written by write. */
+	static Simulation read(final DataInputStream in) throws IOException {
+		final int numberOfPairs = in.readInt();
+		final int seats = in.readInt();
+		if (seats <= 0 || seats > MAX_READ_SEATS) {
+			throw new IOException("Bad number of seats: " + seats);
+		}
+		final AIStrategy[] strategies = new AIStrategy[seats];
+		final Difficulty[] difficulties = new Difficulty[seats];
+		try {
+			for (int seat = 0; seat < seats; seat++) {
+				strategies[seat] = AIStrategy.valueOf(in.readUTF());
+				difficulties[seat] = Difficulty.valueOf(in.readUTF());
+			}
+			return new Simulation(numberOfPairs, strategies, difficulties);
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Bad simulation: " + e.getMessage());
+		}
+	}
+
+	/** Play a number of games on the calling thread. */
+	public final SimulationResult run(final long games, final long seed) {
+		return run(games, seed, null, 1);
+	}
+
+	/**
+	 * Play a number of games.
+	 *
+	 * @param games
+	 *            The number of games.
+	 * @param seed
+	 *            The seed from which every game is dealt and played.
+	 * @param executor
+	 *            The executor to play on, or null to play on the calling thread.
+	 * @param threads
+	 *            The number of threads to play on.
+	 */
+	public final SimulationResult run(final long games, final long seed, final ExecutorService executor,
+			final int threads) {
+		return run(0, (games + GAMES_PER_CHUNK - 1) / GAMES_PER_CHUNK, games, seed, executor, threads);
+	}
+
+	/**
+	 * Play a range of chunks of a larger run, as when a run is shared out between processes.
+	 *
+	 * @param firstChunk
+	 *            The index of the first chunk to play.
+	 * @param chunks
+	 *            The number of chunks to play.
+	 * @param games
+	 *            The number of games in the whole run, which cuts the last chunk of the run short.
+	 * @param seed
+	 *            The seed of the whole run.
+	 * @param executor
+	 *            The executor to play on, or null to play on the calling thread.
+	 * @param threads
+	 *            The number of threads to play on.
+	 */
+	public final SimulationResult run(final long firstChunk, final long chunks, final long games, final long seed,
+			final ExecutorService executor, final int threads) {
+		if (threads <= 0 || (executor == null && threads != 1)) {
+			throw new IllegalArgumentException("threads = " + threads);
+		}
+		final long start = System.nanoTime();
+		final long endChunk = firstChunk + chunks;
+		final AtomicLong nextChunk = new AtomicLong(firstChunk);
+		final SimulationResult result;
+		if (executor == null) {
+			result = playChunks(nextChunk, endChunk, games, seed);
+		} else {
+			final List<Future<SimulationResult>> workers = new ArrayList<Future<SimulationResult>>(threads);
+			for (int t = 0; t < threads; t++) {
+				workers.add(executor.submit(new Callable<SimulationResult>() {
+					@Override
+					public SimulationResult call() {
+						return playChunks(nextChunk, endChunk, games, seed);
+					}
+				}));
+			}
+			result = new SimulationResult(strategies.length);
+			for (final Future<SimulationResult> worker : workers) {
+				try {
+					result.merge(worker.get());
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while simulating");
+				} catch (final ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+		result.setNanos(System.nanoTime() - start);
+		return result;
+	}
+
+	/** Claim and play chunks until there are none left, counting the games in a result of this thread's own. */
+	private SimulationResult playChunks(final AtomicLong nextChunk, final long endChunk, final long games,
+			final long seed) {
+		final SimulationResult result = new SimulationResult(strategies.length);
+		final ComputerPlayer[] players = new ComputerPlayer[strategies.length];
+		final int[] seatScores = new int[strategies.length];
+		for (long chunk = nextChunk.getAndIncrement(); chunk < endChunk; chunk = nextChunk.getAndIncrement()) {
+			final RandomStream random = new RandomStream(RandomStream.seedFor(seed, chunk));
+			final long firstGame = chunk * GAMES_PER_CHUNK;
+			final long lastGame = Math.min(firstGame + GAMES_PER_CHUNK, games);
+			for (long g = firstGame; g < lastGame; g++) {
+				final int turns = playGame(g, random, players, seatScores);
+				result.addGame(seatScores, turns);
+			}
+		}
+		return result;
+	}
+
+	/** Play one game, leaving each seat's score in seatScores, and return the number of turns played. */
+	private int playGame(final long gameIndex, final RandomStream random, final ComputerPlayer[] players,
+			final int[] seatScores) {
+		final int n = strategies.length;
+		final Pelmanism game = new Pelmanism(n, numberOfPairs, random.nextLong());
+
+		// Seat s plays as player (s + gameIndex) % n, so the seats take turns to move first
+		final int rotation = (int) (gameIndex % n);
+		for (int seat = 0; seat < n; seat++) {
+			players[(seat + rotation) % n] = strategies[seat].createHeadless(difficulties[seat], game,
+					random.nextLong());
+		}
+
+		while (!game.isGameOver()) {
+			final ComputerPlayer player = players[game.getCurrentPlayerId()];
+			player.updateCards();
+			final Card first = player.pickFirstCard();
+			for (final ComputerPlayer p : players) {
+				p.cardSeen(first);
+			}
+			final Card second = player.pickSecondCard();
+			for (final ComputerPlayer p : players) {
+				p.cardSeen(second);
+			}
+			game.turn(first, second);
+		}
+
+		for (int seat = 0; seat < n; seat++) {
+			seatScores[seat] = game.getPlayerScore((seat + rotation) % n);
+		}
+		return game.getTurnCount();
+	}
+}
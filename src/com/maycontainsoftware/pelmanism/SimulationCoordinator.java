@@ -0,0 +1,315 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedList;
+
+/**
+ * Shares a Simulation's games out between worker processes over sockets, and merges their results. The games are cut
+ * into batches of the simulation's chunks, and each SimulationWorker that connects is sent the simulation, then a batch
+ * at a time: it pulls the next as it returns the last, so fast workers take more batches.
+ *
+ * Once every batch has been handed out, a worker that asks for more takes over a batch still running on another
+ * worker, the one with the fewest copies running, and whichever copy finishes first is counted; so one slow worker
+ * cannot hold up the end of a run. A worker whose connection drops has its batch put back at the front of the queue,
+ * unless another copy is still running. Every chunk is seeded from the run's seed and its own index, so the merged
+ * results are those of running the whole simulation in one process, however the batches fell.
+ *
+ * Messages are a byte giving the type, followed by its fields, over DataInput and DataOutput streams.
+ *
+ * @author Charlie
+ */
+public final class SimulationCoordinator {
+
+	/** The default number of simulation chunks in each batch. */
+	public static final int DEFAULT_CHUNKS_PER_BATCH = 16;
+
+	/** The version of the protocol, sent by workers when they connect. */
+	static final int PROTOCOL_VERSION = 1;
+
+	/** Worker to coordinator, once: the protocol version. */
+	static final byte HELLO = 1;
+
+	/** Coordinator to worker, once: the simulation, the number of games in the run, and the seed. */
+	static final byte JOB = 2;
+
+	/** Coordinator to worker: the batch id, its first chunk and the number of chunks. */
+	static final byte BATCH = 3;
+
+	/** Worker to coordinator: the batch id and the batch's results. */
+	static final byte RESULT = 4;
+
+	/** Coordinator to worker: there are no more batches. */
+	static final byte FINISHED = 5;
+
+	/** The simulation whose games are played. */
+	private final Simulation simulation;
+
+	/** The number of games in the run. */
+	private final long games;
+
+	/** The seed of the run. */
+	private final long seed;
+
+	/** The socket workers connect to. */
+	private final ServerSocket server;
+
+	/** The first chunk of each batch. */
+	private final long[] firstChunks;
+
+	/** The number of chunks in each batch. */
+	private final long[] chunkCounts;
+
+	/** The number of games in each batch. */
+	private final long[] batchGames;
+
+	// The state of the run, guarded by this
+
+	/** The batches waiting to be handed out, by id. */
+	private final LinkedList<Integer> pending = new LinkedList<Integer>();
+
+	/** The number of copies of each batch running on workers. */
+	private final int[] running;
+
+	/** Whether each batch's results have been counted. */
+	private final boolean[] done;
+
+	/** The number of batches counted. */
+	private int batchesDone;
+
+	/** The merged results of the batches counted. */
+	private final SimulationResult result;
+
+	/** The number of times a batch was put back after a worker's connection dropped. */
+	private int reissued;
+
+	/** The number of times a worker took over a batch running on another. */
+	private int taken;
+
+	/**
+	 * Create a coordinator.
+	 *
+	 * @param simulation
+	 *            The simulation whose games are played.
+	 * @param games
+	 *            The number of games in the run.
+	 * @param seed
+	 *            The seed of the run.
+	 * @param chunksPerBatch
+	 *            The number of simulation chunks in each batch.
+	 * @param server
+	 *            The socket workers connect to, which the run closes once it is done.
+	 */
+	public SimulationCoordinator(final Simulation simulation, final long games, final long seed,
+			final int chunksPerBatch, final ServerSocket server) {
+		if (games <= 0 || chunksPerBatch <= 0) {
+			throw new IllegalArgumentException("games = " + games + ", chunksPerBatch = " + chunksPerBatch);
+		}
+		final long chunks = (games + Simulation.GAMES_PER_CHUNK - 1) / Simulation.GAMES_PER_CHUNK;
+		final long batches = (chunks + chunksPerBatch - 1) / chunksPerBatch;
+		if (batches > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many batches: " + batches);
+		}
+		this.simulation = simulation;
+		this.games = games;
+		this.seed = seed;
+		this.server = server;
+
+		firstChunks = new long[(int) batches];
+		chunkCounts = new long[(int) batches];
+		batchGames = new long[(int) batches];
+		running = new int[(int) batches];
+		done = new boolean[(int) batches];
+		for (int id = 0; id < batches; id++) {
+			firstChunks[id] = (long) id * chunksPerBatch;
+			chunkCounts[id] = Math.min(chunksPerBatch, chunks - firstChunks[id]);
+			batchGames[id] = Math.min((firstChunks[id] + chunkCounts[id]) * Simulation.GAMES_PER_CHUNK, games)
+					- firstChunks[id] * Simulation.GAMES_PER_CHUNK;
+			pending.add(id);
+		}
+		result = new SimulationResult(simulation.getNumberOfSeats());
+	}
+
+	/**
+	 * Accept workers and hand out batches until every batch has been counted, then return the merged results. Blocks
+	 * until enough workers have connected to finish the run.
+	 */
+	public final SimulationResult run() throws InterruptedException {
+		final long start = System.nanoTime();
+		final Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "Simulation coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		synchronized (this) {
+			while (batchesDone < done.length) {
+				wait();
+			}
+			result.setNanos(System.nanoTime() - start);
+		}
+		try {
+			server.close();
+		} catch (final IOException e) {
+			// Nothing more is accepted either way
+		}
+		return result;
+	}
+
+	/** The number of times a batch was put back after a worker's connection dropped. */
+	public final synchronized int getReissued() {
+		return reissued;
+	}
+
+	/** The number of times a worker took over a batch running on another. */
+	public final synchronized int getTaken() {
+		return taken;
+	}
+
+	/** Accept workers until the socket is closed, serving each on a thread of its own. */
+	private void accept() {
+		while (!server.isClosed()) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (final IOException e) {
+				// Closed at the end of the run
+				return;
+			}
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			}, "Simulation coordinator for " + socket.getRemoteSocketAddress());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/** Serve a worker until there are no more batches or its connection drops. */
+	private void serve(final Socket socket) {
+		int batch = -1;
+		try {
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			if (in.readByte() != HELLO || in.readInt() != PROTOCOL_VERSION) {
+				throw new IOException("Not a worker of this version");
+			}
+			out.writeByte(JOB);
+			simulation.write(out);
+			out.writeLong(games);
+			out.writeLong(seed);
+
+			while (true) {
+				batch = nextBatch();
+				if (batch < 0) {
+					out.writeByte(FINISHED);
+					out.flush();
+					return;
+				}
+				out.writeByte(BATCH);
+				out.writeInt(batch);
+				out.writeLong(firstChunks[batch]);
+				out.writeLong(chunkCounts[batch]);
+				out.flush();
+
+				if (in.readByte() != RESULT || in.readInt() != batch) {
+					throw new IOException("Expected the result of batch " + batch);
+				}
+				final SimulationResult batchResult = SimulationResult.read(in);
+				if (batchResult.getNumberOfSeats() != simulation.getNumberOfSeats()
+						|| batchResult.getGames() != batchGames[batch]) {
+					throw new IOException("Result of batch " + batch + " has " + batchResult.getNumberOfSeats()
+							+ " seats and " + batchResult.getGames() + " games, not " + simulation.getNumberOfSeats()
+							+ " and " + batchGames[batch]);
+				}
+				finished(batch, batchResult);
+				batch = -1;
+			}
+		} catch (final IOException e) {
+			if (batch >= 0) {
+				dropped(batch);
+			}
+		} catch (final RuntimeException e) {
+			// Put the batch back for another worker, then let the thread fail as usual
+			if (batch >= 0) {
+				dropped(batch);
+			}
+			throw e;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (batch >= 0) {
+				dropped(batch);
+			}
+		} finally {
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// Already gone
+			}
+		}
+	}
+
+	/**
+	 * The next batch for a worker: one waiting to be handed out, or else the batch still running with the fewest copies
+	 * running. Waits while there is neither, and returns -1 once every batch has been counted.
+	 */
+	private synchronized int nextBatch() throws InterruptedException {
+		while (batchesDone < done.length) {
+			while (!pending.isEmpty()) {
+				final int id = pending.removeFirst();
+				if (!done[id]) {
+					running[id]++;
+					return id;
+				}
+			}
+			int fewest = -1;
+			for (int id = 0; id < done.length; id++) {
+				if (!done[id] && running[id] > 0 && (fewest < 0 || running[id] < running[fewest])) {
+					fewest = id;
+				}
+			}
+			if (fewest >= 0) {
+				running[fewest]++;
+				taken++;
+				return fewest;
+			}
+			wait();
+		}
+		return -1;
+	}
+
+	/**
+	 * Count a batch's results, unless another copy of it was counted first. The results are merged before anything else
+	 * changes, so that if merging fails the batch can be dropped as if its worker had gone.
+	 */
+	private synchronized void finished(final int batch, final SimulationResult batchResult) {
+		if (!done[batch]) {
+			result.merge(batchResult);
+			done[batch] = true;
+			batchesDone++;
+			notifyAll();
+		}
+		running[batch]--;
+	}
+
+	/** Put back a batch whose worker's connection dropped, unless it is done or another copy is running. */
+	private synchronized void dropped(final int batch) {
+		running[batch]--;
+		if (!done[batch] && running[batch] == 0) {
+			pending.addFirst(batch);
+			reissued++;
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The results of a Simulation: how many games each seat won, how many were tied, each seat's total score, and a
+ * histogram of the number of turns games took. Everything is held in primitive counters, so that each thread of a
+ * simulation can keep a result of its own without allocating, and the results are merged when the threads are done.
+ *
+ * @author Charlie
+ */
+public final class SimulationResult {
+
+	/** The initial number of buckets in the turn histogram. */
+	private static final int INITIAL_TURN_BUCKETS = 64;
+
+	/** The most seats or turn buckets read, so that a corrupt stream cannot ask for a huge array. */
+	private static final int MAX_READ_LENGTH = 1 << 20;
+
+	/** The number of seats. */
+	private final int numberOfSeats;
+
+	/** The number of games played. */
+	private long games;
+
+	/** The number of games each seat won outright. */
+	private final long[] wins;
+
+	/** The number of games in which the top score was shared. */
+	private long ties;
+
+	/** The total score of each seat, in pairs. */
+	private final long[] scores;
+
+	/** The total number of turns played. */
+	private long turns;
+
+	/** The number of games that took each number of turns. */
+	private long[] turnHistogram = new long[INITIAL_TURN_BUCKETS];
+
+	/** The wall-clock time taken, in nanoseconds. */
+	private long nanos;
+
+	/** Create an empty result, for a number of seats. */
+	SimulationResult(final int numberOfSeats) {
+		this.numberOfSeats = numberOfSeats;
+		this.wins = new long[numberOfSeats];
+		this.scores = new long[numberOfSeats];
+	}
+
+	/** Count a game, given each seat's score and the number of turns played. */
+	final void addGame(final int[] seatScores, final int gameTurns) {
+		games++;
+		int best = -1;
+		int bestSeat = -1;
+		boolean tied = false;
+		for (int seat = 0; seat < numberOfSeats; seat++) {
+			final int score = seatScores[seat];
+			scores[seat] += score;
+			if (score > best) {
+				best = score;
+				bestSeat = seat;
+				tied = false;
+			} else if (score == best) {
+				tied = true;
+			}
+		}
+		if (tied) {
+			ties++;
+		} else {
+			wins[bestSeat]++;
+		}
+		turns += gameTurns;
+		if (gameTurns >= turnHistogram.length) {
+			turnHistogram = grow(turnHistogram, gameTurns + 1);
+		}
+		turnHistogram[gameTurns]++;
+	}
+
+	/** Add the counts of another result, for the same seats, to this one. */
+	final void merge(final SimulationResult other) {
+		if (other.numberOfSeats != numberOfSeats) {
+			throw new IllegalArgumentException("Results are for different numbers of seats");
+		}
+		games += other.games;
+		ties += other.ties;
+		turns += other.turns;
+		for (int seat = 0; seat < numberOfSeats; seat++) {
+			wins[seat] += other.wins[seat];
+			scores[seat] += other.scores[seat];
+		}
+		if (other.turnHistogram.length > turnHistogram.length) {
+			turnHistogram = grow(turnHistogram, other.turnHistogram.length);
+		}
+		for (int i = 0; i < other.turnHistogram.length; i++) {
+			turnHistogram[i] += other.turnHistogram[i];
+		}
+	}
+
+	/** Set the wall-clock time taken. */
+	final void setNanos(final long nanos) {
+		this.nanos = nanos;
+	}
+
+	/** Write the counts, but not the time taken, compactly: the turn histogram stops at its last non-zero bucket. */
+	final void write(final DataOutputStream out) throws IOException {
+		out.writeInt(numberOfSeats);
+		out.writeLong(games);
+		out.writeLong(ties);
+		out.writeLong(turns);
+		for (int seat = 0; seat < numberOfSeats; seat++) {
+			out.writeLong(wins[seat]);
+			out.writeLong(scores[seat]);
+		}
+		int buckets = turnHistogram.length;
+		while (buckets > 0 && turnHistogram[buckets - 1] == 0) {
+			buckets--;
+		}
+		out.writeInt(buckets);
+		for (int i = 0; i < buckets; i++) {
+			out.writeLong(turnHistogram[i]);
+		}
+	}
+
+	/** Read counts written by write. */
+	static SimulationResult read(final DataInputStream in) throws IOException {
+		final int numberOfSeats = in.readInt();
+		if (numberOfSeats <= 0 || numberOfSeats > MAX_READ_LENGTH) {
+			throw new IOException("Bad number of seats: " + numberOfSeats);
+		}
+		final SimulationResult result = new SimulationResult(numberOfSeats);
+		result.games = in.readLong();
+		result.ties = in.readLong();
+		result.turns = in.readLong();
+		for (int seat = 0; seat < numberOfSeats; seat++) {
+			result.wins[seat] = in.readLong();
+			result.scores[seat] = in.readLong();
+		}
+		final int buckets = in.readInt();
+		if (buckets < 0 || buckets > MAX_READ_LENGTH) {
+			throw new IOException("Bad number of turn buckets: " + buckets);
+		}
+		if (buckets > result.turnHistogram.length) {
+			result.turnHistogram = new long[buckets];
+		}
+		for (int i = 0; i < buckets; i++) {
+			result.turnHistogram[i] = in.readLong();
+		}
+		return result;
+	}
+
+	/** Grow an array to at least a length, at least doubling it. */
+	private static long[] grow(final long[] array, final int length) {
+		final long[] grown = new long[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/** The number of seats. */
+	public final int getNumberOfSeats() {
+		return numberOfSeats;
+	}
+
+	/** The number of games played. */
+	public final long getGames() {
+		return games;
+	}
+
+	/** The number of games a seat won outright. */
+	public final long getWins(final int seat) {
+		return wins[seat];
+	}
+
+	/** The share of games a seat won outright. */
+	public final double getWinRate(final int seat) {
+		return (double) wins[seat] / games;
+	}
+
+	/** The number of games in which the top score was shared. */
+	public final long getTies() {
+		return ties;
+	}
+
+	/** A seat's mean score, in pairs. */
+	public final double getMeanScore(final int seat) {
+		return (double) scores[seat] / games;
+	}
+
+	/** The mean number of turns per game. */
+	public final double getMeanTurns() {
+		return (double) turns / games;
+	}
+
+	/** The number of games that took a number of turns. */
+	public final long getGamesWithTurns(final int gameTurns) {
+		return (gameTurns < turnHistogram.length) ? turnHistogram[gameTurns] : 0;
+	}
+
+	/** The smallest number of turns that at least a fraction of games took no more than. */
+	public final int getTurnPercentile(final double fraction) {
+		final long rank = Math.max(1, (long) Math.ceil(fraction * games));
+		long count = 0;
+		for (int i = 0; i < turnHistogram.length; i++) {
+			count += turnHistogram[i];
+			if (count >= rank) {
+				return i;
+			}
+		}
+		return turnHistogram.length - 1;
+	}
+
+	/** The wall-clock time taken, in nanoseconds. */
+	public final long getNanos() {
+		return nanos;
+	}
+
+	/** The number of games played per second of wall-clock time. */
+	public final double getGamesPerSecond() {
+		return games * 1e9 / nanos;
+	}
+}
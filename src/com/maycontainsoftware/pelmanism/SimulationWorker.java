@@ -0,0 +1,93 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays batches of a simulation's games for a SimulationCoordinator: connects, is sent the simulation, then plays each
+ * batch it is sent across its own threads and sends back the results, until there are no more.
+ *
+ * @author Charlie
+ */
+public final class SimulationWorker {
+
+	/** The host the coordinator is on. */
+	private final String host;
+
+	/** The port the coordinator listens on. */
+	private final int port;
+
+	/** The number of threads to play on. */
+	private final int threads;
+
+	/**
+	 * Create a worker.
+	 *
+	 * @param host
+	 *            The host the coordinator is on.
+	 * @param port
+	 *            The port the coordinator listens on.
+	 * @param threads
+	 *            The number of threads to play on.
+	 */
+	public SimulationWorker(final String host, final int port, final int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads = " + threads);
+		}
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/** Play batches until the coordinator has no more, and return the number played. */
+	public final int run() throws IOException {
+		final Socket socket = new Socket(host, port);
+		final ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeByte(SimulationCoordinator.HELLO);
+			out.writeInt(SimulationCoordinator.PROTOCOL_VERSION);
+			out.flush();
+
+			if (in.readByte() != SimulationCoordinator.JOB) {
+				throw new IOException("Expected a job");
+			}
+			final Simulation simulation = Simulation.read(in);
+			final long games = in.readLong();
+			final long seed = in.readLong();
+
+			int batches = 0;
+			while (true) {
+				final byte type = in.readByte();
+				if (type == SimulationCoordinator.FINISHED) {
+					return batches;
+				} else if (type != SimulationCoordinator.BATCH) {
+					throw new IOException("Unexpected message " + type);
+				}
+				final int batch = in.readInt();
+				final long firstChunk = in.readLong();
+				final long chunks = in.readLong();
+				final SimulationResult result = simulation.run(firstChunk, chunks, games, seed, executor, threads);
+
+				out.writeByte(SimulationCoordinator.RESULT);
+				out.writeInt(batch);
+				result.write(out);
+				out.flush();
+				batches++;
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+			socket.close();
+		}
+	}
+}
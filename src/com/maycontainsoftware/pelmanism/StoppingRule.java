@@ -0,0 +1,221 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * When an Experiment has seen enough games to call its comparison of two seats. The rule is checked after every look
+ * at the results so far, and either gives a verdict or lets the experiment play on.
+ *
+ * Both rules keep their statistical guarantees however many times they look. A confidence interval rule spends its
+ * error rate over the looks, a share of 1 / (k * (k + 1)) at the kth look, which adds up to the whole error rate over
+ * any number of looks. Early looks can stop on a large difference, but later ones pay with wider intervals, so calling
+ * level seats takes more games than an interval looked at once. A sequential probability ratio test was built to be
+ * looked at after every game, and is the cheaper rule when the seats may be close.
+ *
+ * @author Charlie
+ */
+public abstract class StoppingRule {
+
+	/**
+	 * A rule that stops once a confidence interval on the first seat's score, counting a tie as half a win, lies wholly
+	 * above or below an even match, or is narrow enough to call the seats level.
+	 *
+	 * @param confidence
+	 *            The chance that every interval, at every look, holds the true score; for example 0.99.
+	 * @param halfWidth
+	 *            The half width, in score, at which the seats are called level if neither is clearly stronger.
+	 */
+	public static StoppingRule confidenceInterval(final double confidence, final double halfWidth) {
+		if (confidence <= 0.0 || confidence >= 1.0 || halfWidth <= 0.0) {
+			throw new IllegalArgumentException("confidence = " + confidence + ", halfWidth = " + halfWidth);
+		}
+		return new ConfidenceInterval(confidence, halfWidth);
+	}
+
+	/**
+	 * A two-sided sequential probability ratio test on the games that are not tied: whether the first seat wins them
+	 * with probability 0.5 + edge, 0.5 - edge, or 0.5. It runs one test each way, and stops once either finds a
+	 * stronger seat or both find the seats level.
+	 *
+	 * @param edge
+	 *            The margin in win rate over 0.5 that counts as stronger; for example 0.05.
+	 * @param alpha
+	 *            The chance of calling either seat stronger when they are level.
+	 * @param beta
+	 *            The chance of calling the seats level when one is stronger by the edge.
+	 */
+	public static StoppingRule sequentialProbabilityRatio(final double edge, final double alpha, final double beta) {
+		if (edge <= 0.0 || edge >= 0.5 || alpha <= 0.0 || alpha >= 1.0 || beta <= 0.0 || beta >= 1.0) {
+			throw new IllegalArgumentException("edge = " + edge + ", alpha = " + alpha + ", beta = " + beta);
+		}
+		return new SequentialProbabilityRatio(edge, alpha, beta);
+	}
+
+	/** Package-private, so that every rule is one of the above. */
+	StoppingRule() {
+	}
+
+	/**
+	 * Check the results after a look.
+	 *
+	 * @param result
+	 *            The results of every game so far, for two seats.
+	 * @param look
+	 *            The number of the look, from 1.
+	 * @return The verdict, or null to play on.
+	 */
+	abstract Experiment.Verdict check(SimulationResult result, int look);
+
+	/**
+	 * The number of games a test looked at only once, at the end, would need for the same guarantees as this rule, so
+	 * that an experiment's saving can be judged. Where this depends on the unknown variance, the worst case is taken.
+	 */
+	public abstract long getFixedSampleSize();
+
+	/** A confidence interval on the first seat's score, with the error rate spent over the looks. */
+	private static final class ConfidenceInterval extends StoppingRule {
+
+		/** The chance that every interval holds the true score. */
+		private final double confidence;
+
+		/** The half width at which the seats are called level. */
+		private final double halfWidth;
+
+		ConfidenceInterval(final double confidence, final double halfWidth) {
+			this.confidence = confidence;
+			this.halfWidth = halfWidth;
+		}
+
+		@Override
+		Experiment.Verdict check(final SimulationResult result, final int look) {
+			final long games = result.getGames();
+			if (games == 0) {
+				return null;
+			}
+
+			// Each game scores 1, 1/2 or 0
+			final double mean = (result.getWins(0) + result.getTies() / 2.0) / games;
+			final double meanOfSquares = (result.getWins(0) + result.getTies() / 4.0) / games;
+			final double variance = Math.max(meanOfSquares - mean * mean, 0.0);
+
+			// This look's share of the error rate, two-sided
+			final double error = (1.0 - confidence) / ((double) look * (look + 1));
+			final double half = normalQuantile(1.0 - error / 2.0) * Math.sqrt(variance / games);
+			if (mean - half > 0.5) {
+				return Experiment.Verdict.FirstStronger;
+			} else if (mean + half < 0.5) {
+				return Experiment.Verdict.SecondStronger;
+			} else if (half <= halfWidth) {
+				return Experiment.Verdict.Level;
+			}
+			return null;
+		}
+
+		@Override
+		public long getFixedSampleSize() {
+			// A score's variance is at most 1/4
+			final double z = normalQuantile(1.0 - (1.0 - confidence) / 2.0);
+			return (long) Math.ceil(z * z / 4.0 / (halfWidth * halfWidth));
+		}
+
+		@Override
+		public String toString() {
+			return "confidence interval, " + confidence + " confidence, half width " + halfWidth;
+		}
+	}
+
+	/** Two one-sided sequential probability ratio tests, one each way, on the games that are not tied. */
+	private static final class SequentialProbabilityRatio extends StoppingRule {
+
+		/** The margin in win rate that counts as stronger. */
+		private final double edge;
+
+		/** The chance of calling either seat stronger when they are level. */
+		private final double alpha;
+
+		/** The chance of calling the seats level when one is stronger by the edge. */
+		private final double beta;
+
+		/** The log likelihood ratio added by a game won by the seat a test is for. */
+		private final double winWeight;
+
+		/** The log likelihood ratio added by a game lost by the seat a test is for. */
+		private final double lossWeight;
+
+		/** The log likelihood ratio at or above which a test finds its seat stronger. */
+		private final double upperBound;
+
+		/** The log likelihood ratio at or below which a test finds the seats level. */
+		private final double lowerBound;
+
+		SequentialProbabilityRatio(final double edge, final double alpha, final double beta) {
+			this.edge = edge;
+			this.alpha = alpha;
+			this.beta = beta;
+			winWeight = Math.log((0.5 + edge) / 0.5);
+			lossWeight = Math.log((0.5 - edge) / 0.5);
+
+			// Each test has half of the error rate of calling a seat stronger
+			upperBound = Math.log((1.0 - beta) / (alpha / 2.0));
+			lowerBound = Math.log(beta / (1.0 - alpha / 2.0));
+		}
+
+		@Override
+		Experiment.Verdict check(final SimulationResult result, final int look) {
+			final long firstWins = result.getWins(0);
+			final long secondWins = result.getWins(1);
+			final double first = firstWins * winWeight + secondWins * lossWeight;
+			final double second = secondWins * winWeight + firstWins * lossWeight;
+			if (first >= upperBound) {
+				return Experiment.Verdict.FirstStronger;
+			} else if (second >= upperBound) {
+				return Experiment.Verdict.SecondStronger;
+			} else if (first <= lowerBound && second <= lowerBound) {
+				return Experiment.Verdict.Level;
+			}
+			return null;
+		}
+
+		@Override
+		public long getFixedSampleSize() {
+			// Games not tied, whose outcome's variance is at most 1/4
+			final double z = normalQuantile(1.0 - alpha / 2.0) + normalQuantile(1.0 - beta);
+			return (long) Math.ceil(z * z / 4.0 / (edge * edge));
+		}
+
+		@Override
+		public String toString() {
+			return "sequential probability ratio test, edge " + edge + ", alpha " + alpha + ", beta " + beta;
+		}
+	}
+
+	/**
+	 * The standard normal quantile of a probability, by Acklam's rational approximation, which is good to about one
+	 * part in a billion.
+	 */
+	static double normalQuantile(final double p) {
+		if (p <= 0.0 || p >= 1.0) {
+			throw new IllegalArgumentException("p = " + p);
+		}
+		final double low = 0.02425;
+		if (p < low) {
+			final double q = Math.sqrt(-2.0 * Math.log(p));
+			return tail(q);
+		} else if (p > 1.0 - low) {
+			final double q = Math.sqrt(-2.0 * Math.log(1.0 - p));
+			return -tail(q);
+		}
+		final double q = p - 0.5;
+		final double r = q * q;
+		return (((((-3.969683028665376e+01 * r + 2.209460984245205e+02) * r - 2.759285104469687e+02) * r
+				+ 1.383577518672690e+02) * r - 3.066479806614716e+01) * r + 2.506628277459239e+00) * q
+				/ (((((-5.447609879822406e+01 * r + 1.615858368580409e+02) * r - 1.556989798598866e+02) * r
+						+ 6.680131188771972e+01) * r - 1.328068155288572e+01) * r + 1.0);
+	}
+
+	/** The lower tail of Acklam's approximation, given sqrt(-2 log p). */
+	private static double tail(final double q) {
+		return (((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q - 2.400758277161838e+00) * q
+				- 2.549732539343734e+00) * q + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+				/ ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q + 2.445134137142996e+00) * q
+						+ 3.754408661907416e+00) * q + 1.0);
+	}
+}
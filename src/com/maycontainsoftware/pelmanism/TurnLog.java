@@ -0,0 +1,230 @@
+package com.maycontainsoftware.pelmanism;
+
+import java.util.Arrays;
+
+/**
+ * Log of the turns played in a game, stored as packed primitives. Each turn occupies three consecutive ints: the first
+ * card id, the second card id, and a flags word holding the player id and the match and game-over bits. The turn id is
+ * the turn's index in the log.
+ *
+ * Turns are stored in fixed-size chunks. Chunks are kept when the log is cleared, so once a log has grown to fit a game,
+ * recording the turns of later games of the same size allocates nothing.
+ *
+ * Logs can be forked cheaply: a fork copies the table of chunks but shares the chunks themselves with its parent.
+ * Turns are only ever appended or truncated away, so the only shared chunk either log ever writes to is the one holding
+ * its next turn, which it copies first.
+ *
+ * A log can be given a window, in which case it only keeps the most recent turns: once the window is full, the oldest
+ * chunk is dropped, and reused for new turns, whenever a new chunk is needed. Turn ids keep counting up from the start of
+ * the game, so turns older than getFirstTurnId() are no longer available.
+ *
+ * @author Charlie
+ */
+final class TurnLog {
+
+	/** The number of ints used to store each turn. */
+	private static final int STRIDE = 3;
+
+	/** Offset of the first card id within a turn's entry. */
+	private static final int FIRST_PICK = 0;
+
+	/** Offset of the second card id within a turn's entry. */
+	private static final int SECOND_PICK = 1;
+
+	/** Offset of the flags word within a turn's entry. */
+	private static final int FLAGS = 2;
+
+	/** Flag bit set when the turn resulted in a match. */
+	private static final int FLAG_MATCH = 1;
+
+	/** Flag bit set when the turn resulted in the game finishing. */
+	private static final int FLAG_GAME_OVER = 2;
+
+	/** The player id is stored in the flags word above the flag bits. */
+	private static final int PLAYER_SHIFT = 2;
+
+	/** Each chunk holds 2^CHUNK_SHIFT turns. */
+	private static final int CHUNK_SHIFT = 6;
+
+	/** The number of turns held in each chunk. */
+	private static final int CHUNK_TURNS = 1 << CHUNK_SHIFT;
+
+	/** Mask giving a turn's index within its chunk. */
+	private static final int CHUNK_MASK = CHUNK_TURNS - 1;
+
+	/** The chunks of packed turn data. Entries may be null where no chunk has been needed yet. */
+	private int[][] chunks;
+
+	/** The number of turns played, including any that have since been dropped from the window. */
+	private int size;
+
+	/** The id of the first turn held in chunk zero. Always zero unless the log has a window. */
+	private int base;
+
+	/** The maximum number of chunks kept, or zero if every turn is kept. */
+	private final int windowChunks;
+
+	/** Chunks with an index below this may be shared with another log, and must be copied before being written to. */
+	private int sharedChunks;
+
+	/**
+	 * Create a new, empty, turn log.
+	 *
+	 * @param initialCapacity
+	 *            The number of turns the log can hold before it first needs to grow.
+	 */
+	TurnLog(final int initialCapacity) {
+		this(initialCapacity, 0);
+	}
+
+	/**
+	 * Create a new, empty, turn log that only keeps the most recent turns.
+	 * 
+	 * @param initialCapacity
+	 *            The number of turns the log can hold before it first needs to grow.
+	 * @param window
+	 *            The minimum number of recent turns to keep, or zero to keep every turn. Up to one chunk more is kept.
+	 */
+	TurnLog(final int initialCapacity, final int window) {
+		this.windowChunks = (window == 0) ? 0 : ((window + CHUNK_MASK) >>> CHUNK_SHIFT) + 1;
+		chunks = new int[0][];
+		ensureCapacity(Math.max(1, initialCapacity));
+	}
+
+	/** Create a log that shares the chunks of another. */
+	private TurnLog(final TurnLog source) {
+		this.chunks = source.chunks.clone();
+		this.size = source.size;
+		this.base = source.base;
+		this.windowChunks = source.windowChunks;
+		this.sharedChunks = chunks.length;
+	}
+
+	/** Create an independent copy of this log, in time proportional to the number of chunks. */
+	final TurnLog fork() {
+		sharedChunks = chunks.length;
+		return new TurnLog(this);
+	}
+
+	/** The number of turns in the log. */
+	final int size() {
+		return size;
+	}
+
+	/** The id of the oldest turn still held in the log. */
+	final int getFirstTurnId() {
+		return base;
+	}
+
+	/** Remove all turns from the log, keeping its capacity. */
+	final void clear() {
+		size = 0;
+		base = 0;
+	}
+
+	/** Remove every turn from the given turn id onwards, keeping the turns before it. */
+	final void truncate(final int newSize) {
+		if (newSize < base) {
+			throw new IllegalArgumentException("Turn " + newSize + " has already been dropped from the log");
+		}
+		if (newSize < size) {
+			size = newSize;
+		}
+	}
+
+	/** Make sure the log can hold at least the given number of turns without allocating. */
+	final void ensureCapacity(final int numberOfTurns) {
+		int chunksNeeded = (numberOfTurns + CHUNK_MASK) >>> CHUNK_SHIFT;
+		if (windowChunks != 0) {
+			chunksNeeded = Math.min(chunksNeeded, windowChunks);
+		}
+		if (chunksNeeded > chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunksNeeded);
+		}
+		for (int c = sharedChunks; c < chunksNeeded; c++) {
+			if (chunks[c] == null) {
+				chunks[c] = new int[CHUNK_TURNS * STRIDE];
+			}
+		}
+	}
+
+	/**
+	 * Append a turn to the log.
+	 *
+	 * @return The id of the new turn.
+	 */
+	final int append(final int playerId, final int firstPick, final int secondPick, final boolean match,
+			final boolean gameOver) {
+		int c = (size - base) >>> CHUNK_SHIFT;
+		if (windowChunks != 0 && c == windowChunks) {
+			slideWindow();
+			c--;
+		}
+		final int[] chunk = writableChunk(c);
+		final int offset = (size & CHUNK_MASK) * STRIDE;
+		chunk[offset + FIRST_PICK] = firstPick;
+		chunk[offset + SECOND_PICK] = secondPick;
+		chunk[offset + FLAGS] = (playerId << PLAYER_SHIFT) | (match ? FLAG_MATCH : 0) | (gameOver ? FLAG_GAME_OVER : 0);
+		return size++;
+	}
+
+	/** Drop the oldest chunk, moving the others down, and reuse the dropped chunk at the end if it is not shared. */
+	private void slideWindow() {
+		final int[] oldest = (sharedChunks == 0) ? chunks[0] : null;
+		System.arraycopy(chunks, 1, chunks, 0, windowChunks - 1);
+		chunks[windowChunks - 1] = oldest;
+		base += CHUNK_TURNS;
+		if (sharedChunks > 0) {
+			sharedChunks--;
+		}
+	}
+
+	/** Get a chunk that can be written to, allocating or copying it as necessary. */
+	private int[] writableChunk(final int c) {
+		if (c >= chunks.length) {
+			final int grown = Math.max(c + 1, chunks.length * 2);
+			chunks = Arrays.copyOf(chunks, (windowChunks == 0) ? grown : Math.min(grown, windowChunks));
+		}
+		if (c < sharedChunks) {
+			// Copy the chunk. Later shared chunks hold no turns of this log, so drop them rather than copy them.
+			chunks[c] = (chunks[c] == null) ? new int[CHUNK_TURNS * STRIDE] : chunks[c].clone();
+			for (int i = c + 1; i < sharedChunks; i++) {
+				chunks[i] = null;
+			}
+			sharedChunks = c;
+		} else if (chunks[c] == null) {
+			chunks[c] = new int[CHUNK_TURNS * STRIDE];
+		}
+		return chunks[c];
+	}
+
+	/** Get one of the packed ints of a turn's entry. */
+	private int get(final int turnId, final int field) {
+		return chunks[(turnId - base) >>> CHUNK_SHIFT][(turnId & CHUNK_MASK) * STRIDE + field];
+	}
+
+	/** The id of the card picked first in a turn. */
+	final int getFirstPick(final int turnId) {
+		return get(turnId, FIRST_PICK);
+	}
+
+	/** The id of the card picked second in a turn. */
+	final int getSecondPick(final int turnId) {
+		return get(turnId, SECOND_PICK);
+	}
+
+	/** The id of the player who played a turn. */
+	final int getPlayerId(final int turnId) {
+		return get(turnId, FLAGS) >>> PLAYER_SHIFT;
+	}
+
+	/** Whether a turn resulted in a match. */
+	final boolean isMatch(final int turnId) {
+		return (get(turnId, FLAGS) & FLAG_MATCH) != 0;
+	}
+
+	/** Whether a turn resulted in the game finishing. */
+	final boolean isGameOver(final int turnId) {
+		return (get(turnId, FLAGS) & FLAG_GAME_OVER) != 0;
+	}
+}
@@ -0,0 +1,139 @@
+package com.maycontainsoftware.pelmanism;
+
+/**
+ * Estimates each player's chance of winning a two player game as it is played, from the scores and the cards revealed
+ * so far. The estimate is the chance of winning were both players to play perfectly from here on, remembering every card
+ * revealed, looked up in an OptimalPolicy; ties count as half a win.
+ *
+ * The state is kept up to date a turn at a time: the cards on the board that have never been revealed, and the pairs on
+ * the board whose cards have both been revealed. A player with perfect memory takes every such pair at once, so they
+ * are counted towards the score of the player to move before looking the state up. Each update therefore costs a few
+ * array reads per turn played, and the table is solved once, in a few milliseconds, and shared between games.
+ *
+ * @author Charlie
+ */
+public final class WinEstimator {
+
+	/** The Pelmanism game model. */
+	private final Pelmanism model;
+
+	/** The table of win probabilities. */
+	private final OptimalPolicy policy;
+
+	/** The other card of each card's pair. */
+	private final int[] partners;
+
+	/** Whether each card has been revealed. */
+	private final boolean[] revealed;
+
+	/** The number of cards on the board that have never been revealed. */
+	private int unknownCards;
+
+	/** The number of pairs on the board whose cards have both been revealed. */
+	private int knownPairs;
+
+	/** The number of the game's turns that have been read. */
+	private int turnCursor;
+
+	/** Whether the estimator can be used for a game: it must have two players and not be endless. */
+	public static boolean supports(final Pelmanism model) {
+		return model.getNumberOfPlayers() == 2 && !model.isEndless();
+	}
+
+	/** Create an estimator for a game, using the shared table. */
+	public WinEstimator(final Pelmanism model) {
+		this(model, OptimalSolver.shared(model.getNumberOfPairs()));
+	}
+
+	/**
+	 * Create an estimator for a game.
+	 *
+	 * @param model
+	 *            The game model, which must be supported.
+	 * @param policy
+	 *            The table of win probabilities, solved for at least the model's number of pairs.
+	 */
+	public WinEstimator(final Pelmanism model, final OptimalPolicy policy) {
+		if (!supports(model)) {
+			throw new IllegalArgumentException("Only two player games that end can be estimated");
+		}
+		if (policy.getMaxPairs() < model.getNumberOfPairs()) {
+			throw new IllegalArgumentException("Policy solved for " + policy.getMaxPairs() + " pairs, game has "
+					+ model.getNumberOfPairs());
+		}
+		this.model = model;
+		this.policy = policy;
+
+		// Pair the cards up
+		final int numberOfCards = model.getNumberOfCards();
+		partners = new int[numberOfCards];
+		final int[] firstOfPair = new int[model.getPairIdLimit()];
+		for (int i = 0; i < firstOfPair.length; i++) {
+			firstOfPair[i] = -1;
+		}
+		for (int cardId = 0; cardId < numberOfCards; cardId++) {
+			final int pairId = model.getPairId(cardId);
+			final int other = firstOfPair[pairId];
+			if (other < 0) {
+				firstOfPair[pairId] = cardId;
+			} else {
+				partners[cardId] = other;
+				partners[other] = cardId;
+			}
+		}
+
+		// Every turn is read from the start, so matched cards are counted off as they are revealed
+		revealed = new boolean[numberOfCards];
+		unknownCards = numberOfCards;
+		update();
+	}
+
+	/** Read any turns played since the last update. */
+	public final void update() {
+		final int turnCount = model.getTurnCount();
+		for (; turnCursor < turnCount; turnCursor++) {
+			reveal(model.getTurnFirstPickId(turnCursor));
+			reveal(model.getTurnSecondPickId(turnCursor));
+			if (model.isTurnMatch(turnCursor)) {
+				// Both cards have just been revealed, so the pair was known
+				knownPairs--;
+			}
+		}
+	}
+
+	/** Note a card as revealed. */
+	private void reveal(final int cardId) {
+		if (revealed[cardId]) {
+			return;
+		}
+		revealed[cardId] = true;
+		unknownCards--;
+		if (revealed[partners[cardId]]) {
+			knownPairs++;
+		}
+	}
+
+	/**
+	 * Note that the game has been rewound. What was revealed in the rewound turns stays known, but the pairs found in
+	 * them are back on the board, so the known pairs are counted again.
+	 */
+	public final void rewound() {
+		turnCursor = Math.min(turnCursor, model.getTurnCount());
+		int revealedPairCards = 0;
+		for (int cardId = 0; cardId < revealed.length; cardId++) {
+			if (revealed[cardId] && revealed[partners[cardId]] && model.isCardPickable(cardId)) {
+				revealedPairCards++;
+			}
+		}
+		knownPairs = revealedPairCards / 2;
+	}
+
+	/** The chance that a player wins, with ties counting as half a win. */
+	public final float getWinProbability(final int playerId) {
+		update();
+		final int mover = model.getCurrentPlayerId();
+		final float moverWins = policy.getWinProbability(model.getPairsRemaining() - knownPairs, unknownCards,
+				model.getPlayerScore(mover) - model.getPlayerScore(1 - mover) + knownPairs);
+		return (playerId == mover) ? moverWins : 1.0f - moverWins;
+	}
+}
@@ -0,0 +1,59 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import com.maycontainsoftware.pelmanism.Card;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.ObservationLog;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.PelmanismAI;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Benchmark of the computer player's decision cost, on the Hard board and on a 10,000 card board. Two computer players
+ * play whole games against each other, both watching every card turned over, and the time per move is reported. A move
+ * is everything one player does in a turn: updating its knowledge, picking both cards, and seeing them.
+ *
+ * @author Charlie
+ */
+public class AIBenchmark {
+
+	public static void main(final String[] args) {
+		benchmark("30 cards", Difficulty.Hard.getNumberOfPairs(), 20000);
+		benchmark("10,000 cards", 5000, 20);
+	}
+
+	/** Benchmark a number of games with the given number of pairs, after warming up with the same number of games. */
+	private static void benchmark(final String name, final int numberOfPairs, final int games) {
+		final RandomStream random = new RandomStream(1);
+		play(numberOfPairs, games, random);
+		final long start = System.nanoTime();
+		final long moves = play(numberOfPairs, games, random);
+		final double nanos = (System.nanoTime() - start) / (double) moves;
+		System.out.println(name + ": " + Math.round(nanos) + " ns per move (" + moves / games + " moves per game)");
+	}
+
+	/** Play a number of games, and return the total number of moves. */
+	private static long play(final int numberOfPairs, final int games, final RandomStream random) {
+		long moves = 0;
+		for (int g = 0; g < games; g++) {
+			final Pelmanism game = new Pelmanism(2, numberOfPairs, random.nextLong());
+			final ObservationLog log = new ObservationLog(game);
+			final PelmanismAI[] players = { new PelmanismAI(Difficulty.Hard, game, log, random.nextLong()),
+					new PelmanismAI(Difficulty.Hard, game, log, random.nextLong()) };
+			while (!game.isGameOver()) {
+				final PelmanismAI player = players[game.getCurrentPlayerId()];
+				player.updateCards();
+				final Card first = player.pickFirstCard();
+				for (final PelmanismAI p : players) {
+					p.cardSeen(first);
+				}
+				final Card second = player.pickSecondCard();
+				for (final PelmanismAI p : players) {
+					p.cardSeen(second);
+				}
+				game.turn(first.getId(), second.getId());
+				moves++;
+			}
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,84 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import com.maycontainsoftware.pelmanism.AIStrategy;
+import com.maycontainsoftware.pelmanism.BatchSimulation;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Simulation;
+import com.maycontainsoftware.pelmanism.SimulationResult;
+
+/**
+ * Benchmark of the lockstep batch simulator against the one-object-per-game simulator, both on one thread on the Hard
+ * board. Each is timed over several rounds, taking the fastest, so that other work on the machine counts as little as
+ * possible. Reports each one's games per second, the speedup against the target, and the win rates and game lengths of
+ * both, which should agree to within sampling error.
+ *
+ * The target is ten times Simulation's games per second for each pairing, and a pairing that falls short is reported
+ * as not meeting it. On one shared core the batch simulator measures about nine times Hard against Hard and six to
+ * seven times Easy against Hard, so neither meets it yet.
+ *
+ * @author Charlie
+ */
+public class BatchSimulationBenchmark {
+
+	/** The number of games to play with Simulation. */
+	private static final int GAMES = 100000;
+
+	/** The number of games to play with BatchSimulation. */
+	private static final int BATCH_GAMES = 1000000;
+
+	/** The number of timed rounds, after the warm-up round. */
+	private static final int ROUNDS = 5;
+
+	/** The least speedup of BatchSimulation over Simulation required of each pairing. */
+	private static final double TARGET_SPEEDUP = 10.0;
+
+	public static void main(final String[] args) {
+		benchmark(Difficulty.Hard, Difficulty.Hard);
+		benchmark(Difficulty.Easy, Difficulty.Hard);
+	}
+
+	/** Benchmark games between two difficulties on the Hard board, after a round to warm up. */
+	private static void benchmark(final Difficulty one, final Difficulty two) {
+		final int numberOfPairs = Difficulty.Hard.getNumberOfPairs();
+		final Difficulty[] difficulties = { one, two };
+		final Simulation simulation = new Simulation(numberOfPairs,
+				new AIStrategy[] { AIStrategy.Simple, AIStrategy.Simple }, difficulties);
+		final BatchSimulation batch = new BatchSimulation(numberOfPairs, difficulties);
+
+		simulation.run(GAMES, 0);
+		batch.run(BATCH_GAMES, 0);
+		SimulationResult objects = null;
+		SimulationResult columns = null;
+		for (int round = 1; round <= ROUNDS; round++) {
+			objects = fastest(objects, simulation.run(GAMES, round));
+			columns = fastest(columns, batch.run(BATCH_GAMES, round));
+		}
+
+		System.out.println(one + " against " + two + ":");
+		report("  Simulation", objects);
+		report("  BatchSimulation", columns);
+		final double speedup = columns.getGamesPerSecond() / objects.getGamesPerSecond();
+		System.out.println("  Speedup: " + Math.round(speedup * 10) / 10.0 + "x, target " + TARGET_SPEEDUP + "x"
+				+ ((speedup >= TARGET_SPEEDUP) ? "" : " NOT MET"));
+	}
+
+	/** The faster of two results, either of which may be null. */
+	private static SimulationResult fastest(final SimulationResult a, final SimulationResult b) {
+		if (a == null) {
+			return b;
+		}
+		return (b == null || a.getGamesPerSecond() >= b.getGamesPerSecond()) ? a : b;
+	}
+
+	/** Report a result. */
+	private static void report(final String name, final SimulationResult result) {
+		System.out.println(name + ": " + Math.round(result.getGamesPerSecond()) + " games per second, seat 0 wins "
+				+ percent(result.getWinRate(0)) + ", seat 1 wins " + percent(result.getWinRate(1)) + ", "
+				+ Math.round(result.getMeanTurns() * 100) / 100.0 + " turns");
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
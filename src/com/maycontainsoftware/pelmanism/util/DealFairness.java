@@ -0,0 +1,158 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.maycontainsoftware.pelmanism.DealAnalysis;
+import com.maycontainsoftware.pelmanism.DealAnalyzer;
+import com.maycontainsoftware.pelmanism.DealGenerator;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Scores candidate deals of every Difficulty with a DealAnalyzer, reports how widely they differ, and generates the
+ * table of balanced deal seeds for BalancedDeals: those whose first mover has the least advantage and which take close
+ * to the typical number of turns to clear.
+ *
+ * Arguments: [candidates per difficulty] [playouts per deal] [seeds per difficulty] [output file]. The table is written
+ * to the output file, or else printed.
+ *
+ * @author Charlie
+ */
+public class DealFairness {
+
+	/** The seed every run starts from, so that runs can be repeated. */
+	private static final long SEED = 1;
+
+	public static void main(final String[] args) throws FileNotFoundException {
+		final int candidates = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		final int playouts = (args.length > 1) ? Integer.parseInt(args[1]) : 2048;
+		final int seedsPerDifficulty = (args.length > 2) ? Integer.parseInt(args[2]) : 32;
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final StringBuilder table = new StringBuilder();
+		try {
+			for (final Difficulty difficulty : Difficulty.values()) {
+				table.append(select(difficulty, candidates, playouts, seedsPerDifficulty, executor, threads));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		final PrintStream out = (args.length > 3) ? new PrintStream(args[3]) : System.out;
+		out.println("\t// Generated by DealFairness: " + seedsPerDifficulty + " of " + candidates
+				+ " deals of each difficulty, " + playouts + " playouts each, reference memory "
+				+ DealAnalyzer.REFERENCE_MEMORY_CAPACITY + " and decay " + DealAnalyzer.REFERENCE_MEMORY_DECAY);
+		out.println("\tprivate static final long[][] SEEDS = {");
+		out.print(table);
+		out.println("\t};");
+		if (out != System.out) {
+			out.close();
+		}
+	}
+
+	/** Score a difficulty's candidate deals, and return its entry in the generated table. */
+	private static String select(final Difficulty difficulty, final int candidates, final int playouts,
+			final int count, final ExecutorService executor, final int threads) {
+		final long start = System.nanoTime();
+		final DealGenerator dealGenerator = new DealGenerator(difficulty.getNumberOfPairs());
+		final DealAnalyzer analyzer = new DealAnalyzer(playouts);
+		final RandomStream random = new RandomStream(RandomStream.seedFor(SEED, difficulty.ordinal()));
+		final long[] dealSeeds = new long[candidates];
+		final DealAnalysis[] analyses = new DealAnalysis[candidates];
+		for (int i = 0; i < candidates; i++) {
+			dealSeeds[i] = random.nextLong();
+			analyses[i] = analyzer.analyze(DealAnalyzer.deal(dealGenerator, dealSeeds[i]), random.nextLong(),
+					executor, threads);
+		}
+
+		// How widely the deals differ, beside the noise in each deal's own measurements
+		final double[] turns = new double[candidates];
+		final double[] advantages = new double[candidates];
+		double turnsError = 0.0;
+		double advantageError = 0.0;
+		for (int i = 0; i < candidates; i++) {
+			turns[i] = analyses[i].getMeanTurns();
+			advantages[i] = analyses[i].getFirstMoverAdvantage();
+			turnsError += analyses[i].getMeanTurnsError() / candidates;
+			advantageError += analyses[i].getFirstMoverAdvantageError() / candidates;
+		}
+		final double turnsSpread = standardDeviation(turns);
+		final double advantageSpread = standardDeviation(advantages);
+		final double medianTurns = percentile(turns, 0.5);
+		System.out.println(difficulty + ": " + candidates + " deals in " + (System.nanoTime() - start) / 1000000
+				+ " ms");
+		System.out.println(difficulty + ": turns " + spread(turns) + ", deviation " + round(turnsSpread)
+				+ " between deals, error " + round(turnsError) + " within each");
+		System.out.println(difficulty + ": first mover advantage " + spread(advantages) + ", deviation "
+				+ round(advantageSpread) + " between deals, error " + round(advantageError) + " within each");
+
+		// Take the deals closest to a level first move and the median number of turns, each in units of its spread
+		final double[] distances = new double[candidates];
+		final Integer[] order = new Integer[candidates];
+		for (int i = 0; i < candidates; i++) {
+			final double t = (turns[i] - medianTurns) / turnsSpread;
+			final double a = advantages[i] / advantageSpread;
+			distances[i] = t * t + a * a;
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Double.compare(distances[a], distances[b]);
+			}
+		});
+		final int selected = Math.min(count, candidates);
+		final double[] selectedTurns = new double[selected];
+		final double[] selectedAdvantages = new double[selected];
+		final StringBuilder seeds = new StringBuilder();
+		for (int i = 0; i < selected; i++) {
+			final int deal = order[i];
+			selectedTurns[i] = turns[deal];
+			selectedAdvantages[i] = advantages[deal];
+			if (i > 0) {
+				seeds.append((i % 4 == 0) ? ",\n\t\t\t\t\t" : ", ");
+			}
+			seeds.append("0x").append(Long.toHexString(dealSeeds[deal])).append('L');
+		}
+		final String summary = "turns " + spread(selectedTurns) + ", first mover advantage "
+				+ spread(selectedAdvantages);
+		System.out.println(difficulty + ": selected " + summary);
+
+		return "\t\t\t// " + difficulty + ": " + summary + "\n\t\t\t{ " + seeds + " },\n";
+	}
+
+	/** The standard deviation of some values. */
+	private static double standardDeviation(final double[] values) {
+		double sum = 0.0;
+		double sumOfSquares = 0.0;
+		for (final double value : values) {
+			sum += value;
+			sumOfSquares += value * value;
+		}
+		final double mean = sum / values.length;
+		return Math.sqrt(Math.max(sumOfSquares / values.length - mean * mean, 0.0));
+	}
+
+	/** A percentile of some values. */
+	private static double percentile(final double[] values, final double p) {
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.min((int) (p * sorted.length), sorted.length - 1)];
+	}
+
+	/** The 5th, 50th and 95th percentiles of some values. */
+	private static String spread(final double[] values) {
+		return round(percentile(values, 0.05)) + " / " + round(percentile(values, 0.5)) + " / "
+				+ round(percentile(values, 0.95));
+	}
+
+	/** Round a value to three places. */
+	private static double round(final double value) {
+		return Math.round(value * 1000) / 1000.0;
+	}
+}
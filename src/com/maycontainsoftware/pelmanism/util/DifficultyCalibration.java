@@ -0,0 +1,264 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.maycontainsoftware.pelmanism.Card;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.ObservationLog;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.PelmanismAI;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Calibrates each Difficulty's AI intelligence, by searching for the value at which the computer player wins a target
+ * share of games against a human-like reference player: one who always tries for a pair, but holds only a handful of
+ * cards in mind and forgets some of them. The computer keeps the Difficulty's board and memory settings throughout.
+ *
+ * The search is a bisection on intelligence. Each probe plays rounds of games, each round a fixed number of batches
+ * shared out between every core, until the confidence interval on the computer's win rate lies wholly above or below
+ * the target, or is narrow enough to call the probe on target. Batches are seeded from a fixed stream, so the results
+ * do not depend on the number of cores. Ties count as half a win, and who moves first alternates from game to game.
+ *
+ * The calibrated Difficulty table is printed, or written to the file named by the first argument, ready to paste into
+ * Difficulty.
+ *
+ * @author Charlie
+ */
+public class DifficultyCalibration {
+
+	/** The share of games the computer should win at each Difficulty, in order. */
+	private static final double[] TARGET_WIN_RATES = { 0.25, 0.5, 0.75 };
+
+	/** The reference player's intelligence: it always goes for a pair. */
+	private static final float REFERENCE_INTELLIGENCE = 1.0f;
+
+	/** The number of cards the reference player can hold in mind. */
+	private static final int REFERENCE_MEMORY_CAPACITY = 7;
+
+	/** The probability that the reference player forgets each card it remembers, every turn. */
+	private static final float REFERENCE_MEMORY_DECAY = 0.1f;
+
+	/** The normal quantile of the confidence intervals: 99%, two-sided. */
+	private static final double Z = 2.576;
+
+	/** A probe whose confidence interval is narrower than this either way is on target. */
+	private static final double WIN_RATE_TOLERANCE = 0.01;
+
+	/** The search stops once it has narrowed intelligence down to this. */
+	private static final double INTELLIGENCE_PRECISION = 0.005;
+
+	/** The number of games in each batch. */
+	private static final int GAMES_PER_BATCH = 250;
+
+	/** The number of batches in each round, after which the probe is checked. */
+	private static final int BATCHES_PER_ROUND = 8;
+
+	/** The most games played for one probe, after which it is called on target. */
+	private static final int MAX_GAMES = 100000;
+
+	public static void main(final String[] args) throws FileNotFoundException {
+		final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		final StringBuilder table = new StringBuilder();
+		try {
+			final Difficulty[] difficulties = Difficulty.values();
+			for (int i = 0; i < difficulties.length; i++) {
+				// The last constant ends the list
+				final char terminator = (i == difficulties.length - 1) ? ';' : ',';
+				table.append(calibrate(difficulties[i], TARGET_WIN_RATES[i], terminator, executor));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		final PrintStream out = (args.length > 0) ? new PrintStream(args[0]) : System.out;
+		out.println("\t// Generated by DifficultyCalibration: computer win rates against a reference player of"
+				+ " intelligence " + REFERENCE_INTELLIGENCE + ", memory " + REFERENCE_MEMORY_CAPACITY + " and decay "
+				+ REFERENCE_MEMORY_DECAY);
+		out.print(table);
+		if (out != System.out) {
+			out.close();
+		}
+	}
+
+	/** Calibrate a difficulty, and return its line of the generated table, ending with the given terminator. */
+	private static String calibrate(final Difficulty difficulty, final double target, final char terminator,
+			final ExecutorService executor) {
+		final long start = System.nanoTime();
+		final RandomStream random = new RandomStream(1);
+		double low = 0.0;
+		double high = 1.0;
+		float intelligence = 1.0f;
+		Probe last = null;
+		int totalGames = 0;
+		while (high - low > INTELLIGENCE_PRECISION) {
+			intelligence = (float) ((low + high) / 2);
+			last = probe(difficulty, intelligence, target, executor, random);
+			totalGames += last.games;
+			if (last.isAbove(target)) {
+				high = intelligence;
+			} else if (last.isBelow(target)) {
+				low = intelligence;
+			} else {
+				break;
+			}
+		}
+		if (last == null || last.isAbove(target) || last.isBelow(target)) {
+			// The search narrowed down to a bracket rather than stopping on target, so measure its midpoint
+			intelligence = (float) ((low + high) / 2);
+			last = probe(difficulty, intelligence, target, executor, random);
+			totalGames += last.games;
+		}
+		System.out.println(difficulty + ": " + totalGames + " games in " + (System.nanoTime() - start) / 1000000
+				+ " ms");
+
+		return "\t// " + difficulty + ": target " + percent(target) + ", measured " + last + "\n\t" + difficulty + "("
+				+ difficulty.getBoardColumns() + ", " + difficulty.getBoardRows() + ", "
+				+ Math.round(intelligence * 1000) / 1000.0 + "f, " + difficulty.getAiMemoryCapacity() + ", "
+				+ difficulty.getAiMemoryDecay() + "f, AIStrategy." + difficulty.getAiStrategy() + ")" + terminator
+				+ "\n";
+	}
+
+	/** Play games at an intelligence until they are clearly above or below the target, or on it, and report them. */
+	private static Probe probe(final Difficulty difficulty, final float intelligence, final double target,
+			final ExecutorService executor, final RandomStream random) {
+		final Probe probe = new Probe(difficulty, intelligence);
+		while (probe.games < MAX_GAMES && !probe.isAbove(target) && !probe.isBelow(target) && !probe.isNarrow()) {
+			probe.play(executor, random);
+		}
+		System.out.println(difficulty + ": intelligence " + intelligence + " wins " + probe);
+		return probe;
+	}
+
+	/** The games played so far at one intelligence. Scores are counted in half wins, so that ties add up exactly. */
+	private static final class Probe {
+
+		/** The difficulty whose board and memory settings the computer plays with. */
+		private final Difficulty difficulty;
+
+		/** The computer's intelligence. */
+		private final float intelligence;
+
+		/** The number of games played. */
+		private int games;
+
+		/** The computer's total score, in half wins. */
+		private long halfWins;
+
+		/** The sum of the squares of the computer's scores, in half wins. */
+		private long halfWinsSquared;
+
+		Probe(final Difficulty difficulty, final float intelligence) {
+			this.difficulty = difficulty;
+			this.intelligence = intelligence;
+		}
+
+		/** The computer's win rate. */
+		double mean() {
+			return halfWins / 2.0 / games;
+		}
+
+		/** The half width of the confidence interval on the win rate. */
+		double halfWidth() {
+			final double mean = mean();
+			final double variance = halfWinsSquared / 4.0 / games - mean * mean;
+			return Z * Math.sqrt(Math.max(variance, 0.0) / games);
+		}
+
+		/** Whether the computer is clearly stronger than the target. */
+		boolean isAbove(final double target) {
+			return games > 0 && mean() - halfWidth() > target;
+		}
+
+		/** Whether the computer is clearly weaker than the target. */
+		boolean isBelow(final double target) {
+			return games > 0 && mean() + halfWidth() < target;
+		}
+
+		/** Whether the win rate is known closely enough to call the probe on target. */
+		boolean isNarrow() {
+			return games > 0 && halfWidth() < WIN_RATE_TOLERANCE;
+		}
+
+		/** Play a round of batches of games. */
+		void play(final ExecutorService executor, final RandomStream random) {
+			final List<Future<long[]>> batches = new ArrayList<Future<long[]>>();
+			for (int i = 0; i < BATCHES_PER_ROUND; i++) {
+				final long seed = random.nextLong();
+				final int firstGame = games + i * GAMES_PER_BATCH;
+				batches.add(executor.submit(new Callable<long[]>() {
+					@Override
+					public long[] call() {
+						return playBatch(firstGame, seed);
+					}
+				}));
+			}
+			for (final Future<long[]> batch : batches) {
+				final long[] result;
+				try {
+					result = batch.get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while calibrating");
+				} catch (final ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+				halfWins += result[0];
+				halfWinsSquared += result[1];
+			}
+			games += BATCHES_PER_ROUND * GAMES_PER_BATCH;
+		}
+
+		/** Play a batch of games, and return the computer's total score and sum of squared scores, in half wins. */
+		private long[] playBatch(final int firstGame, final long seed) {
+			final RandomStream random = new RandomStream(seed);
+			final long[] result = new long[2];
+			for (int g = 0; g < GAMES_PER_BATCH; g++) {
+				// Alternate who moves first
+				final int computerId = (firstGame + g) % 2;
+				final Pelmanism game = new Pelmanism(2, difficulty.getNumberOfPairs(), random.nextLong());
+				final ObservationLog log = new ObservationLog(game);
+				final PelmanismAI[] players = new PelmanismAI[2];
+				players[computerId] = new PelmanismAI(game, intelligence, difficulty.getAiMemoryCapacity(),
+						difficulty.getAiMemoryDecay(), log, random.nextLong());
+				players[1 - computerId] = new PelmanismAI(game, REFERENCE_INTELLIGENCE, REFERENCE_MEMORY_CAPACITY,
+						REFERENCE_MEMORY_DECAY, log, random.nextLong());
+				while (!game.isGameOver()) {
+					final PelmanismAI player = players[game.getCurrentPlayerId()];
+					player.updateCards();
+					final Card first = player.pickFirstCard();
+					for (final PelmanismAI p : players) {
+						p.cardSeen(first);
+					}
+					final Card second = player.pickSecondCard();
+					for (final PelmanismAI p : players) {
+						p.cardSeen(second);
+					}
+					game.turn(first, second);
+				}
+				final int margin = game.getPlayerScore(computerId) - game.getPlayerScore(1 - computerId);
+				final int score = (margin > 0) ? 2 : (margin == 0) ? 1 : 0;
+				result[0] += score;
+				result[1] += score * score;
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return percent(mean()) + " +/- " + percent(halfWidth()) + " over " + games + " games";
+		}
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
@@ -0,0 +1,100 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.maycontainsoftware.pelmanism.AIStrategy;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Experiment;
+import com.maycontainsoftware.pelmanism.ExperimentResult;
+import com.maycontainsoftware.pelmanism.Simulation;
+import com.maycontainsoftware.pelmanism.SimulationResult;
+import com.maycontainsoftware.pelmanism.StoppingRule;
+
+/**
+ * Runs an Experiment between two computer players on every core, printing the results after every look, then the
+ * verdict, the games it took, and the games a test looked at only once would have needed for the same guarantees.
+ *
+ * Arguments: a Strategy:Difficulty for each seat, then the rule: "ci confidence halfWidth" or "sprt edge alpha beta",
+ * for example "Simple:Hard Simple:Medium sprt 0.05 0.05 0.05". Games are played on the Hard board. With no arguments,
+ * Hard is compared with Medium by both rules.
+ *
+ * @author Charlie
+ */
+public class ExperimentRunner {
+
+	/** The seed every run starts from, so that runs can be repeated. */
+	private static final long SEED = 1;
+
+	/** The most games to play. */
+	private static final long MAX_GAMES = 10000000;
+
+	/** How to run the tool. */
+	private static final String USAGE = "Usage: ExperimentRunner [Strategy:Difficulty [Strategy:Difficulty"
+			+ " [ci confidence halfWidth | sprt edge alpha beta]]]";
+
+	public static void main(final String[] args) {
+		// Check the rule's arguments before playing anything
+		if (args.length > 2) {
+			final boolean ci = args[2].equals("ci") && args.length == 5;
+			final boolean sprt = args[2].equals("sprt") && args.length == 6;
+			if (!ci && !sprt) {
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+		}
+
+		final String[] first = ((args.length > 0) ? args[0] : "Simple:Hard").split(":");
+		final String[] second = ((args.length > 1) ? args[1] : "Simple:Medium").split(":");
+		final Simulation simulation = new Simulation(Difficulty.Hard.getNumberOfPairs(), new AIStrategy[] {
+				AIStrategy.valueOf(first[0]), AIStrategy.valueOf(second[0]) }, new Difficulty[] {
+				Difficulty.valueOf(first[1]), Difficulty.valueOf(second[1]) });
+
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			if (args.length > 2) {
+				final double a = Double.parseDouble(args[3]);
+				final double b = Double.parseDouble(args[4]);
+				if (args[2].equals("ci")) {
+					run(simulation, StoppingRule.confidenceInterval(a, b), executor, threads);
+				} else if (args[2].equals("sprt")) {
+					run(simulation, StoppingRule.sequentialProbabilityRatio(a, b, Double.parseDouble(args[5])),
+							executor, threads);
+				}
+			} else {
+				run(simulation, StoppingRule.confidenceInterval(0.99, 0.01), executor, threads);
+				run(simulation, StoppingRule.sequentialProbabilityRatio(0.02, 0.01, 0.01), executor, threads);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** Run an experiment and report it. */
+	private static void run(final Simulation simulation, final StoppingRule rule, final ExecutorService executor,
+			final int threads) {
+		System.out.println("Stopping by " + rule + ":");
+		final ExperimentResult result = new Experiment(simulation, rule, MAX_GAMES).run(SEED, executor, threads,
+				new Experiment.Listener() {
+					@Override
+					public void looked(final SimulationResult soFar) {
+						System.out.println("  " + soFar.getGames() + " games: first wins "
+								+ percent(soFar.getWinRate(0)) + ", second wins " + percent(soFar.getWinRate(1))
+								+ ", ties " + percent((double) soFar.getTies() / soFar.getGames()));
+					}
+				});
+
+		final long games = result.getResult().getGames();
+		final long fixed = rule.getFixedSampleSize();
+		System.out.println(result.getVerdict() + " after " + games + " games in " + result.getLooks() + " looks, "
+				+ result.getResult().getNanos() / 1000000 + " ms; first scores " + percent(result.getScore()));
+		System.out.println("A fixed-size test would need " + fixed + " games: "
+				+ Math.round((double) fixed / games * 10) / 10.0 + "x as many");
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
@@ -0,0 +1,127 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Benchmark of forking the Pelmanism game model and playing the fork out to the end of the game, as a look-ahead search
+ * would. Each game is first played half way through, then repeatedly forked and played out by two players with perfect
+ * memory.
+ *
+ * @author Charlie
+ */
+public class ForkBenchmark {
+
+	public static void main(final String[] args) {
+		benchmark("Hard", Difficulty.Hard.getNumberOfPairs());
+		benchmark("1000 pairs", 1000);
+	}
+
+	/** Benchmark forking and playing out a game with the given number of pairs. */
+	private static void benchmark(final String name, final int numberOfPairs) {
+
+		final RandomStream random = new RandomStream(1);
+		final Playout playout = new Playout(numberOfPairs * 2);
+
+		// Play the game half way through
+		final Pelmanism game = new Pelmanism(2, numberOfPairs, random.nextLong());
+		playout.play(game, random, numberOfPairs / 2);
+
+		// Warm up, then time just the forks
+		for (int i = 0; i < 100000; i++) {
+			game.fork();
+		}
+		long start = System.nanoTime();
+		final int forks = 1000000;
+		for (int i = 0; i < forks; i++) {
+			game.fork();
+		}
+		final double forkNanos = (System.nanoTime() - start) / (double) forks;
+
+		// Warm up, then time forks with playouts
+		final int playouts = Math.max(1000, 2000000 / numberOfPairs);
+		for (int i = 0; i < playouts; i++) {
+			playout.play(game.fork(), random, numberOfPairs);
+		}
+		start = System.nanoTime();
+		int turns = 0;
+		for (int i = 0; i < playouts; i++) {
+			final Pelmanism fork = game.fork();
+			playout.play(fork, random, numberOfPairs);
+			turns += fork.getTurnCount() - game.getTurnCount();
+		}
+		final double playoutNanos = (System.nanoTime() - start) / (double) playouts;
+
+		System.out.println(name + ": fork " + Math.round(forkNanos) + " ns, fork and playout "
+				+ Math.round(playoutNanos / 100) / 10.0 + " us (" + (turns / playouts) + " turns)");
+	}
+
+	/** Plays a game on by turning over cards in a random order, with every player remembering every card seen. */
+	private static class Playout {
+
+		/** The card seen for each pair id, or -1 if neither card has been seen. */
+		private final int[] seenCardByPairId;
+
+		/** Card ids in the order they will be turned over. */
+		private final int[] order;
+
+		/** Known pairs, as the card id of each card of the pair. */
+		private final int[] knownPairs;
+
+		Playout(final int numberOfCards) {
+			seenCardByPairId = new int[numberOfCards / 2];
+			order = new int[numberOfCards];
+			knownPairs = new int[numberOfCards];
+		}
+
+		/** Play until the given number of pairs have been found, or the game is over. */
+		void play(final Pelmanism game, final RandomStream random, final int numberOfPairs) {
+			final int n = game.getNumberOfCards();
+			for (int i = 0; i < seenCardByPairId.length; i++) {
+				seenCardByPairId[i] = -1;
+			}
+			for (int i = 0; i < n; i++) {
+				final int j = random.nextInt(i + 1);
+				order[i] = order[j];
+				order[j] = i;
+			}
+			int next = 0;
+			int known = 0;
+			final int target = game.getNumberOfPairs() - game.getPairsRemaining() + numberOfPairs;
+			while (!game.isGameOver() && game.getNumberOfPairs() - game.getPairsRemaining() < target) {
+				if (known > 0) {
+					// Take a known pair
+					known -= 2;
+					game.turn(knownPairs[known], knownPairs[known + 1]);
+					continue;
+				}
+				// Turn over an unseen card
+				while (!game.isCardPickable(order[next])) {
+					next++;
+				}
+				final int first = order[next++];
+				final int firstPairId = game.getPairId(first);
+				if (seenCardByPairId[firstPairId] >= 0) {
+					game.turn(first, seenCardByPairId[firstPairId]);
+					continue;
+				}
+				seenCardByPairId[firstPairId] = first;
+				// Turn over another unseen card
+				while (!game.isCardPickable(order[next])) {
+					next++;
+				}
+				final int second = order[next++];
+				final int secondPairId = game.getPairId(second);
+				if (secondPairId != firstPairId && seenCardByPairId[secondPairId] >= 0) {
+					// Found the partner of a card seen earlier; take the pair next turn
+					knownPairs[known++] = second;
+					knownPairs[known++] = seenCardByPairId[secondPairId];
+				} else {
+					seenCardByPairId[secondPairId] = second;
+				}
+				game.turn(first, second);
+			}
+		}
+	}
+}
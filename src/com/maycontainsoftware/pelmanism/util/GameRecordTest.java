@@ -0,0 +1,86 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import com.maycontainsoftware.pelmanism.Card;
+import com.maycontainsoftware.pelmanism.GameRecordReader;
+import com.maycontainsoftware.pelmanism.GameRecordWriter;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+
+/**
+ * Test application for game records: records random games, replays them and checks that the replay matches, and checks
+ * that a game rewound while it is being recorded is refused rather than recorded wrongly.
+ *
+ * @author Charlie
+ */
+public class GameRecordTest {
+
+	public static void main(final String[] args) throws IOException {
+		final Random r = new Random();
+
+		// Record and replay some games, syncing after every turn
+		for (int game = 0; game < 100; game++) {
+			final Pelmanism p = new Pelmanism(2, 16, r.nextLong());
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final GameRecordWriter writer = new GameRecordWriter(Channels.newChannel(bytes), p, 0);
+			while (!p.isGameOver()) {
+				playRandomTurn(p, r);
+				writer.sync();
+			}
+			writer.close();
+
+			final Pelmanism replayed = GameRecordReader.replay(Channels.newChannel(new ByteArrayInputStream(bytes
+					.toByteArray())));
+			if (replayed.getTurnCount() != p.getTurnCount()) {
+				throw new IllegalStateException("Replay has " + replayed.getTurnCount() + " turns, not "
+						+ p.getTurnCount());
+			}
+			for (int i = 0; i < p.getTurnCount(); i++) {
+				if (replayed.getTurnFirstPickId(i) != p.getTurnFirstPickId(i)
+						|| replayed.getTurnSecondPickId(i) != p.getTurnSecondPickId(i)) {
+					throw new IllegalStateException("Replay differs at turn " + i);
+				}
+			}
+		}
+		System.out.println("Recorded games replay as played");
+
+		// Rewind and then play on past the turns already recorded, between syncs
+		final Pelmanism p = new Pelmanism(2, 16, r.nextLong());
+		final GameRecordWriter writer = new GameRecordWriter(Channels.newChannel(new ByteArrayOutputStream()), p, 0);
+		for (int i = 0; i < 5; i++) {
+			playRandomTurn(p, r);
+		}
+		writer.sync();
+		p.rewind(3);
+		for (int i = 0; i < 5 && !p.isGameOver(); i++) {
+			playRandomTurn(p, r);
+		}
+		boolean refused = false;
+		try {
+			writer.sync();
+		} catch (final IllegalStateException e) {
+			refused = true;
+			System.out.println("Rewound game refused: " + e.getMessage());
+		}
+		if (!refused) {
+			throw new IllegalStateException("Rewound game was recorded after " + p.getTurnCount() + " turns");
+		}
+	}
+
+	/** Play a turn of two random cards still on the board. */
+	private static void playRandomTurn(final Pelmanism p, final Random r) {
+		Card card1 = p.getCard(r.nextInt(p.getNumberOfCards()));
+		while (card1.isMatched()) {
+			card1 = p.getCard(r.nextInt(p.getNumberOfCards()));
+		}
+		Card card2 = p.getCard(r.nextInt(p.getNumberOfCards()));
+		while (card2.isMatched() || card1 == card2) {
+			card2 = p.getCard(r.nextInt(p.getNumberOfCards()));
+		}
+		p.turn(card1, card2);
+	}
+}
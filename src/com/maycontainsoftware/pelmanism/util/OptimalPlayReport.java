@@ -0,0 +1,124 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.maycontainsoftware.pelmanism.Card;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.OptimalPolicy;
+import com.maycontainsoftware.pelmanism.OptimalSolver;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.PelmanismAI;
+import com.maycontainsoftware.pelmanism.PerfectAI;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Solves the game exactly for every Difficulty, and reports how far the computer player is from perfect play. For each
+ * board, the first player's chance of winning with perfect play is compared with the rate at which the perfect player
+ * wins against itself, as a check on the solution, and then the perfect player plays the difficulty's computer player.
+ *
+ * If a file name is given, the solved policy table is exported to it.
+ *
+ * @author Charlie
+ */
+public class OptimalPlayReport {
+
+	/** The number of games to play in each match. */
+	private static final int GAMES = 20000;
+
+	public static void main(final String[] args) throws IOException {
+
+		int maxPairs = 0;
+		for (final Difficulty difficulty : Difficulty.values()) {
+			maxPairs = Math.max(maxPairs, difficulty.getNumberOfPairs());
+		}
+		final long start = System.nanoTime();
+		final OptimalPolicy policy = OptimalSolver.solve(maxPairs);
+		System.out.println("Solved " + policy.getNumberOfStates() + " states, up to " + maxPairs + " pairs, in "
+				+ (System.nanoTime() - start) / 1000 + " us");
+
+		final RandomStream random = new RandomStream(1);
+		for (final Difficulty difficulty : Difficulty.values()) {
+			final int pairs = difficulty.getNumberOfPairs();
+			final float firstMover = policy.getWinProbability(pairs, pairs * 2, 0);
+			final double selfPlay = play(difficulty, policy, null, random);
+			final double againstAI = play(difficulty, policy, difficulty, random);
+			System.out.println(difficulty + ": first player wins " + percent(firstMover) + " with perfect play ("
+					+ percent(selfPlay) + " in self-play), perfect player wins " + percent(againstAI)
+					+ " against the computer player");
+		}
+
+		if (args.length > 0) {
+			final OutputStream out = new FileOutputStream(args[0]);
+			try {
+				policy.write(out);
+			} finally {
+				out.close();
+			}
+			System.out.println("Policy table written to " + args[0]);
+		}
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+
+	/**
+	 * Play games with a perfect first player, and return the rate at which it wins, counting ties as half a win.
+	 *
+	 * @param opponent
+	 *            The difficulty of the computer player to play against, or null to play the perfect player.
+	 */
+	private static double play(final Difficulty difficulty, final OptimalPolicy policy, final Difficulty opponent,
+			final RandomStream random) {
+		double wins = 0.0;
+		for (int g = 0; g < GAMES; g++) {
+			final Pelmanism game = new Pelmanism(2, difficulty.getNumberOfPairs(), random.nextLong());
+			// Swap who goes first against the computer player, so neither side has the advantage of moving first
+			final int perfectId = (opponent == null) ? 0 : g % 2;
+			final PerfectAI perfect = new PerfectAI(game, policy, random.nextLong());
+			final PerfectAI perfectOpponent = (opponent == null) ? new PerfectAI(game, policy, random.nextLong())
+					: null;
+			final PelmanismAI ai = (opponent == null) ? null : new PelmanismAI(opponent, game, random.nextLong());
+			while (!game.isGameOver()) {
+				final Card first;
+				final Card second;
+				if (game.getCurrentPlayerId() == perfectId) {
+					perfect.updateCards();
+					first = perfect.pickFirstCard();
+					see(first, perfect, perfectOpponent, ai);
+					second = perfect.pickSecondCard();
+				} else if (ai == null) {
+					perfectOpponent.updateCards();
+					first = perfectOpponent.pickFirstCard();
+					see(first, perfect, perfectOpponent, ai);
+					second = perfectOpponent.pickSecondCard();
+				} else {
+					ai.updateCards();
+					first = ai.pickFirstCard();
+					see(first, perfect, perfectOpponent, ai);
+					second = ai.pickSecondCard();
+				}
+				see(second, perfect, perfectOpponent, ai);
+				game.turn(first, second);
+			}
+			final int margin = game.getPlayerScore(perfectId) - game.getPlayerScore(1 - perfectId);
+			wins += (margin > 0) ? 1.0 : (margin == 0) ? 0.5 : 0.0;
+		}
+		return wins / GAMES;
+	}
+
+	/** Show a card to every player. */
+	private static void see(final Card card, final PerfectAI perfect, final PerfectAI perfectOpponent,
+			final PelmanismAI ai) {
+		perfect.cardSeen(card);
+		if (perfectOpponent != null) {
+			perfectOpponent.cardSeen(card);
+		}
+		if (ai != null) {
+			ai.cardSeen(card);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.maycontainsoftware.pelmanism.DealGenerator;
+import com.maycontainsoftware.pelmanism.RandomStream;
+import com.maycontainsoftware.pelmanism.SharedBoard;
+
+/**
+ * Stress test of the shared board: hundreds of players, each on its own thread, play one 10,000 card board until every
+ * pair has been found. Checks that every pair was scored exactly once, and that the scores add up.
+ *
+ * @author Charlie
+ */
+public class SharedBoardStressTest {
+
+	/** The number of concurrent players. */
+	private static final int PLAYERS = 300;
+
+	/** The number of pairs on the board. */
+	private static final int PAIRS = 5000;
+
+	public static void main(final String[] args) throws InterruptedException {
+
+		final long seed = RandomStream.randomSeed();
+		final SharedBoard board = new SharedBoard(PLAYERS, new DealGenerator(PAIRS), seed);
+
+		// Start every player at once
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(PLAYERS);
+		final Player[] players = new Player[PLAYERS];
+		for (int i = 0; i < PLAYERS; i++) {
+			players[i] = new Player(board, i, new RandomStream(RandomStream.seedFor(seed, i)), start);
+			executor.execute(players[i]);
+		}
+		final long startTime = System.nanoTime();
+		start.countDown();
+		executor.shutdown();
+		if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+			throw new AssertionError("Players did not finish");
+		}
+		final long elapsed = System.nanoTime() - startTime;
+
+		// Every pair found, by exactly one player, who scored it
+		final int[] pairsFoundBy = new int[PLAYERS];
+		for (int pairId = 0; pairId < PAIRS; pairId++) {
+			final int finder = board.getPairFinder(pairId);
+			if (finder < 0) {
+				throw new AssertionError("Pair " + pairId + " was not found");
+			}
+			pairsFoundBy[finder]++;
+		}
+		int totalScore = 0;
+		long totalTurns = 0;
+		for (int playerId = 0; playerId < PLAYERS; playerId++) {
+			if (board.getPlayerScore(playerId) != pairsFoundBy[playerId]) {
+				throw new AssertionError("Player " + playerId + " scored " + board.getPlayerScore(playerId)
+						+ " but found " + pairsFoundBy[playerId] + " pairs");
+			}
+			totalScore += board.getPlayerScore(playerId);
+			totalTurns += players[playerId].turns;
+		}
+		if (totalScore != PAIRS || !board.isGameOver()) {
+			throw new AssertionError("Total score " + totalScore + " for " + PAIRS + " pairs");
+		}
+		for (int cardId = 0; cardId < board.getNumberOfCards(); cardId++) {
+			if (!board.isMatched(cardId)) {
+				throw new AssertionError("Card " + cardId + " was not matched");
+			}
+		}
+
+		System.out.println(PLAYERS + " players found " + PAIRS + " pairs in " + totalTurns + " turns, "
+				+ (elapsed / 1000000) + " ms");
+	}
+
+	/**
+	 * A player that remembers every card it has seen, and plays until the board is cleared. Any claim that loses to
+	 * another player is simply abandoned.
+	 */
+	private static class Player implements Runnable {
+
+		private final SharedBoard board;
+
+		private final int playerId;
+
+		private final RandomStream random;
+
+		/** Released when every player should start. */
+		private final CountDownLatch start;
+
+		/** The card last seen with each pair id, or -1. */
+		private final int[] seen;
+
+		/** The cards not yet seen to be matched, so that searches for a free card get shorter as the board clears. */
+		private final int[] onBoard;
+
+		/** The number of valid entries in onBoard. */
+		private int onBoardCount;
+
+		/** The number of turns played. */
+		long turns;
+
+		Player(final SharedBoard board, final int playerId, final RandomStream random, final CountDownLatch start) {
+			this.board = board;
+			this.playerId = playerId;
+			this.random = random;
+			this.start = start;
+			seen = new int[board.getNumberOfPairs()];
+			for (int i = 0; i < seen.length; i++) {
+				seen[i] = -1;
+			}
+			onBoard = new int[board.getNumberOfCards()];
+			for (int i = 0; i < onBoard.length; i++) {
+				onBoard[i] = i;
+			}
+			onBoardCount = onBoard.length;
+		}
+
+		@Override
+		public void run() {
+			try {
+				start.await();
+			} catch (final InterruptedException e) {
+				return;
+			}
+			while (!board.isGameOver()) {
+				final int first = claimAny(-1);
+				if (first < 0) {
+					// Every remaining card is held by someone else; try again
+					Thread.yield();
+					continue;
+				}
+				final int pairId = board.getPairId(playerId, first);
+
+				// Go for the partner if we have seen it, otherwise any other card
+				int second = seen[pairId];
+				if (second < 0 || second == first || !board.claim(playerId, second)) {
+					second = claimAny(first);
+				}
+				if (second < 0) {
+					board.release(playerId, first);
+					Thread.yield();
+					continue;
+				}
+				seen[pairId] = first;
+				seen[board.getPairId(playerId, second)] = second;
+				board.turn(playerId, first, second);
+				turns++;
+			}
+		}
+
+		/**
+		 * Claim a free card, searching onwards from a random card, or return -1 if none can be claimed. Cards found to
+		 * be matched are swap-removed from onBoard.
+		 */
+		private int claimAny(final int exclude) {
+			if (onBoardCount == 0) {
+				return -1;
+			}
+			int i = random.nextInt(onBoardCount);
+			for (int tried = 0; tried < onBoardCount;) {
+				final int cardId = onBoard[i];
+				if (board.isMatched(cardId)) {
+					onBoard[i] = onBoard[--onBoardCount];
+					if (i == onBoardCount) {
+						i = 0;
+					}
+					continue;
+				}
+				if (cardId != exclude && board.claim(playerId, cardId)) {
+					return cardId;
+				}
+				tried++;
+				i = (i + 1 == onBoardCount) ? 0 : i + 1;
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.maycontainsoftware.pelmanism.AIStrategy;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Simulation;
+import com.maycontainsoftware.pelmanism.SimulationCoordinator;
+import com.maycontainsoftware.pelmanism.SimulationResult;
+import com.maycontainsoftware.pelmanism.SimulationWorker;
+
+/**
+ * Runs a Simulation of Hard against Hard on the Hard board across several processes on this host.
+ *
+ * Arguments:
+ * "local workers games [kill]" starts a coordinator and that many worker processes, killing one of them partway
+ * through if asked, then plays the same games in this process and checks that the results are the same;
+ * "coordinator port games" starts only a coordinator, for workers started by hand;
+ * "worker host port [threads]" starts a worker.
+ * With no arguments, two workers play 200000 games with one killed partway through.
+ *
+ * @author Charlie
+ */
+public class SimulationCluster {
+
+	/** The seed every run starts from, so that runs can be repeated. */
+	private static final long SEED = 1;
+
+	/** How long to wait before killing a worker, in milliseconds. */
+	private static final long KILL_DELAY_MILLIS = 2000;
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		final String mode = (args.length > 0) ? args[0] : "local";
+		if (mode.equals("worker")) {
+			final int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime()
+					.availableProcessors();
+			final int batches = new SimulationWorker(args[1], Integer.parseInt(args[2]), threads).run();
+			System.out.println("Played " + batches + " batches");
+		} else if (mode.equals("coordinator")) {
+			final ServerSocket server = new ServerSocket(Integer.parseInt(args[1]), 50, InetAddress.getByName(null));
+			report(coordinate(createSimulation(), Long.parseLong(args[2]), server));
+		} else {
+			final int workers = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+			final long games = (args.length > 2) ? Long.parseLong(args[2]) : 200000;
+			final boolean kill = (args.length > 3) ? args[3].equals("kill") : args.length == 0;
+			local(workers, games, kill);
+		}
+	}
+
+	/** The simulation every mode plays. */
+	private static Simulation createSimulation() {
+		return new Simulation(Difficulty.Hard.getNumberOfPairs(), new AIStrategy[] { AIStrategy.Simple,
+				AIStrategy.Simple }, new Difficulty[] { Difficulty.Hard, Difficulty.Hard });
+	}
+
+	/** Run a coordinator to the end of a run. */
+	private static SimulationResult coordinate(final Simulation simulation, final long games,
+			final ServerSocket server) throws InterruptedException {
+		System.out.println("Coordinator listening on port " + server.getLocalPort());
+		final SimulationCoordinator coordinator = new SimulationCoordinator(simulation, games, SEED,
+				SimulationCoordinator.DEFAULT_CHUNKS_PER_BATCH, server);
+		final SimulationResult result = coordinator.run();
+		System.out.println("Batches reissued after a worker was lost: " + coordinator.getReissued()
+				+ ", taken over from a slower worker: " + coordinator.getTaken());
+		return result;
+	}
+
+	/** Run a coordinator and worker processes on this host, and check the results against this process's own. */
+	private static void local(final int workers, final long games, final boolean kill) throws IOException,
+			InterruptedException {
+		final Simulation simulation = createSimulation();
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName(null));
+		final List<Process> processes = new ArrayList<Process>();
+		for (int i = 0; i < workers; i++) {
+			processes.add(startWorker(i, server.getLocalPort()));
+		}
+		if (kill) {
+			final Process victim = processes.get(0);
+			final Thread killer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(KILL_DELAY_MILLIS);
+					} catch (final InterruptedException e) {
+						return;
+					}
+					System.out.println("Killing worker 0");
+					victim.destroy();
+				}
+			});
+			killer.setDaemon(true);
+			killer.start();
+		}
+
+		final SimulationResult shared = coordinate(simulation, games, server);
+		report(shared);
+		for (final Process process : processes) {
+			process.waitFor();
+		}
+
+		System.out.println("Playing the same games in this process...");
+		final SimulationResult single = simulation.run(games, SEED);
+		boolean same = shared.getGames() == single.getGames() && shared.getTies() == single.getTies()
+				&& shared.getMeanTurns() == single.getMeanTurns();
+		for (int seat = 0; seat < simulation.getNumberOfSeats(); seat++) {
+			same &= shared.getWins(seat) == single.getWins(seat) && shared.getMeanScore(seat) == single.getMeanScore(seat);
+		}
+		for (int turns = 0; turns <= single.getTurnPercentile(1.0); turns++) {
+			same &= shared.getGamesWithTurns(turns) == single.getGamesWithTurns(turns);
+		}
+		System.out.println(same ? "Results are identical" : "RESULTS DIFFER");
+		report(single);
+	}
+
+	/** Start a worker process on one thread, echoing its output. */
+	private static Process startWorker(final int index, final int port) throws IOException {
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				SimulationCluster.class.getName(), "worker", "localhost", Integer.toString(port), "1");
+		builder.redirectErrorStream(true);
+		final Process process = builder.start();
+		echo("Worker " + index + ": ", process.getInputStream());
+		return process;
+	}
+
+	/** Echo a stream's lines, with a prefix, on a thread of its own. */
+	private static void echo(final String prefix, final InputStream stream) {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+				try {
+					for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+						System.out.println(prefix + line);
+					}
+				} catch (final IOException e) {
+					// The process has gone
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Report a result. */
+	private static void report(final SimulationResult result) {
+		System.out.println(result.getGames() + " games in " + result.getNanos() / 1000000 + " ms: "
+				+ Math.round(result.getGamesPerSecond()) + " games per second, seat 0 wins "
+				+ percent(result.getWinRate(0)) + ", seat 1 wins " + percent(result.getWinRate(1)) + ", "
+				+ Math.round(result.getMeanTurns() * 100) / 100.0 + " turns");
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
@@ -0,0 +1,69 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.maycontainsoftware.pelmanism.AIStrategy;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Simulation;
+import com.maycontainsoftware.pelmanism.SimulationResult;
+
+/**
+ * Runs a Simulation on every core and reports each seat's results, the spread of game lengths and the games played per
+ * second.
+ *
+ * Arguments: the number of games, the number of pairs, then a Strategy:Difficulty for each seat, for example
+ * "1000000 15 Simple:Hard Simple:Easy". With no arguments, a million games of Hard against Hard are played on the Hard
+ * board.
+ *
+ * @author Charlie
+ */
+public class SimulationRunner {
+
+	/** The seed every run starts from, so that runs can be repeated. */
+	private static final long SEED = 1;
+
+	public static void main(final String[] args) {
+		final long games = (args.length > 0) ? Long.parseLong(args[0]) : 1000000;
+		final int numberOfPairs = (args.length > 1) ? Integer.parseInt(args[1]) : Difficulty.Hard.getNumberOfPairs();
+		final int seats = (args.length > 2) ? args.length - 2 : 2;
+		final AIStrategy[] strategies = new AIStrategy[seats];
+		final Difficulty[] difficulties = new Difficulty[seats];
+		for (int seat = 0; seat < seats; seat++) {
+			if (args.length > 2) {
+				final String[] parts = args[seat + 2].split(":");
+				strategies[seat] = AIStrategy.valueOf(parts[0]);
+				difficulties[seat] = Difficulty.valueOf(parts[1]);
+			} else {
+				strategies[seat] = AIStrategy.Simple;
+				difficulties[seat] = Difficulty.Hard;
+			}
+		}
+
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final SimulationResult result;
+		try {
+			result = new Simulation(numberOfPairs, strategies, difficulties).run(games, SEED, executor, threads);
+		} finally {
+			executor.shutdown();
+		}
+
+		System.out.println(result.getGames() + " games of " + numberOfPairs + " pairs on " + threads + " threads: "
+				+ Math.round(result.getGamesPerSecond()) + " games per second");
+		for (int seat = 0; seat < seats; seat++) {
+			System.out.println("Seat " + seat + " (" + strategies[seat] + ":" + difficulties[seat] + "): wins "
+					+ percent(result.getWinRate(seat)) + ", mean score " + Math.round(result.getMeanScore(seat) * 100)
+					/ 100.0);
+		}
+		System.out.println("Ties " + percent((double) result.getTies() / result.getGames()));
+		System.out.println("Turns: mean " + Math.round(result.getMeanTurns() * 10) / 10.0 + ", p50 "
+				+ result.getTurnPercentile(0.5) + ", p90 " + result.getTurnPercentile(0.9) + ", p99 "
+				+ result.getTurnPercentile(0.99) + ", max " + result.getTurnPercentile(1.0));
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
@@ -0,0 +1,119 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.util.Arrays;
+
+import com.maycontainsoftware.pelmanism.AIStrategy;
+import com.maycontainsoftware.pelmanism.Card;
+import com.maycontainsoftware.pelmanism.ComputerPlayer;
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.RandomStream;
+
+/**
+ * Plays every computer player strategy against every other on the Hard board, and reports each strategy's win rate
+ * against each other strategy, and the percentiles of the time it takes to make a move. A move is everything one player
+ * does in a turn: updating its knowledge and picking both cards. Which strategy moves first alternates from game to
+ * game, and ties count as half a win.
+ *
+ * @author Charlie
+ */
+public class StrategyBenchmark {
+
+	/** The number of games to play between each pair of strategies. */
+	private static final int GAMES = 200;
+
+	/** The difficulty to play at. */
+	private static final Difficulty DIFFICULTY = Difficulty.Hard;
+
+	public static void main(final String[] args) {
+		final AIStrategy[] strategies = AIStrategy.values();
+		final int n = strategies.length;
+		final double[][] wins = new double[n][n];
+		final long[][] moveNanos = new long[n][];
+		final int[] moves = new int[n];
+		for (int i = 0; i < n; i++) {
+			moveNanos[i] = new long[1024];
+		}
+
+		final RandomStream random = new RandomStream(1);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				final int[] ids = { i, j };
+				for (int g = 0; g < GAMES; g++) {
+					// Alternate who moves first
+					final int first = g % 2;
+					final Pelmanism game = new Pelmanism(2, DIFFICULTY.getNumberOfPairs(), random.nextLong());
+					final ComputerPlayer[] players = new ComputerPlayer[2];
+					for (int p = 0; p < 2; p++) {
+						players[p] = strategies[ids[(first + p) % 2]].create(DIFFICULTY, game, random.nextLong());
+					}
+					while (!game.isGameOver()) {
+						final int playerId = game.getCurrentPlayerId();
+						final int s = ids[(first + playerId) % 2];
+						final ComputerPlayer player = players[playerId];
+
+						// Time the move, leaving out showing the cards to the other player
+						final long start = System.nanoTime();
+						player.updateCards();
+						final Card firstCard = player.pickFirstCard();
+						long nanos = System.nanoTime() - start;
+						for (final ComputerPlayer p : players) {
+							p.cardSeen(firstCard);
+						}
+						final long secondStart = System.nanoTime();
+						final Card secondCard = player.pickSecondCard();
+						nanos += System.nanoTime() - secondStart;
+						for (final ComputerPlayer p : players) {
+							p.cardSeen(secondCard);
+						}
+						game.turn(firstCard, secondCard);
+
+						if (moves[s] == moveNanos[s].length) {
+							moveNanos[s] = Arrays.copyOf(moveNanos[s], moves[s] * 2);
+						}
+						moveNanos[s][moves[s]++] = nanos;
+					}
+					final int margin = game.getPlayerScore(0) - game.getPlayerScore(1);
+					final double firstScore = (margin > 0) ? 1.0 : (margin == 0) ? 0.5 : 0.0;
+					wins[ids[first]][ids[1 - first]] += firstScore;
+					wins[ids[1 - first]][ids[first]] += 1.0 - firstScore;
+				}
+			}
+		}
+
+		System.out.println("Win rates on " + DIFFICULTY + ", " + GAMES + " games per pairing (row against column)");
+		for (int i = 0; i < n; i++) {
+			final StringBuilder row = new StringBuilder(pad(strategies[i].toString()));
+			for (int j = 0; j < n; j++) {
+				row.append(pad((i == j) ? "-" : Math.round(wins[i][j] * 1000 / GAMES) / 10.0 + "%"));
+			}
+			System.out.println(row);
+		}
+
+		System.out.println("Move latency, us: p50, p90, p99, max");
+		for (int i = 0; i < n; i++) {
+			final long[] sorted = Arrays.copyOf(moveNanos[i], moves[i]);
+			Arrays.sort(sorted);
+			System.out.println(pad(strategies[i].toString()) + pad(micros(sorted, 0.5)) + pad(micros(sorted, 0.9))
+					+ pad(micros(sorted, 0.99)) + pad(micros(sorted, 1.0)));
+		}
+	}
+
+	/** A percentile of sorted times, in microseconds. */
+	private static String micros(final long[] sorted, final double percentile) {
+		if (sorted.length == 0) {
+			return "-";
+		}
+		final int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+		return Long.toString(sorted[Math.max(0, index)] / 1000);
+	}
+
+	/** Pad a string out to a column. */
+	private static String pad(final String s) {
+		final StringBuilder padded = new StringBuilder(s);
+		while (padded.length() < 12) {
+			padded.append(' ');
+		}
+		return padded.toString();
+	}
+}
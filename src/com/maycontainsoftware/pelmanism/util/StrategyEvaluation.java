@@ -0,0 +1,48 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import com.maycontainsoftware.pelmanism.Difficulty;
+import com.maycontainsoftware.pelmanism.MarkovEvaluator;
+
+/**
+ * Evaluates the computer player's strategy at every Difficulty's intelligence, exactly, against a reference opponent
+ * that always goes for a pair, on each Difficulty's board and on a 100 pair board. Each result is averaged over who moves
+ * first, and timed.
+ *
+ * @author Charlie
+ */
+public class StrategyEvaluation {
+
+	/** The reference opponent's intelligence. */
+	private static final double REFERENCE_INTELLIGENCE = 1.0;
+
+	public static void main(final String[] args) {
+		for (final Difficulty difficulty : Difficulty.values()) {
+			evaluate(difficulty, difficulty.getNumberOfPairs());
+		}
+		for (final Difficulty difficulty : Difficulty.values()) {
+			evaluate(difficulty, 100);
+		}
+	}
+
+	/** Evaluate a difficulty's intelligence on a board with a number of pairs. */
+	private static void evaluate(final Difficulty difficulty, final int numberOfPairs) {
+		final MarkovEvaluator evaluator = new MarkovEvaluator(numberOfPairs);
+		final long start = System.nanoTime();
+		final MarkovEvaluator.Result first = evaluator.evaluate(difficulty.getAiIntelligence(),
+				REFERENCE_INTELLIGENCE, true);
+		final MarkovEvaluator.Result second = evaluator.evaluate(difficulty.getAiIntelligence(),
+				REFERENCE_INTELLIGENCE, false);
+		final long micros = (System.nanoTime() - start) / 1000;
+		final double turns = (first.getExpectedTurns() + second.getExpectedTurns()) / 2;
+		final double win = (first.getWinProbability() + second.getWinProbability()) / 2;
+		final double tie = (first.getTieProbability() + second.getTieProbability()) / 2;
+		System.out.println(difficulty + " (" + difficulty.getAiIntelligence() + "), " + numberOfPairs + " pairs: "
+				+ Math.round(turns * 10) / 10.0 + " turns, wins " + percent(win) + ", ties " + percent(tie) + " ("
+				+ micros + " us)");
+	}
+
+	/** Format a probability as a percentage. */
+	private static String percent(final double p) {
+		return Math.round(p * 1000) / 10.0 + "%";
+	}
+}
@@ -0,0 +1,76 @@
+package com.maycontainsoftware.pelmanism.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.maycontainsoftware.pelmanism.Pelmanism;
+import com.maycontainsoftware.pelmanism.Turn;
+
+/**
+ * Test application that checks that submitting turns to the Pelmanism game model does not allocate once the game has
+ * warmed up. Relies on the HotSpot-specific per-thread allocation counter, so must be run on a HotSpot desktop JVM.
+ *
+ * @author Charlie
+ */
+public class TurnAllocationTest {
+
+	public static void main(final String[] args) {
+
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		final long threadId = Thread.currentThread().getId();
+
+		// A large board, so the game lasts long enough to measure
+		final Pelmanism p = new Pelmanism(2, 20000);
+		p.ensureTurnCapacity(4000000);
+		final Random r = new Random();
+		final Turn cursor = new Turn();
+
+		// Warm up: let the JIT compile the turn path, and create every Card view
+		for (int i = 0; i < p.getNumberOfCards(); i++) {
+			p.getCard(i);
+		}
+		playTurns(p, r, cursor, 100000);
+
+		// Measure primitive turns, and turns read back through a cursor. Reading the allocation counter can itself
+		// allocate the odd object, so take the best of several rounds.
+		long allocated = Long.MAX_VALUE;
+		int played = 0;
+		for (int round = 0; round < 5; round++) {
+			final long before = threads.getThreadAllocatedBytes(threadId);
+			played += playTurns(p, r, cursor, 100000);
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+		}
+
+		System.out.println("Played " + played + " turns, allocating at best " + allocated + " bytes per round");
+		if (allocated > 0) {
+			throw new AssertionError("Turn submission allocated " + allocated + " bytes");
+		}
+	}
+
+	/** Play random turns, alternating between the primitive and the Card-based turn paths. */
+	private static int playTurns(final Pelmanism p, final Random r, final Turn cursor, final int numberOfTurns) {
+		int played = 0;
+		while (played < numberOfTurns && !p.isGameOver()) {
+			// Random card 1
+			int card1 = r.nextInt(p.getNumberOfCards());
+			while (!p.isCardPickable(card1)) {
+				card1 = r.nextInt(p.getNumberOfCards());
+			}
+			// Random card 2
+			int card2 = r.nextInt(p.getNumberOfCards());
+			while (!p.isCardPickable(card2) || card1 == card2) {
+				card2 = r.nextInt(p.getNumberOfCards());
+			}
+
+			if ((played & 1) == 0) {
+				final int turnId = p.turn(card1, card2);
+				p.getTurn(turnId, cursor);
+			} else {
+				p.turn(p.getCard(card1), p.getCard(card2));
+			}
+			played++;
+		}
+		return played;
+	}
+}